@@ -0,0 +1,98 @@
+package cn.popcraft.weatherevent.effects;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.potion.PotionEffectType;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 基准测试用的玩家和注册表
+ * 玩家通过动态代理实现 {@link Player}，不连接服务器，每次调用都计入计数器，
+ * 避免 JIT 把没有副作用的调用消除
+ */
+final class BenchmarkPlayers {
+
+    private BenchmarkPlayers() {
+    }
+
+    /**
+     * 创建玩家
+     * @param name 玩家名称
+     * @param calls 调用计数器，只使用第一个元素
+     * @return 玩家
+     */
+    static Player create(String name, long[] calls) {
+        UUID id = UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8));
+        Location location = new Location(null, 100.5, 64.0, -20.5);
+
+        InvocationHandler handler = (proxy, method, args) -> {
+            calls[0]++;
+            switch (method.getName()) {
+                case "getName":
+                    return name;
+                case "getUniqueId":
+                    return id;
+                case "getLocation":
+                    if (args != null && args.length == 1 && args[0] instanceof Location) {
+                        Location into = (Location) args[0];
+                        into.setWorld(location.getWorld());
+                        into.setX(location.getX());
+                        into.setY(location.getY());
+                        into.setZ(location.getZ());
+                        return into;
+                    }
+                    return location.clone();
+                case "getHealth":
+                    return 20.0;
+                case "getFoodLevel":
+                    return 20;
+                case "isOnline":
+                    return true;
+                case "hashCode":
+                    return id.hashCode();
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "BenchmarkPlayer[" + name + "]";
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        };
+        return (Player) Proxy.newProxyInstance(Player.class.getClassLoader(), new Class<?>[] {Player.class}, handler);
+    }
+
+    /**
+     * 按旧名称登记药水效果类型
+     * 服务器外 {@link PotionEffectType#getByName(String)} 的表是空的，由服务器实现在启动时填充
+     * @param name 旧名称，例如 "speed"
+     * @param type 药水效果类型
+     */
+    @SuppressWarnings("unchecked") // 抑制未经检查操作警告
+    static void registerPotionEffectType(String name, PotionEffectType type) {
+        try {
+            Field field = PotionEffectType.class.getDeclaredField("byName");
+            field.setAccessible(true);
+            ((Map<String, PotionEffectType>) field.get(null)).putIfAbsent(name.toLowerCase(), type);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("无法在服务器外登记药水效果类型: " + name, e);
+        }
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) return null;
+        if (type == boolean.class) return false;
+        if (type == char.class) return '\0';
+        if (type == byte.class) return (byte) 0;
+        if (type == short.class) return (short) 0;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        if (type == float.class) return 0f;
+        return 0.0;
+    }
+}
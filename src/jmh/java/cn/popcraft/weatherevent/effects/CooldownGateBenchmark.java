@@ -0,0 +1,222 @@
+package cn.popcraft.weatherevent.effects;
+
+import cn.popcraft.weatherevent.manager.CooldownManager;
+import cn.popcraft.weatherevent.manager.PermissionManager;
+import cn.popcraft.weatherevent.manager.RegionManager;
+import org.bukkit.Location;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 效果管理器逐玩家检查的基准测试
+ * 一次调用遍历所有玩家 × 所有效果，只执行是否应用效果的判断，不应用效果、不改变冷却状态：
+ * legacy() 为注册时解析之前的实现，每次都检查玩家组、冷却映射和区域，并按 "effects." + id
+ * 查找配置节读取冷却时间；precomputed() 为当前实现，使用注册时解析的冷却时间和限制标记，
+ * 冷却状态每个玩家取一次位图。
+ * 配置中每四个效果有一个 30 秒冷却，一半玩家处于冷却中；一个玩家组和一个区域各禁用一个效果。
+ * 区域查询在两条路径上使用同一个实现（旧的逐个区域检查）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class CooldownGateBenchmark {
+
+    @Param({"50", "200"})
+    public int players;
+
+    @Param({"12", "30"})
+    public int effects;
+
+    private final long[] calls = new long[1];
+    private Player[] onlinePlayers;
+    private BaseWeatherEffect[] registered;
+
+    private YamlConfiguration config;
+    private PermissionManager.GroupEffectConfig groupConfig;
+    private List<RegionManager.RegionConfig> regions;
+
+    // 旧的冷却记录：效果ID -> 玩家 -> 到期时间（毫秒）
+    private Map<String, Map<UUID, Long>> legacyCooldowns;
+
+    private CooldownManager cooldownManager;
+    private long[] readyEffects;
+
+    @Setup
+    public void setup() {
+        config = new YamlConfiguration();
+        for (int i = 0; i < effects; i++) {
+            String path = "effects." + effectId(i);
+            config.set(path + ".enabled", true);
+            config.set(path + ".description", "基准测试效果 " + i);
+            config.set(path + ".potion-effects.speed.level", 1);
+            config.set(path + ".potion-effects.speed.duration", 200);
+            if (i % 4 == 0) {
+                config.set(path + ".cooldown", 30);
+            }
+        }
+        config.set("groups.default.effect-multiplier", 1.0);
+        config.set("groups.vip.effects." + effectId(1), false);
+        config.set("regions.spawn.area.min-x", -50);
+        config.set("regions.spawn.area.min-y", 0);
+        config.set("regions.spawn.area.min-z", -50);
+        config.set("regions.spawn.area.max-x", 50);
+        config.set("regions.spawn.area.max-y", 255);
+        config.set("regions.spawn.area.max-z", 50);
+        config.set("regions.spawn.effects." + effectId(2), false);
+        config.set("regions.arena.area.min-x", 500);
+        config.set("regions.arena.area.min-y", 0);
+        config.set("regions.arena.area.min-z", 500);
+        config.set("regions.arena.area.max-x", 600);
+        config.set("regions.arena.area.max-y", 255);
+        config.set("regions.arena.area.max-z", 600);
+
+        List<PermissionManager.GroupEffectConfig> groups = new ArrayList<>();
+        ConfigurationSection groupsSection = config.getConfigurationSection("groups");
+        for (String group : groupsSection.getKeys(false)) {
+            groups.add(new PermissionManager.GroupEffectConfig(groupsSection.getConfigurationSection(group)));
+        }
+        // 所有玩家属于默认组
+        groupConfig = new PermissionManager.GroupEffectConfig(groupsSection.getConfigurationSection("default"));
+
+        regions = new ArrayList<>();
+        ConfigurationSection regionsSection = config.getConfigurationSection("regions");
+        for (String region : regionsSection.getKeys(false)) {
+            regions.add(new RegionManager.RegionConfig(regionsSection.getConfigurationSection(region)));
+        }
+
+        // 与 EffectManager.resolveRuntimeSettings 相同的注册时解析
+        cooldownManager = new CooldownManager();
+        registered = new BaseWeatherEffect[effects];
+        for (int i = 0; i < effects; i++) {
+            String id = effectId(i);
+            BaseWeatherEffect effect = new BaseWeatherEffect(null, id, null) {
+            };
+            long cooldownMillis = config.getInt("effects." + id + ".cooldown", 0) * 1000L;
+            boolean groupRestricted = false;
+            for (PermissionManager.GroupEffectConfig group : groups) {
+                groupRestricted |= !group.isEffectEnabled(id);
+            }
+            boolean regionRestricted = false;
+            for (RegionManager.RegionConfig region : regions) {
+                regionRestricted |= !region.isEffectEnabled(id);
+            }
+            effect.setRuntimeSettings(cooldownMillis, cooldownManager.internEffect(id), i,
+                    groupRestricted, regionRestricted);
+            registered[i] = effect;
+        }
+
+        // 一半玩家的冷却效果处于冷却中，两种记录保存相同的状态
+        legacyCooldowns = new HashMap<>();
+        onlinePlayers = new Player[players];
+        long expiry = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+        for (int p = 0; p < players; p++) {
+            Player player = BenchmarkPlayers.create("Player" + p, calls);
+            onlinePlayers[p] = player;
+            if (p % 2 != 0) continue;
+            for (BaseWeatherEffect effect : registered) {
+                if (effect.getCooldownMillis() > 0L) {
+                    legacyCooldowns.computeIfAbsent(effect.getId(), k -> new HashMap<>()).put(player.getUniqueId(), expiry);
+                    cooldownManager.setCooldown(player, effect.getCooldownIndex(), TimeUnit.HOURS.toMillis(1));
+                }
+            }
+        }
+    }
+
+    private static String effectId(int index) {
+        return "effect_" + index;
+    }
+
+    @Benchmark
+    public long legacy() {
+        long passed = 0;
+        for (Player player : onlinePlayers) {
+            for (BaseWeatherEffect effect : registered) {
+                String id = effect.getId();
+                if (!groupConfig.shouldSkipEffect(id) &&
+                    !isOnLegacyCooldown(player, id) &&
+                    isEffectEnabledInRegion(player, id)) {
+                    passed++;
+
+                    ConfigurationSection effectConfig = config.getConfigurationSection("effects." + id);
+                    if (effectConfig != null) {
+                        int cooldownSeconds = effectConfig.getInt("cooldown", 0);
+                        if (cooldownSeconds > 0) {
+                            passed += cooldownSeconds * 1000L;
+                        }
+                    }
+                }
+            }
+        }
+        return passed;
+    }
+
+    @Benchmark
+    public long precomputed() {
+        long passed = 0;
+        for (Player player : onlinePlayers) {
+            readyEffects = cooldownManager.getReadyEffects(player, readyEffects);
+            for (BaseWeatherEffect effect : registered) {
+                long cooldownMillis = effect.getCooldownMillis();
+                if ((!effect.isGroupRestricted() || !groupConfig.shouldSkipEffect(effect.getId())) &&
+                    (cooldownMillis == 0L || CooldownManager.isReady(readyEffects, effect.getCooldownIndex())) &&
+                    (!effect.isRegionRestricted() || isEffectEnabledInRegion(player, effect.getId()))) {
+                    passed++;
+
+                    if (cooldownMillis > 0L) {
+                        passed += cooldownMillis;
+                    }
+                }
+            }
+        }
+        return passed;
+    }
+
+    /**
+     * 注册时解析之前 CooldownManager.isOnCooldown 的实现
+     */
+    private boolean isOnLegacyCooldown(Player player, String effectId) {
+        UUID playerId = player.getUniqueId();
+        Map<UUID, Long> effectCooldowns = legacyCooldowns.get(effectId);
+        if (effectCooldowns == null) {
+            return false;
+        }
+        Long expireTime = effectCooldowns.get(playerId);
+        if (expireTime == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() > expireTime) {
+            effectCooldowns.remove(playerId);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 注册时解析之前 RegionManager.isEffectEnabledInRegion 的实现：逐个区域检查玩家位置
+     */
+    private boolean isEffectEnabledInRegion(Player player, String effectId) {
+        Location location = player.getLocation();
+        for (RegionManager.RegionConfig region : regions) {
+            if (region.isInRegion(location)) {
+                return region.isEffectEnabled(effectId);
+            }
+        }
+        return true;
+    }
+}
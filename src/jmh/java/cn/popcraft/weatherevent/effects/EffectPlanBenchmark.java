@@ -0,0 +1,311 @@
+package cn.popcraft.weatherevent.effects;
+
+import cn.popcraft.weatherevent.config.DynamicParameter;
+import cn.popcraft.weatherevent.manager.CommandCompiler;
+import cn.popcraft.weatherevent.message.PlaceholderContext;
+import cn.popcraft.weatherevent.message.PlaceholderRegistry;
+import org.bukkit.Sound;
+import org.bukkit.entity.Player;
+import org.bukkit.potion.PotionEffect;
+import org.bukkit.potion.PotionEffectType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * 效果执行计划基准测试
+ * 比较一次效果应用（随机药水效果、命令、标题、声音）在两条路径上的耗时：
+ * 编译后的 {@link EffectPlan}，以及原来每次应用时从 Map&lt;String, Object&gt;
+ * 用 getOrDefault、强制转换和 Sound.valueOf 读取配置的路径。
+ * 两条路径使用同一份配置映射和同一个玩家，所有概率都为 1，每次调用都会执行全部动作
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class EffectPlanBenchmark {
+
+    // 第二个资源不是 Sound 枚举名称，旧路径每次都会抛出并捕获异常
+    @Param({"entity.player.levelup", "custom.weather.gust"})
+    public String soundResource;
+
+    private final long[] calls = new long[1];
+    private Player player;
+    private Map<String, Player> onlinePlayers;
+
+    private Map<String, Object> randomEffects;
+    private Map<String, Object> commands;
+    private Map<String, Object> title;
+    private Map<String, Object> sound;
+
+    private BenchmarkEffect effect;
+
+    @Setup
+    public void setup() {
+        BenchmarkPlayers.registerPotionEffectType("speed", PotionEffectType.SPEED);
+        BenchmarkPlayers.registerPotionEffectType("jump", PotionEffectType.JUMP);
+        BenchmarkPlayers.registerPotionEffectType("slow", PotionEffectType.SLOW);
+
+        player = BenchmarkPlayers.create("Steve", calls);
+        onlinePlayers = Collections.singletonMap(player.getName(), player);
+
+        randomEffects = new HashMap<>();
+        randomEffects.put("chance", 1.0);
+        randomEffects.put("effects", new ArrayList<>(Arrays.asList(
+                potion("SPEED", Arrays.asList(0, 1), Arrays.asList(100, 200)),
+                potion("JUMP", 0, 200),
+                potion("SLOW", 1, Arrays.asList(60, 120)))));
+
+        commands = new HashMap<>();
+        commands.put("chance", 1.0);
+        commands.put("list", new ArrayList<>(Collections.singletonList("title %player% title §b%player%，暴风雨要来了")));
+
+        title = new HashMap<>();
+        title.put("enabled", true);
+        title.put("chance", 1.0);
+        title.put("text", "§e%player%");
+        title.put("subtitle", "生命值 %player_health%");
+        title.put("fadeIn", 10);
+        title.put("stay", 70);
+        title.put("fadeOut", 20);
+
+        sound = new HashMap<>();
+        sound.put("enabled", true);
+        sound.put("chance", 1.0);
+        sound.put("resource", soundResource);
+        sound.put("volume", 1.0);
+        sound.put("pitch", 1.2);
+
+        PlaceholderRegistry placeholders = new PlaceholderRegistry();
+        // 标题命令和 %player% 目标编译为直接的 API 调用，不需要插件实例
+        CommandCompiler commandCompiler = new CommandCompiler(null, placeholders);
+        effect = new BenchmarkEffect(randomEffects, commands, title, sound);
+        effect.compiled = EffectPlan.compile(effect, commandCompiler, placeholders, Logger.getLogger("EffectPlanBenchmark"));
+    }
+
+    private static Map<String, Object> potion(String type, Object level, Object duration) {
+        Map<String, Object> potion = new HashMap<>();
+        potion.put("type", type);
+        potion.put("level", level);
+        potion.put("duration", duration);
+        return potion;
+    }
+
+    @Benchmark
+    public long plan() {
+        // 与 applyActions 相同，命令和标题共用一个占位符上下文
+        PlaceholderContext context = new PlaceholderContext(player, null);
+        planRandomEffects(effect.compiled.getRandomEffects());
+        effect.tryExecuteCommands(player, context);
+        effect.trySendTitle(player, context);
+        effect.tryPlaySound(player);
+        return calls[0];
+    }
+
+    @Benchmark
+    public long map() {
+        mapRandomEffects();
+        mapCommands();
+        mapTitle();
+        mapSound();
+        return calls[0];
+    }
+
+    /**
+     * 与 {@link BaseWeatherEffect#tryApplyRandomEffects(Player)} 相同，
+     * 药水效果直接交给玩家，不经过对账器，与旧路径一致
+     */
+    private void planRandomEffects(EffectPlan.RandomEffectPlan randomPlan) {
+        if (randomPlan == null) return;
+
+        if (randomPlan.isPrerequisiteUnsatisfiable()) return;
+        PotionEffectType prerequisiteType = randomPlan.getPrerequisiteType();
+        if (prerequisiteType != null) {
+            PotionEffect activeEffect = player.getPotionEffect(prerequisiteType);
+            if (activeEffect == null || activeEffect.getAmplifier() != randomPlan.getPrerequisiteLevel()) return;
+        }
+
+        if (!EffectPlan.roll(randomPlan.getChance())) return;
+
+        int index = ThreadLocalRandom.current().nextInt(randomPlan.size());
+        player.addPotionEffect(new PotionEffect(randomPlan.getType(index),
+                randomPlan.sampleDuration(index), randomPlan.sampleLevel(index)));
+    }
+
+    // 以下为编译执行计划之前 BaseWeatherEffect 中的实现，只把服务器的玩家查找换成 onlinePlayers
+
+    @SuppressWarnings("unchecked") // 抑制未经检查操作警告
+    private void mapRandomEffects() {
+        if (randomEffects == null || randomEffects.isEmpty()) return;
+
+        Map<String, Object> prerequisites = (Map<String, Object>) randomEffects.get("prerequisites");
+        if (prerequisites != null && !prerequisites.isEmpty()) {
+            String type = (String) prerequisites.get("type");
+            if ("has_potion_effect".equals(type)) {
+                String effectTypeName = (String) prerequisites.get("effect_type");
+                int level = ((Number) prerequisites.getOrDefault("level", 0)).intValue();
+
+                PotionEffectType effectType = PotionEffectType.getByName(effectTypeName);
+                if (effectType == null) return;
+
+                PotionEffect activeEffect = player.getPotionEffect(effectType);
+                if (activeEffect == null || activeEffect.getAmplifier() != level) return;
+            }
+        }
+
+        double chance = (double) randomEffects.getOrDefault("chance", 0.0);
+        if (Math.random() > chance) return;
+
+        List<Map<String, Object>> effects = (List<Map<String, Object>>) randomEffects.get("effects");
+        if (effects != null && !effects.isEmpty()) {
+            Map<String, Object> effect = effects.get((int) (Math.random() * effects.size()));
+            PotionEffectType type = PotionEffectType.getByName((String) effect.get("type"));
+            if (type != null) {
+                int level = DynamicParameter.parseIntParameter(effect.get("level"));
+                int duration = DynamicParameter.parseIntParameter(effect.get("duration"));
+
+                player.addPotionEffect(new PotionEffect(type, duration, level));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked") // 抑制未经检查操作警告
+    private void mapCommands() {
+        if (commands == null || commands.isEmpty()) return;
+
+        double chance = (double) commands.getOrDefault("chance", 0.0);
+        if (Math.random() > chance) return;
+
+        List<String> commandList = (List<String>) commands.get("list");
+        if (commandList != null) {
+            for (String cmd : commandList) {
+                String processedCmd = cmd.replace("%player%", player.getName())
+                        .replace("%player_name%", player.getName())
+                        .replace("%player_x%", String.valueOf(player.getLocation().getX()))
+                        .replace("%player_y%", String.valueOf(player.getLocation().getY()))
+                        .replace("%player_z%", String.valueOf(player.getLocation().getZ()))
+                        .replace("%player_health%", String.valueOf(player.getHealth()))
+                        .replace("%player_food%", String.valueOf(player.getFoodLevel()));
+
+                if (processedCmd.startsWith("title ") && processedCmd.contains(" title ")) {
+                    String[] parts = processedCmd.split(" title ", 2);
+                    String playerName = parts[0].substring(6).trim();
+                    String titleText = parts[1];
+
+                    Player targetPlayer = onlinePlayers.get(playerName);
+                    if (targetPlayer != null) {
+                        targetPlayer.sendTitle(titleText, "", 10, 70, 20);
+                    }
+                } else if (processedCmd.startsWith("playsound ")) {
+                    String[] parts = processedCmd.split(" ");
+                    if (parts.length >= 6) {
+                        String soundName = parts[1];
+                        String playerName = parts[2];
+                        float volume = 1.0f;
+                        float pitch = 1.0f;
+
+                        try {
+                            if (parts.length >= 7) volume = Float.parseFloat(parts[6]);
+                            if (parts.length >= 8) pitch = Float.parseFloat(parts[7]);
+                        } catch (NumberFormatException ignored) {}
+
+                        Player targetPlayer = onlinePlayers.get(playerName);
+                        if (targetPlayer != null) {
+                            try {
+                                Sound sound = Sound.valueOf(soundName.toUpperCase().replace(".", "_").replace(":", "_"));
+                                targetPlayer.playSound(targetPlayer.getLocation(), sound, volume, pitch);
+                            } catch (IllegalArgumentException e) {
+                                targetPlayer.playSound(targetPlayer.getLocation(), soundName, volume, pitch);
+                            }
+                        }
+                    }
+                } else {
+                    // 原来交给服务器执行，这里只计数
+                    calls[0]++;
+                }
+            }
+        }
+    }
+
+    private void mapTitle() {
+        if (title == null || title.isEmpty() || !(boolean) title.getOrDefault("enabled", false)) return;
+
+        double chance = (double) title.getOrDefault("chance", 1.0);
+        if (Math.random() > chance) return;
+
+        String titleText = (String) title.getOrDefault("text", "");
+        String subtitle = (String) title.getOrDefault("subtitle", "");
+        int fadeIn = ((Number) title.getOrDefault("fadeIn", 10)).intValue();
+        int stay = ((Number) title.getOrDefault("stay", 70)).intValue();
+        int fadeOut = ((Number) title.getOrDefault("fadeOut", 20)).intValue();
+
+        titleText = titleText.replace("%player%", player.getName())
+                .replace("%player_name%", player.getName())
+                .replace("%player_health%", String.valueOf(player.getHealth()))
+                .replace("%player_food%", String.valueOf(player.getFoodLevel()));
+
+        subtitle = subtitle.replace("%player%", player.getName())
+                .replace("%player_name%", player.getName())
+                .replace("%player_health%", String.valueOf(player.getHealth()))
+                .replace("%player_food%", String.valueOf(player.getFoodLevel()));
+
+        player.sendTitle(titleText, subtitle, fadeIn, stay, fadeOut);
+    }
+
+    private void mapSound() {
+        if (sound == null || sound.isEmpty() || !(Boolean) sound.getOrDefault("enabled", false)) return;
+
+        double chance = (Double) sound.getOrDefault("chance", 1.0);
+        if (Math.random() > chance) return;
+
+        String resource = (String) sound.getOrDefault("resource", "entity.player.levelup");
+        if (resource == null || resource.isEmpty()) {
+            resource = "entity.player.levelup";
+        }
+
+        float volume = ((Number) sound.getOrDefault("volume", 1.0f)).floatValue();
+        float pitch = ((Number) sound.getOrDefault("pitch", 1.0f)).floatValue();
+
+        try {
+            Sound soundEnum = Sound.valueOf(resource.toUpperCase().replace(".", "_").replace(":", "_"));
+            player.playSound(player.getLocation(), soundEnum, volume, pitch);
+        } catch (IllegalArgumentException e) {
+            player.playSound(player.getLocation(), resource, volume, pitch);
+        }
+    }
+
+    /**
+     * 使用给定配置映射的效果，执行计划在基准测试开始前编译一次
+     */
+    private static final class BenchmarkEffect extends BaseWeatherEffect {
+        private EffectPlan compiled;
+
+        BenchmarkEffect(Map<String, Object> randomEffects, Map<String, Object> commands,
+                        Map<String, Object> title, Map<String, Object> sound) {
+            super(null, "benchmark", null);
+            this.randomEffects = randomEffects;
+            this.commands = commands;
+            this.title = title;
+            this.sound = sound;
+        }
+
+        @Override
+        protected EffectPlan getPlan() {
+            return compiled;
+        }
+    }
+}
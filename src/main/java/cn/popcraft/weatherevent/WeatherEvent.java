@@ -10,6 +10,9 @@ import cn.popcraft.weatherevent.effects.EffectManager;
 import cn.popcraft.weatherevent.forecast.WeatherForecastManager;
 import cn.popcraft.weatherevent.listeners.PlayerListener;
 import cn.popcraft.weatherevent.listeners.WeatherListener;
+import cn.popcraft.weatherevent.manager.CommandCompiler;
+import cn.popcraft.weatherevent.manager.CommandDispatchQueue;
+import cn.popcraft.weatherevent.message.PlaceholderRegistry;
 import cn.popcraft.weatherevent.season.SeasonManager;
 import org.bukkit.plugin.java.JavaPlugin;
 
@@ -19,6 +22,9 @@ import org.bukkit.plugin.java.JavaPlugin;
  */
 public class WeatherEvent extends JavaPlugin {
     
+    private PlaceholderRegistry placeholderRegistry;
+    private CommandDispatchQueue commandDispatchQueue;
+    private CommandCompiler commandCompiler;
     private EffectManager effectManager;
     private SharedEffectManager sharedEffectManager;
     private BiomeWeatherManager biomeWeatherManager;
@@ -35,6 +41,15 @@ public class WeatherEvent extends JavaPlugin {
         // 显示ASCII艺术字
         displayAsciiArt();
         
+        // 初始化占位符注册表
+        placeholderRegistry = new PlaceholderRegistry();
+        
+        // 初始化命令调度队列和命令编译器
+        commandDispatchQueue = new CommandDispatchQueue(this);
+        commandCompiler = new CommandCompiler(this, placeholderRegistry);
+        loadCommandSettings();
+        commandDispatchQueue.start();
+        
         // 初始化共享效果管理器
         sharedEffectManager = new SharedEffectManager(this);
         
@@ -65,6 +80,9 @@ public class WeatherEvent extends JavaPlugin {
         
         // 注册事件监听器
         getServer().getPluginManager().registerEvents(effectManager, this);
+        getServer().getPluginManager().registerEvents(effectManager.getBiomeCacheManager(), this);
+        getServer().getPluginManager().registerEvents(effectManager.getRegionManager(), this);
+        getServer().getPluginManager().registerEvents(effectManager.getPermissionManager(), this);
         getServer().getPluginManager().registerEvents(new WeatherListener(this), this);
         getServer().getPluginManager().registerEvents(new PlayerListener(this), this);
         getServer().getPluginManager().registerEvents(seasonManager, this);
@@ -100,6 +118,10 @@ public class WeatherEvent extends JavaPlugin {
         // 重新加载配置
         reloadConfig();
         
+        // 重新加载命令调度设置，清空已编译的命令和模板
+        placeholderRegistry.clearTemplates();
+        loadCommandSettings();
+        
         // 重新初始化共享效果管理器
         sharedEffectManager = new SharedEffectManager(this);
         
@@ -121,11 +143,26 @@ public class WeatherEvent extends JavaPlugin {
         getLogger().info("§a已重新加载天气效果和新系统！");
     }
     
+    /**
+     * 从配置加载命令调度队列和命令编译设置
+     */
+    private void loadCommandSettings() {
+        commandDispatchQueue.configure(
+            getConfig().getBoolean("performance.command-queue.enabled", true),
+            getConfig().getInt("performance.command-queue.max-per-tick", 50),
+            getConfig().getInt("performance.command-queue.max-per-player", 5),
+            getConfig().getLong("performance.command-queue.tick-budget-nanos", 2_000_000L),
+            getConfig().getInt("performance.command-queue.max-pending", 5000));
+        commandCompiler.configure(getConfig().getBoolean("performance.native-commands.enabled", true));
+    }
+    
     @Override
     public void onDisable() {
         // 取消注册所有效果
         if (effectManager != null) {
             effectManager.unregisterAllEffects();
+            // 写入剩余的统计
+            effectManager.getStatisticsManager().shutdown();
         }
         
         // 停止天气预报更新任务
@@ -133,9 +170,38 @@ public class WeatherEvent extends JavaPlugin {
             weatherForecastManager.stop();
         }
         
+        // 停止命令调度，剩余的高优先级命令立即执行
+        if (commandDispatchQueue != null) {
+            commandDispatchQueue.stop();
+        }
+        
         getLogger().info("§cWeatherEvent 插件已禁用！");
     }
     
+    /**
+     * 获取占位符注册表
+     * @return 占位符注册表实例
+     */
+    public PlaceholderRegistry getPlaceholderRegistry() {
+        return placeholderRegistry;
+    }
+    
+    /**
+     * 获取命令调度队列
+     * @return 命令调度队列实例
+     */
+    public CommandDispatchQueue getCommandDispatchQueue() {
+        return commandDispatchQueue;
+    }
+    
+    /**
+     * 获取命令编译器
+     * @return 命令编译器实例
+     */
+    public CommandCompiler getCommandCompiler() {
+        return commandCompiler;
+    }
+    
     /**
      * 获取效果管理器
      * @return 效果管理器实例
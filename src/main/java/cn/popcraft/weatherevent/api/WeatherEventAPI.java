@@ -5,10 +5,12 @@ import cn.popcraft.weatherevent.disaster.DisasterType;
 import cn.popcraft.weatherevent.effects.BaseWeatherEffect;
 import cn.popcraft.weatherevent.forecast.WeatherForecast;
 import cn.popcraft.weatherevent.season.Season;
+import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.entity.Player;
 
 import java.util.Map;
+import java.util.function.Function;
 
 /**
  * WeatherEvent API接口
@@ -39,6 +41,8 @@ public interface WeatherEventAPI {
     
     /**
      * 注册自定义效果
+     * 效果的 isApplicable 默认在每次检查时重新调用；只有当它只取决于天气和固定时间段时，
+     * 才应覆盖 {@link BaseWeatherEffect#isStateIndexable()} 返回 true，以便按世界状态缓存
      * @param effect 效果实例
      * @return 是否成功注册
      */
@@ -113,6 +117,13 @@ public interface WeatherEventAPI {
      */
     boolean hasActiveDisaster(World world);
     
+    /**
+     * 检查位置是否在灾害范围内
+     * @param location 位置
+     * @return 是否在灾害范围内
+     */
+    boolean isInsideDisaster(Location location);
+    
     /**
      * 强制触发灾害
      * @param world 世界
@@ -150,6 +161,37 @@ public interface WeatherEventAPI {
      */
     WeatherForecast forceUpdateForecast(World world);
     
+    // ==================== 权限相关 ====================
+    
+    /**
+     * 使玩家的权限缓存失效
+     * 玩家所属的组和免疫权限会被缓存，权限插件修改玩家权限后应调用此方法
+     * @param player 玩家
+     */
+    void invalidatePermissions(Player player);
+    
+    /**
+     * 使所有玩家的权限缓存失效
+     */
+    void invalidateAllPermissions();
+    
+    // ==================== 占位符相关 ====================
+    
+    /**
+     * 注册自定义占位符
+     * 注册后可以在效果、季节、灾害的命令和消息中使用 %name%，已存在的同名占位符会被覆盖
+     * @param name 占位符名称（不含%）
+     * @param resolver 根据玩家计算占位符的函数，返回null时保留占位符原文
+     */
+    void registerPlaceholder(String name, Function<Player, String> resolver);
+    
+    /**
+     * 取消注册自定义占位符
+     * @param name 占位符名称
+     * @return 是否成功取消注册
+     */
+    boolean unregisterPlaceholder(String name);
+    
     // ==================== 事件系统相关 ====================
     
     /**
@@ -5,12 +5,14 @@ import cn.popcraft.weatherevent.disaster.DisasterType;
 import cn.popcraft.weatherevent.effects.BaseWeatherEffect;
 import cn.popcraft.weatherevent.forecast.WeatherForecast;
 import cn.popcraft.weatherevent.season.Season;
+import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.entity.Player;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 /**
  * WeatherEvent API实现类
@@ -128,6 +130,14 @@ public class WeatherEventAPIImpl implements WeatherEventAPI {
         return false;
     }
     
+    @Override
+    public boolean isInsideDisaster(Location location) {
+        if (plugin.getDisasterManager() != null) {
+            return plugin.getDisasterManager().isInsideDisaster(location);
+        }
+        return false;
+    }
+    
     @Override
     public boolean forceDisaster(World world, DisasterType type) {
         if (plugin.getDisasterManager() != null) {
@@ -168,6 +178,33 @@ public class WeatherEventAPIImpl implements WeatherEventAPI {
         return null;
     }
     
+    // ==================== 权限相关 ====================
+    
+    @Override
+    public void invalidatePermissions(Player player) {
+        plugin.getEffectManager().getPermissionManager().invalidate(player);
+    }
+    
+    @Override
+    public void invalidateAllPermissions() {
+        plugin.getEffectManager().getPermissionManager().invalidateAll();
+    }
+    
+    // ==================== 占位符相关 ====================
+    
+    @Override
+    public void registerPlaceholder(String name, Function<Player, String> resolver) {
+        plugin.getPlaceholderRegistry().register(name, context -> {
+            Player player = context.getPlayer();
+            return player == null ? null : resolver.apply(player);
+        });
+    }
+    
+    @Override
+    public boolean unregisterPlaceholder(String name) {
+        return plugin.getPlaceholderRegistry().unregister(name);
+    }
+    
     // ==================== 事件系统相关 ====================
     
     @Override
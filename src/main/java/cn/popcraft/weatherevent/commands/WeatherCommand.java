@@ -1,12 +1,27 @@
 package cn.popcraft.weatherevent.commands;
 
 import cn.popcraft.weatherevent.WeatherEvent;
+import cn.popcraft.weatherevent.disaster.ActiveDisaster;
+import cn.popcraft.weatherevent.disaster.DisasterParticleRenderer;
 import cn.popcraft.weatherevent.disaster.DisasterType;
 import cn.popcraft.weatherevent.effects.BaseWeatherEffect;
+import cn.popcraft.weatherevent.effects.EffectManager;
+import cn.popcraft.weatherevent.effects.SnapshotEvaluator;
+import cn.popcraft.weatherevent.effects.WorldEffectIndex;
 import cn.popcraft.weatherevent.forecast.WeatherForecast;
+import cn.popcraft.weatherevent.manager.BiomeCacheManager;
+import cn.popcraft.weatherevent.manager.CommandCompiler;
+import cn.popcraft.weatherevent.manager.CommandDispatchQueue;
+import cn.popcraft.weatherevent.manager.CooldownManager;
+import cn.popcraft.weatherevent.manager.PermissionManager;
+import cn.popcraft.weatherevent.manager.PlayerShardScheduler;
+import cn.popcraft.weatherevent.manager.PotionReconciler;
+import cn.popcraft.weatherevent.manager.RegionManager;
+import cn.popcraft.weatherevent.manager.RollingCounter;
 import cn.popcraft.weatherevent.manager.StatisticsManager;
 import cn.popcraft.weatherevent.season.Season;
 import org.bukkit.ChatColor;
+import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -18,6 +33,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 /**
  * 天气命令处理类
@@ -298,15 +314,172 @@ public class WeatherCommand implements CommandExecutor, TabCompleter {
                     stats.getSuccessCount() + "次 (成功率: " + 
                     String.format("%.2f", stats.getSuccessRate() * 100) + "%)");
             }
+            
+            // 显示最近的触发频率，便于发现修改配置后触发过于频繁的效果
+            StatisticsManager statistics = plugin.getEffectManager().getStatisticsManager();
+            sender.sendMessage(ChatColor.GOLD + "最近触发频率 (次/分钟):");
+            for (String effectId : effectStats.keySet()) {
+                sender.sendMessage(ChatColor.GREEN + "- " + effectId + ": " + 
+                    formatWindows(window -> statistics.getEffectWindow(effectId, window)));
+            }
+            for (String worldName : statistics.getTrackedWorlds()) {
+                sender.sendMessage(ChatColor.AQUA + "- 世界 " + worldName + ": " + 
+                    formatWindows(window -> statistics.getWorldWindow(worldName, window)));
+            }
+        }
+        
+        // 显示统计持久化信息
+        StatisticsManager statisticsManager = plugin.getEffectManager().getStatisticsManager();
+        if (statisticsManager.isPersistenceEnabled()) {
+            sender.sendMessage(ChatColor.GOLD + "统计持久化: 日志写入" + statisticsManager.getJournalBatches() + 
+                "批, 压缩" + statisticsManager.getCompactions() + "次, 上次写入耗时: " + 
+                String.format("%.2f", statisticsManager.getLastFlushNanos() / 1_000_000.0) + "ms");
+        } else {
+            sender.sendMessage(ChatColor.YELLOW + "统计持久化未启用");
         }
         
         // 显示缓存信息
-        int cacheSize = plugin.getEffectManager().getBiomeCacheManager().getCacheSize();
-        sender.sendMessage(ChatColor.GOLD + "生物群系缓存大小: " + cacheSize);
+        BiomeCacheManager biomeCache = plugin.getEffectManager().getBiomeCacheManager();
+        sender.sendMessage(ChatColor.GOLD + "生物群系缓存: " + biomeCache.getCacheSize() + "个区块, 命中" + 
+            biomeCache.getHits() + "次, 查询" + biomeCache.getMisses() + "次, 清除" + biomeCache.getEvictions() + "个区块");
+        
+        // 显示世界效果索引信息
+        WorldEffectIndex effectIndex = plugin.getEffectManager().getEffectIndex();
+        sender.sendMessage(ChatColor.GOLD + "世界效果索引: 重建" + effectIndex.getRebuilds() + 
+            "次, 状态切换" + effectIndex.getTransitions() + "次");
+        
+        // 显示区域索引信息
+        RegionManager regionManager = plugin.getEffectManager().getRegionManager();
+        sender.sendMessage(ChatColor.GOLD + "区域索引: " + regionManager.getRegionCount() + "个区域, " + 
+            regionManager.getIndexedWorldCount() + "个世界, 缓存命中" + regionManager.getMembershipHits() + 
+            "次, 重新查找" + regionManager.getMembershipRecomputes() + "次, 进入" + regionManager.getEnterEvents() + 
+            "次, 离开" + regionManager.getLeaveEvents() + "次");
+        
+        // 显示权限缓存信息
+        PermissionManager permissionManager = plugin.getEffectManager().getPermissionManager();
+        sender.sendMessage(ChatColor.GOLD + "权限缓存: " + permissionManager.getCachedPlayerCount() + "个玩家, 命中" + 
+            permissionManager.getCacheHits() + "次, 解析" + permissionManager.getResolutions() + "次");
+        
+        // 显示冷却信息
+        CooldownManager cooldownManager = plugin.getEffectManager().getCooldownManager();
+        sender.sendMessage(ChatColor.GOLD + "冷却: " + cooldownManager.getActiveCooldowns() + "条进行中, " + 
+            cooldownManager.getEffectCount() + "个效果, 已到期清除" + cooldownManager.getExpirations() + "条");
+        
+        // 显示天气变化重新评估信息
+        EffectManager effectManager = plugin.getEffectManager();
+        sender.sendMessage(ChatColor.GOLD + "天气变化重新评估: 标记" + effectManager.getDirtyMarks() + 
+            "次, 合并" + effectManager.getCoalescedMarks() + "次, 评估世界" + 
+            effectManager.getWorldReevaluations() + "次, 玩家" + effectManager.getReevaluatedPlayers() + 
+            "次, 上次耗时: " + String.format("%.2f", effectManager.getLastReevaluationNanos() / 1_000_000.0) + "ms");
+        
+        // 显示分片调度信息
+        PlayerShardScheduler scheduler = plugin.getEffectManager().getShardScheduler();
+        if (scheduler == null) {
+            sender.sendMessage(ChatColor.YELLOW + "玩家分片调度未启用");
+        } else {
+            sender.sendMessage(ChatColor.GOLD + "玩家分片调度:");
+            sender.sendMessage(ChatColor.GREEN + "- 分片数: " + scheduler.getInterval() + 
+                ", 各分片玩家数: " + Arrays.toString(scheduler.getShardSizes()));
+            sender.sendMessage(ChatColor.GREEN + "- 每tick预算: " + 
+                String.format("%.2f", scheduler.getTickBudgetNanos() / 1_000_000.0) + "ms, 上次耗时: " + 
+                String.format("%.2f", scheduler.getLastTickNanos() / 1_000_000.0) + "ms, 最大耗时: " + 
+                String.format("%.2f", scheduler.getMaxTickNanos() / 1_000_000.0) + "ms");
+            sender.sendMessage(ChatColor.GREEN + "- 超出预算: " + scheduler.getOverrunTicks() + 
+                "次, 顺延玩家: " + scheduler.getCarriedOverPlayers() + 
+                ", 落后玩家: " + scheduler.getLaggingPlayers() + 
+                ", 待处理: " + scheduler.getPendingCount());
+        }
+        
+        // 显示快照评估信息
+        SnapshotEvaluator evaluator = plugin.getEffectManager().getSnapshotEvaluator();
+        if (evaluator != null) {
+            sender.sendMessage(ChatColor.GOLD + "快照评估 (" + evaluator.getThreads() + "线程):");
+            sender.sendMessage(ChatColor.GREEN + "- 批次: " + evaluator.getSubmittedBatches() + 
+                ", 进行中: " + evaluator.getInFlightBatches() + 
+                ", 条件评估: " + evaluator.getEvaluatedConditions() + 
+                "次, 产生动作: " + evaluator.getProducedActions() + 
+                ", 上次评估耗时: " + String.format("%.2f", evaluator.getLastEvaluationNanos() / 1_000_000.0) + "ms");
+        }
+        
+        // 显示灾害粒子信息
+        if (plugin.getDisasterManager() != null && plugin.getDisasterManager().isEnabled()) {
+            DisasterParticleRenderer particleRenderer = plugin.getDisasterManager().getParticleRenderer();
+            sender.sendMessage(ChatColor.GOLD + "灾害粒子: 已发送" + particleRenderer.getRenderedParticles() + 
+                "个, 超出预算放弃" + particleRenderer.getDroppedParticles() + "个, 超出时间预算推迟更新" + 
+                plugin.getDisasterManager().getDeferredUpdates() + "次");
+            sender.sendMessage(ChatColor.GOLD + "灾害调度: " + plugin.getDisasterManager().getScheduledWorldCount() + 
+                "个世界等待唤醒, 唤醒" + plugin.getDisasterManager().getWakeupCount() + "次, 到达触发时间" + 
+                plugin.getDisasterManager().getTriggerAttempts() + "次");
+        }
+        
+        // 显示命令调度信息
+        CommandDispatchQueue commandQueue = plugin.getCommandDispatchQueue();
+        sender.sendMessage(ChatColor.GOLD + "命令调度队列:" + 
+            (commandQueue.isEnabled() ? "" : ChatColor.YELLOW + " (未启用)"));
+        sender.sendMessage(ChatColor.GREEN + "- 排队: " + commandQueue.getDepth() + 
+            " (高" + commandQueue.getDepth(CommandDispatchQueue.Priority.HIGH) + 
+            "/普通" + commandQueue.getDepth(CommandDispatchQueue.Priority.NORMAL) + 
+            "/低" + commandQueue.getDepth(CommandDispatchQueue.Priority.LOW) + 
+            "), 暂存: " + commandQueue.getParked() + 
+            ", 最大: " + commandQueue.getMaxDepth());
+        sender.sendMessage(ChatColor.GREEN + "- 执行: " + commandQueue.getDispatched() + 
+            ", 去重: " + commandQueue.getDeduplicated() + 
+            " (提升" + commandQueue.getPromoted() + ")" + 
+            ", 丢弃: " + commandQueue.getDropped() + 
+            ", 过期: " + commandQueue.getExpired() + 
+            ", 失败: " + commandQueue.getFailed() + 
+            ", 顺延tick: " + commandQueue.getSpilledTicks());
+        sender.sendMessage(ChatColor.GREEN + "- 平均延迟: " + 
+            String.format("%.2f", commandQueue.getAverageLatencyNanos() / 1_000_000.0) + "ms, 最大延迟: " + 
+            String.format("%.2f", commandQueue.getMaxLatencyNanos() / 1_000_000.0) + "ms, 上次耗时: " + 
+            String.format("%.2f", commandQueue.getLastTickNanos() / 1_000_000.0) + "ms");
+        
+        // 显示命令编译信息
+        CommandCompiler commandCompiler = plugin.getCommandCompiler();
+        sender.sendMessage(ChatColor.GOLD + "原生命令: 已编译" + commandCompiler.getNativeCount() + "/" + 
+            commandCompiler.getCompiledCount() + "条, 直接执行" + commandCompiler.getNativeExecutions() + 
+            "次, 队列执行" + commandCompiler.getDispatchExecutions() + 
+            "次, 运行时退回" + commandCompiler.getRuntimeFallbacks() + "次" + 
+            (commandCompiler.isEnabled() ? "" : ChatColor.YELLOW + " (未启用)"));
+        
+        // 显示药水效果发送信息
+        PotionReconciler potionReconciler = plugin.getEffectManager().getPotionReconciler();
+        sender.sendMessage(ChatColor.GOLD + "药水效果: 发送" + potionReconciler.getTotalSent() + 
+            "次, 跳过" + potionReconciler.getTotalSkipped() + "次" + 
+            (potionReconciler.isEnabled() ? "" : ChatColor.YELLOW + " (比较未启用)"));
+        for (PotionReconciler.PlayerPotionStatistics stats : potionReconciler.getTopSavings(5)) {
+            if (stats.getSkipped() == 0) break;
+            sender.sendMessage(ChatColor.GREEN + "- " + stats.getPlayerName() + 
+                ": 跳过" + stats.getSkipped() + "次, 发送" + stats.getSent() + "次 (节省率: " + 
+                String.format("%.2f", stats.getSavingRate() * 100) + "%)");
+        }
         
         return true;
     }
-
+    
+    /**
+     * 格式化各个时间窗口的触发频率和成功率
+     * @param lookup 按窗口获取统计
+     * @return 格式化后的文本
+     */
+    private String formatWindows(Function<RollingCounter.Window, RollingCounter.WindowStatistics> lookup) {
+        StringBuilder builder = new StringBuilder();
+        for (RollingCounter.Window window : RollingCounter.Window.values()) {
+            RollingCounter.WindowStatistics stats = lookup.apply(window);
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(window.getDisplayName()).append(' ');
+            if (stats == null || stats.getTriggerCount() == 0) {
+                builder.append('-');
+            } else {
+                builder.append(String.format("%.2f", stats.getTriggersPerMinute()))
+                    .append(" (成功率 ").append(String.format("%.2f", stats.getSuccessRate() * 100)).append("%)");
+            }
+        }
+        return builder.toString();
+    }
+    
     private boolean handleSeasonCommand(CommandSender sender, String[] args) {
         if (!sender.hasPermission("weatherevent.command.season")) {
             sender.sendMessage(ChatColor.RED + "你没有权限使用此命令！");
@@ -392,7 +565,7 @@ public class WeatherCommand implements CommandExecutor, TabCompleter {
             sender.sendMessage(ChatColor.YELLOW + "用法:");
             sender.sendMessage(ChatColor.GRAY + "  /weather disaster list - 列出所有灾害类型");
             sender.sendMessage(ChatColor.GRAY + "  /weather disaster trigger <类型> - 触发灾害");
-            sender.sendMessage(ChatColor.GRAY + "  /weather disaster stop - 停止当前灾害");
+            sender.sendMessage(ChatColor.GRAY + "  /weather disaster stop [ID] - 停止当前世界的所有灾害或指定灾害");
             sender.sendMessage(ChatColor.GRAY + "  /weather disaster status - 查看灾害状态");
             return true;
         }
@@ -433,6 +606,21 @@ public class WeatherCommand implements CommandExecutor, TabCompleter {
                 break;
                 
             case "stop":
+                if (args.length >= 3) {
+                    int id;
+                    try {
+                        id = Integer.parseInt(args[2]);
+                    } catch (NumberFormatException e) {
+                        sender.sendMessage(ChatColor.RED + "无效的灾害ID！使用 /weather disaster status 查看");
+                        return true;
+                    }
+                    if (plugin.getDisasterManager().stopDisaster(id)) {
+                        sender.sendMessage(ChatColor.GREEN + "已停止灾害 #" + id);
+                    } else {
+                        sender.sendMessage(ChatColor.YELLOW + "灾害 #" + id + " 不存在");
+                    }
+                    break;
+                }
                 if (plugin.getDisasterManager().stopDisaster(world)) {
                     sender.sendMessage(ChatColor.GREEN + "已停止 " + world.getName() + " 的灾害");
                 } else {
@@ -441,8 +629,19 @@ public class WeatherCommand implements CommandExecutor, TabCompleter {
                 break;
                 
             case "status":
-                if (plugin.getDisasterManager().hasActiveDisaster(world)) {
-                    sender.sendMessage(ChatColor.GOLD + world.getName() + " 当前有活跃的灾害");
+                List<ActiveDisaster> disasters = plugin.getDisasterManager().getActiveDisasters(world);
+                if (!disasters.isEmpty()) {
+                    sender.sendMessage(ChatColor.GOLD + world.getName() + " 当前有 " + disasters.size() + " 个活跃的灾害:");
+                    for (ActiveDisaster disaster : disasters) {
+                        Location center = disaster.getCenter();
+                        long remaining = disaster.getConfig().getDurationSeconds() - 
+                            (System.currentTimeMillis() - disaster.getStartTime()) / 1000;
+                        sender.sendMessage(ChatColor.GREEN + "- #" + disaster.getId() + " " + 
+                            disaster.getType().getColor() + disaster.getType().getDisplayName() + 
+                            ChatColor.GREEN + " 中心 (" + center.getBlockX() + ", " + center.getBlockY() + ", " + 
+                            center.getBlockZ() + "), 半径 " + (int) disaster.getConfig().getRadius() + 
+                            ", 剩余 " + Math.max(0, remaining) + " 秒");
+                    }
                 } else {
                     sender.sendMessage(ChatColor.GREEN + world.getName() + " 当前没有活跃的灾害");
                 }
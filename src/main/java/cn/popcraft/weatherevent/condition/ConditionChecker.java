@@ -1,14 +1,17 @@
 package cn.popcraft.weatherevent.condition;
 
+import cn.popcraft.weatherevent.WeatherEvent;
+import cn.popcraft.weatherevent.config.EffectCondition;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.block.Biome;
 import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionEffectType;
 
-import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * 条件检查器
@@ -19,19 +22,18 @@ public class ConditionChecker {
     /**
      * 检查生物群系条件
      * @param player 玩家
-     * @param biomes 生物群系列表
-     * @return 如果玩家所在生物群系在列表中，返回true；否则返回false
+     * @param biomes 生物群系集合，见 {@link EffectCondition#parseBiomes}
+     * @return 如果玩家所在生物群系在集合中，返回true；否则返回false
      */
-    public static boolean checkBiome(Player player, List<String> biomes) {
-        if (biomes == null || biomes.isEmpty()) {
+    public static boolean checkBiome(Player player, Set<Biome> biomes) {
+        if (biomes == null) {
             return true; // 如果没有指定生物群系，则条件满足
         }
         
-        Location location = player.getLocation();
-        Biome playerBiome = location.getBlock().getBiome();
+        Biome playerBiome = JavaPlugin.getPlugin(WeatherEvent.class).getEffectManager()
+                .getBiomeCacheManager().getPlayerBiome(player);
         
-        return biomes.stream()
-                .anyMatch(biomeName -> playerBiome.name().equalsIgnoreCase(biomeName));
+        return biomes.contains(playerBiome);
     }
     
     /**
@@ -38,6 +38,31 @@ public class DynamicParameter {
         return 0;
     }
     
+    /**
+     * 解析整数参数的取值范围，不进行随机取值
+     * 单一值返回 [value, value]，范围值返回 [min, max]，无法解析时返回 [0, 0]
+     * @param value 参数值，可以是整数或整数范围列表[min, max]
+     * @return 长度为2的数组 {min, max}
+     */
+    public static int[] parseIntRange(Object value) {
+        if (value instanceof Number) {
+            int v = ((Number) value).intValue();
+            return new int[] {v, v};
+        } else if (value instanceof List) {
+            List<?> range = (List<?>) value;
+            if (range.size() >= 2 && range.get(0) instanceof Number && range.get(1) instanceof Number) {
+                int min = ((Number) range.get(0)).intValue();
+                int max = ((Number) range.get(1)).intValue();
+                return new int[] {Math.min(min, max), Math.max(min, max)};
+            }
+        } else if (value instanceof String) {
+            int v = parseIntParameter(value);
+            return new int[] {v, v};
+        }
+        
+        return new int[] {0, 0};
+    }
+    
     /**
      * 解析浮点数参数，支持单一值和范围值
      * @param value 参数值，可以是浮点数或浮点数范围列表[min, max]
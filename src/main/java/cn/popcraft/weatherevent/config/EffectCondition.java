@@ -1,29 +1,36 @@
 package cn.popcraft.weatherevent.config;
 
+import org.bukkit.Material;
+import org.bukkit.block.Biome;
+
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 /**
  * 效果触发条件
- * 用于存储和检查效果的触发条件
+ * 用于存储和检查效果的触发条件。生物群系和方块类型在加载时编译为 EnumSet，
+ * 检查时只需一次位运算；为 null 表示不限制
  */
 public class EffectCondition {
-    private List<String> biomes;
+    private Set<Biome> biomes;
     private Integer minHeight;
     private Integer maxHeight;
     private Integer minLight;
     private Integer maxLight;
     private List<String> weatherTypes; // 天气类型列表：clear, rain, thunder
-    private List<String> blockTypes; // 方块类型列表
+    private Set<Material> blockTypes; // 方块类型集合
     
     public EffectCondition() {
         // 默认构造函数
     }
     
-    public List<String> getBiomes() {
+    public Set<Biome> getBiomes() {
         return biomes;
     }
     
-    public void setBiomes(List<String> biomes) {
+    public void setBiomes(Set<Biome> biomes) {
         this.biomes = biomes;
     }
     
@@ -67,11 +74,52 @@ public class EffectCondition {
         this.weatherTypes = weatherTypes;
     }
     
-    public List<String> getBlockTypes() {
+    public Set<Material> getBlockTypes() {
         return blockTypes;
     }
     
-    public void setBlockTypes(List<String> blockTypes) {
+    public void setBlockTypes(Set<Material> blockTypes) {
         this.blockTypes = blockTypes;
     }
+    
+    /**
+     * 把生物群系名称编译为集合，名称不区分大小写，可以带 minecraft: 前缀
+     * @param names 生物群系名称
+     * @param unknown 无法识别的名称会加入此列表
+     * @return 生物群系集合
+     */
+    public static Set<Biome> parseBiomes(List<String> names, List<String> unknown) {
+        Set<Biome> result = EnumSet.noneOf(Biome.class);
+        for (String name : names) {
+            String key = name.trim().toUpperCase(Locale.ROOT);
+            if (key.startsWith("MINECRAFT:")) {
+                key = key.substring("MINECRAFT:".length());
+            }
+            try {
+                result.add(Biome.valueOf(key));
+            } catch (IllegalArgumentException e) {
+                unknown.add(name);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * 把方块类型名称编译为集合，名称不区分大小写，可以带 minecraft: 前缀
+     * @param names 方块类型名称
+     * @param unknown 无法识别或不是方块的名称会加入此列表
+     * @return 方块类型集合
+     */
+    public static Set<Material> parseBlockTypes(List<String> names, List<String> unknown) {
+        Set<Material> result = EnumSet.noneOf(Material.class);
+        for (String name : names) {
+            Material material = Material.matchMaterial(name.trim());
+            if (material != null && material.isBlock()) {
+                result.add(material);
+            } else {
+                unknown.add(name);
+            }
+        }
+        return result;
+    }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package cn.popcraft.weatherevent.config;
 
 import cn.popcraft.weatherevent.WeatherEvent;
 import cn.popcraft.weatherevent.effects.BaseWeatherEffect;
+import cn.popcraft.weatherevent.message.PlaceholderContext;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
 import net.md_5.bungee.api.ChatMessageType;
@@ -117,9 +118,7 @@ public class SharedEffect {
      */
     public void apply(Player player) {
         // 应用药水效果
-        for (PotionEffect effect : potionEffects) {
-            player.addPotionEffect(effect);
-        }
+        plugin.getEffectManager().getPotionReconciler().applyAll(player, potionEffects);
 
         // 应用命令
         if (!commands.isEmpty()) {
@@ -128,9 +127,9 @@ public class SharedEffect {
                 @SuppressWarnings("unchecked")
                 List<String> commandList = (List<String>) commands.get("list");
                 if (commandList != null) {
+                    PlaceholderContext context = new PlaceholderContext(player);
                     for (String cmd : commandList) {
-                        String processedCmd = cmd.replace("%player%", player.getName());
-                        plugin.getServer().dispatchCommand(plugin.getServer().getConsoleSender(), processedCmd);
+                        plugin.getCommandCompiler().compile(cmd).execute(context);
                     }
                 }
             }
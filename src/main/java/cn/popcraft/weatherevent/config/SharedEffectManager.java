@@ -2,6 +2,8 @@ package cn.popcraft.weatherevent.config;
 
 import cn.popcraft.weatherevent.WeatherEvent;
 import cn.popcraft.weatherevent.condition.ConditionChecker;
+import cn.popcraft.weatherevent.manager.CommandCompiler;
+import cn.popcraft.weatherevent.message.PlaceholderContext;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitRunnable;
@@ -75,14 +77,10 @@ public class SharedEffectManager {
         // 处理命令
         ConfigurationSection commandsSection = effectConfig.getConfigurationSection("commands");
         if (commandsSection != null) {
+            CommandCompiler commandCompiler = plugin.getCommandCompiler();
+            PlaceholderContext context = new PlaceholderContext(player);
             for (String command : commandsSection.getStringList("list")) {
-                String processedCmd = command.replace("%player%", player.getName())
-                        .replace("%player_name%", player.getName())
-                        .replace("%player_x%", String.valueOf(player.getLocation().getX()))
-                        .replace("%player_y%", String.valueOf(player.getLocation().getY()))
-                        .replace("%player_z%", String.valueOf(player.getLocation().getZ()));
-                
-                plugin.getServer().dispatchCommand(plugin.getServer().getConsoleSender(), processedCmd);
+                commandCompiler.compile(command).execute(context);
             }
         }
         
@@ -1,14 +1,25 @@
 package cn.popcraft.weatherevent.disaster;
 
 import cn.popcraft.weatherevent.WeatherEvent;
-import org.bukkit.Bukkit;
+import cn.popcraft.weatherevent.manager.CommandCompiler;
+import cn.popcraft.weatherevent.manager.CommandDispatchQueue;
+import cn.popcraft.weatherevent.manager.PermissionManager;
+import cn.popcraft.weatherevent.manager.PotionReconciler;
+import cn.popcraft.weatherevent.message.PlaceholderContext;
+import org.bukkit.Color;
 import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.Particle;
 import org.bukkit.World;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
+import org.bukkit.potion.PotionEffect;
+import org.bukkit.potion.PotionEffectType;
 import org.bukkit.util.Vector;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -17,6 +28,21 @@ import java.util.List;
  */
 public class ActiveDisaster {
     
+    // 各类灾害的粒子效果，所有实例共用
+    private static final ParticleEffect TORNADO_PARTICLES = 
+            ParticleEffect.funnel(Particle.CLOUD, 20.0, 0.5, 6.0, 12, 6);
+    private static final ParticleEffect HAILSTORM_PARTICLES = 
+            ParticleEffect.area(Particle.BLOCK_CRACK, Material.ICE.createBlockData(), 100, 20, 10, 0, 10, 0.5);
+    private static final ParticleEffect SANDSTORM_PARTICLES = 
+            ParticleEffect.area(Particle.REDSTONE, new Particle.DustOptions(Color.fromRGB(204, 179, 102), 1.0f), 200, 2, 15, 5, 15, 0.1);
+    private static final ParticleEffect BLIZZARD_PARTICLES = 
+            ParticleEffect.area(Particle.SNOWFLAKE, null, 150, 15, 12, 0, 12, 0.05);
+    private static final ParticleEffect HEATWAVE_PARTICLES = 
+            ParticleEffect.area(Particle.FLAME, null, 30, 1, 10, 0, 10, 0.02);
+    private static final ParticleEffect FROST_PARTICLES = 
+            ParticleEffect.area(Particle.SNOWFLAKE, null, 50, 1, 8, 2, 8, 0.02);
+    
+    private final int id;
     private final DisasterType type;
     private final DisasterConfig config;
     private final World world;
@@ -27,16 +53,34 @@ public class ActiveDisaster {
     private int tickCount;
     private boolean ended;
     
+    // 灾害命令的占位符上下文
+    private final PlaceholderContext placeholderContext;
+    
+    // 本次更新受影响的玩家和实体，每次更新只查询一次，由伤害和各类效果共用；
+    // 玩家由灾害管理器按区块索引分配
+    private final double radiusSquared;
+    private final boolean needsEntities;
+    private final List<Player> affectedPlayers;
+    private final List<LivingEntity> affectedEntities;
+    private final List<LivingEntity> nearbyMobs;
+    private final Location scratch;
+    private int mobCursor; // 生物数量超过上限时，下一次更新从这里开始轮流处理
+    
+    // 状态效果，创建时按灾害类型生成
+    private final List<PotionEffect> statusEffects;
+    
     /**
      * 创建活跃灾害
+     * @param id 灾害ID
      * @param type 灾害类型
      * @param config 灾害配置
      * @param world 世界
      * @param center 中心位置
      * @param plugin 插件实例
      */
-    public ActiveDisaster(DisasterType type, DisasterConfig config, World world, 
+    public ActiveDisaster(int id, DisasterType type, DisasterConfig config, World world, 
                          Location center, WeatherEvent plugin) {
+        this.id = id;
         this.type = type;
         this.config = config;
         this.world = world;
@@ -45,6 +89,19 @@ public class ActiveDisaster {
         this.startTime = System.currentTimeMillis();
         this.tickCount = 0;
         this.ended = false;
+        this.placeholderContext = new PlaceholderContext(null, world)
+                .set("x", center.getX())
+                .set("y", center.getY())
+                .set("z", center.getZ())
+                .set("disaster", type.getId());
+        this.radiusSquared = config.getRadius() * config.getRadius();
+        // 只有伤害、龙卷风和冰雹需要作用于玩家以外的实体
+        this.needsEntities = config.getDamagePerSecond() > 0 || type == DisasterType.TORNADO || type == DisasterType.HAILSTORM;
+        this.affectedPlayers = new ArrayList<>();
+        this.affectedEntities = new ArrayList<>();
+        this.nearbyMobs = new ArrayList<>();
+        this.scratch = new Location(world, 0, 0, 0);
+        this.statusEffects = createStatusEffects(type);
         
         // 应用开始效果
         applyStartEffects();
@@ -57,6 +114,7 @@ public class ActiveDisaster {
         if (ended) return;
         
         tickCount++;
+        placeholderContext.set("tick", tickCount).set("duration", tickCount);
         
         // 检查是否结束
         long elapsedSeconds = (System.currentTimeMillis() - startTime) / 1000;
@@ -65,6 +123,9 @@ public class ActiveDisaster {
             return;
         }
         
+        // 查询受影响的玩家和实体
+        collectAffected();
+        
         // 应用每秒效果
         applyTickEffects();
         
@@ -77,21 +138,23 @@ public class ActiveDisaster {
      */
     private void applyStartEffects() {
         // 执行开始命令
+        CommandCompiler commandCompiler = plugin.getCommandCompiler();
         for (String command : config.getStartCommands()) {
-            String processedCommand = command
-                    .replace("%world%", world.getName())
-                    .replace("%x%", String.valueOf(center.getX()))
-                    .replace("%y%", String.valueOf(center.getY()))
-                    .replace("%z%", String.valueOf(center.getZ()))
-                    .replace("%disaster%", type.getId());
-            
-            Bukkit.dispatchCommand(Bukkit.getConsoleSender(), processedCommand);
+            commandCompiler.compile(command, CommandDispatchQueue.Priority.HIGH)
+                    .execute(placeholderContext);
         }
         
         // 发送警告消息
         if (!config.getWarningMessage().isEmpty()) {
+            // 开始时尚未登记到索引，直接按距离筛选玩家
+            affectedPlayers.clear();
+            for (Player player : world.getPlayers()) {
+                if (contains(player.getLocation(scratch))) {
+                    affectedPlayers.add(player);
+                }
+            }
             String message = type.getColor() + config.getWarningMessage();
-            for (Player player : getAffectedPlayers()) {
+            for (Player player : affectedPlayers) {
                 player.sendMessage(message);
             }
         }
@@ -102,16 +165,9 @@ public class ActiveDisaster {
      */
     private void applyTickEffects() {
         // 执行每秒命令
+        CommandCompiler commandCompiler = plugin.getCommandCompiler();
         for (String command : config.getTickCommands()) {
-            String processedCommand = command
-                    .replace("%world%", world.getName())
-                    .replace("%x%", String.valueOf(center.getX()))
-                    .replace("%y%", String.valueOf(center.getY()))
-                    .replace("%z%", String.valueOf(center.getZ()))
-                    .replace("%disaster%", type.getId())
-                    .replace("%tick%", String.valueOf(tickCount));
-            
-            Bukkit.dispatchCommand(Bukkit.getConsoleSender(), processedCommand);
+            commandCompiler.compile(command).execute(placeholderContext);
         }
         
         // 对受影响的实体造成伤害
@@ -155,7 +211,7 @@ public class ActiveDisaster {
      */
     private void applyTornadoEffects() {
         // 将实体拉向中心
-        for (LivingEntity entity : getAffectedEntities()) {
+        for (LivingEntity entity : affectedEntities) {
             Location entityLoc = entity.getLocation();
             Vector direction = center.toVector().subtract(entityLoc.toVector()).normalize();
             Vector velocity = direction.multiply(0.5);
@@ -165,10 +221,7 @@ public class ActiveDisaster {
         
         // 生成粒子效果
         if (tickCount % 5 == 0) {
-            String particleCommand = "particle minecraft:cloud " + 
-                    center.getX() + " " + (center.getY() + 10) + " " + center.getZ() + 
-                    " 3 10 3 0.1 50 force";
-            Bukkit.dispatchCommand(Bukkit.getConsoleSender(), particleCommand);
+            renderParticles(TORNADO_PARTICLES);
         }
     }
     
@@ -191,14 +244,11 @@ public class ActiveDisaster {
     private void applyHailstormEffects() {
         // 生成冰雹粒子
         if (tickCount % 3 == 0) {
-            String particleCommand = "particle minecraft:block ice " + 
-                    center.getX() + " " + (center.getY() + 20) + " " + center.getZ() + 
-                    " 10 0 10 0.5 100 force";
-            Bukkit.dispatchCommand(Bukkit.getConsoleSender(), particleCommand);
+            renderParticles(HAILSTORM_PARTICLES);
         }
         
         // 减缓实体移动速度
-        for (LivingEntity entity : getAffectedEntities()) {
+        for (LivingEntity entity : affectedEntities) {
             entity.setVelocity(entity.getVelocity().multiply(0.8));
         }
     }
@@ -209,19 +259,11 @@ public class ActiveDisaster {
     private void applySandstormEffects() {
         // 生成沙尘粒子
         if (tickCount % 2 == 0) {
-            String particleCommand = "particle minecraft:dust 0.8 0.7 0.4 1 " + 
-                    center.getX() + " " + (center.getY() + 2) + " " + center.getZ() + 
-                    " 15 5 15 0.1 200 force";
-            Bukkit.dispatchCommand(Bukkit.getConsoleSender(), particleCommand);
+            renderParticles(SANDSTORM_PARTICLES);
         }
         
         // 降低能见度（通过给予失明效果）
-        for (Player player : getAffectedPlayers()) {
-            // 给予短暂的失明效果
-            String effectCommand = "effect give " + player.getName() + 
-                    " minecraft:blindness 2 0 true";
-            Bukkit.dispatchCommand(Bukkit.getConsoleSender(), effectCommand);
-        }
+        applyStatusEffects();
     }
     
     /**
@@ -230,18 +272,11 @@ public class ActiveDisaster {
     private void applyBlizzardEffects() {
         // 生成雪花粒子
         if (tickCount % 2 == 0) {
-            String particleCommand = "particle minecraft:snowflake " + 
-                    center.getX() + " " + (center.getY() + 15) + " " + center.getZ() + 
-                    " 12 0 12 0.05 150 force";
-            Bukkit.dispatchCommand(Bukkit.getConsoleSender(), particleCommand);
+            renderParticles(BLIZZARD_PARTICLES);
         }
         
         // 给予缓慢效果
-        for (Player player : getAffectedPlayers()) {
-            String effectCommand = "effect give " + player.getName() + 
-                    " minecraft:slowness 3 1 true";
-            Bukkit.dispatchCommand(Bukkit.getConsoleSender(), effectCommand);
-        }
+        applyStatusEffects();
     }
     
     /**
@@ -264,18 +299,11 @@ public class ActiveDisaster {
     private void applyHeatwaveEffects() {
         // 生成热浪粒子
         if (tickCount % 10 == 0) {
-            String particleCommand = "particle minecraft:flame " + 
-                    center.getX() + " " + (center.getY() + 1) + " " + center.getZ() + 
-                    " 10 0 10 0.02 30 force";
-            Bukkit.dispatchCommand(Bukkit.getConsoleSender(), particleCommand);
+            renderParticles(HEATWAVE_PARTICLES);
         }
         
         // 给予饥饿效果
-        for (Player player : getAffectedPlayers()) {
-            String effectCommand = "effect give " + player.getName() + 
-                    " minecraft:hunger 5 0 true";
-            Bukkit.dispatchCommand(Bukkit.getConsoleSender(), effectCommand);
-        }
+        applyStatusEffects();
     }
     
     /**
@@ -284,31 +312,64 @@ public class ActiveDisaster {
     private void applyFrostEffects() {
         // 生成霜冻粒子
         if (tickCount % 5 == 0) {
-            String particleCommand = "particle minecraft:snowflake " + 
-                    center.getX() + " " + (center.getY() + 1) + " " + center.getZ() + 
-                    " 8 2 8 0.02 50 force";
-            Bukkit.dispatchCommand(Bukkit.getConsoleSender(), particleCommand);
+            renderParticles(FROST_PARTICLES);
         }
         
         // 给予冻结效果
-        for (Player player : getAffectedPlayers()) {
-            String effectCommand = "effect give " + player.getName() + 
-                    " minecraft:slowness 3 2 true";
-            Bukkit.dispatchCommand(Bukkit.getConsoleSender(), effectCommand);
+        applyStatusEffects();
+    }
+    
+    /**
+     * 对范围内的玩家直接应用状态效果
+     * 效果每次更新重新应用，玩家已有足够时长的相同效果时不再发送
+     */
+    private void applyStatusEffects() {
+        PotionReconciler potionReconciler = plugin.getEffectManager().getPotionReconciler();
+        for (Player player : affectedPlayers) {
+            potionReconciler.applyAll(player, statusEffects, DisasterManager.UPDATE_INTERVAL_TICKS);
+        }
+    }
+    
+    /**
+     * 获取灾害类型的状态效果，与原先的 effect give 命令一致（隐藏粒子）
+     * @param type 灾害类型
+     * @return 状态效果
+     */
+    private static List<PotionEffect> createStatusEffects(DisasterType type) {
+        switch (type) {
+            case SANDSTORM:
+                return Collections.singletonList(new PotionEffect(PotionEffectType.BLINDNESS, 40, 0, false, false));
+            case BLIZZARD:
+                return Collections.singletonList(new PotionEffect(PotionEffectType.SLOW, 60, 1, false, false));
+            case HEATWAVE:
+                return Collections.singletonList(new PotionEffect(PotionEffectType.HUNGER, 100, 0, false, false));
+            case FROST:
+                return Collections.singletonList(new PotionEffect(PotionEffectType.SLOW, 60, 2, false, false));
+            default:
+                return Collections.emptyList();
         }
     }
     
+    /**
+     * 渲染粒子效果
+     * @param effect 粒子效果
+     */
+    private void renderParticles(ParticleEffect effect) {
+        plugin.getDisasterManager().getParticleRenderer().render(world, center, effect);
+    }
+    
     /**
      * 对受影响的实体造成伤害
      */
     private void applyDamage() {
         if (config.getDamagePerSecond() <= 0) return;
         
-        for (LivingEntity entity : getAffectedEntities()) {
+        PermissionManager permissionManager = plugin.getEffectManager().getPermissionManager();
+        for (LivingEntity entity : affectedEntities) {
             if (entity instanceof Player) {
                 Player player = (Player) entity;
-                // 检查玩家是否免疫
-                if (player.hasPermission("weatherevent.disaster.bypass")) {
+                // 检查玩家是否免疫（使用缓存的权限）
+                if (permissionManager.hasDisasterBypass(player)) {
                     continue;
                 }
             }
@@ -322,16 +383,10 @@ public class ActiveDisaster {
      */
     public void applyEndEffects() {
         // 执行结束命令
+        CommandCompiler commandCompiler = plugin.getCommandCompiler();
         for (String command : config.getEndCommands()) {
-            String processedCommand = command
-                    .replace("%world%", world.getName())
-                    .replace("%x%", String.valueOf(center.getX()))
-                    .replace("%y%", String.valueOf(center.getY()))
-                    .replace("%z%", String.valueOf(center.getZ()))
-                    .replace("%disaster%", type.getId())
-                    .replace("%duration%", String.valueOf(tickCount));
-            
-            Bukkit.dispatchCommand(Bukkit.getConsoleSender(), processedCommand);
+            commandCompiler.compile(command, CommandDispatchQueue.Priority.HIGH)
+                    .execute(placeholderContext);
         }
         
         // 发送结束消息
@@ -343,31 +398,84 @@ public class ActiveDisaster {
     }
     
     /**
-     * 获取受影响的玩家
-     * @return 受影响的玩家列表
+     * 检查位置是否在灾害范围内
+     * @param location 位置
+     * @return 是否在范围内
+     */
+    public boolean contains(Location location) {
+        return location.getWorld() == world && contains(location.getX(), location.getY(), location.getZ());
+    }
+    
+    /**
+     * 检查坐标是否在灾害范围内（到中心的实际距离）
+     * @param x X坐标
+     * @param y Y坐标
+     * @param z Z坐标
+     * @return 是否在范围内
+     */
+    public boolean contains(double x, double y, double z) {
+        double dx = x - center.getX();
+        double dy = y - center.getY();
+        double dz = z - center.getZ();
+        return dx * dx + dy * dy + dz * dz <= radiusSquared;
+    }
+    
+    /**
+     * 清空上一次分配的玩家（灾害管理器调用）
      */
-    private List<Player> getAffectedPlayers() {
-        return world.getPlayers();
+    void clearAffectedPlayers() {
+        affectedPlayers.clear();
     }
     
     /**
-     * 获取受影响的实体
-     * @return 受影响的实体列表
+     * 分配一个范围内的玩家（灾害管理器调用）
+     * @param player 玩家
      */
-    private List<LivingEntity> getAffectedEntities() {
-        List<LivingEntity> entities = new java.util.ArrayList<>();
+    void addAffectedPlayer(Player player) {
+        affectedPlayers.add(player);
+    }
+    
+    /**
+     * 查询本次更新受影响的实体
+     * 玩家已由灾害管理器按实际距离分配；其他生物只做一次范围查询，
+     * 数量超过上限时每次更新处理其中一段，多次更新轮流覆盖全部生物
+     */
+    private void collectAffected() {
+        affectedEntities.clear();
+        affectedEntities.addAll(affectedPlayers);
         
-        for (Entity entity : world.getNearbyEntities(center, config.getRadius(), 
-                config.getRadius(), config.getRadius())) {
-            if (entity instanceof LivingEntity) {
-                entities.add((LivingEntity) entity);
+        if (!needsEntities) {
+            return;
+        }
+        
+        double radius = config.getRadius();
+        nearbyMobs.clear();
+        for (Entity entity : world.getNearbyEntities(center, radius, radius, radius)) {
+            if (entity instanceof LivingEntity && !(entity instanceof Player) && 
+                    contains(entity.getLocation(scratch))) {
+                nearbyMobs.add((LivingEntity) entity);
             }
         }
         
-        return entities;
+        int count = nearbyMobs.size();
+        int limit = plugin.getDisasterManager().getMaxEntitiesPerTick();
+        if (limit <= 0 || count <= limit) {
+            affectedEntities.addAll(nearbyMobs);
+            mobCursor = 0;
+            return;
+        }
+        int start = mobCursor % count;
+        for (int i = 0; i < limit; i++) {
+            affectedEntities.add(nearbyMobs.get((start + i) % count));
+        }
+        mobCursor = (start + limit) % count;
     }
     
     // Getters
+    public int getId() {
+        return id;
+    }
+    
     public DisasterType getType() {
         return type;
     }
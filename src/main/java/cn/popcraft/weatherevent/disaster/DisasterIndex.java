@@ -0,0 +1,143 @@
+package cn.popcraft.weatherevent.disaster;
+
+import cn.popcraft.weatherevent.manager.LongObjectMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 单个世界的灾害区块占用索引
+ * 每个灾害登记到与其影响范围相交的所有区块，查询位置所在的灾害只需读取一个区块的条目，
+ * 再按实际距离确认。只能在主线程使用
+ */
+public class DisasterIndex {
+    private static final ActiveDisaster[] EMPTY = new ActiveDisaster[0];
+
+    private final List<ActiveDisaster> disasters;
+    private final LongObjectMap<ActiveDisaster[]> chunks;
+
+    public DisasterIndex() {
+        this.disasters = new ArrayList<>();
+        this.chunks = new LongObjectMap<>(64);
+    }
+
+    /**
+     * 登记灾害
+     * @param disaster 灾害
+     */
+    public void add(ActiveDisaster disaster) {
+        disasters.add(disaster);
+        forEachChunk(disaster, key -> {
+            ActiveDisaster[] bucket = chunks.get(key);
+            if (bucket == null) {
+                chunks.put(key, new ActiveDisaster[] {disaster});
+            } else {
+                ActiveDisaster[] grown = Arrays.copyOf(bucket, bucket.length + 1);
+                grown[bucket.length] = disaster;
+                chunks.put(key, grown);
+            }
+        });
+    }
+
+    /**
+     * 移除灾害
+     * @param disaster 灾害
+     */
+    public void remove(ActiveDisaster disaster) {
+        if (!disasters.remove(disaster)) {
+            return;
+        }
+        forEachChunk(disaster, key -> {
+            ActiveDisaster[] bucket = chunks.get(key);
+            if (bucket == null) {
+                return;
+            }
+            if (bucket.length == 1) {
+                chunks.remove(key);
+                return;
+            }
+            ActiveDisaster[] shrunk = new ActiveDisaster[bucket.length - 1];
+            int index = 0;
+            for (ActiveDisaster existing : bucket) {
+                if (existing != disaster && index < shrunk.length) {
+                    shrunk[index++] = existing;
+                }
+            }
+            chunks.put(key, shrunk);
+        });
+    }
+
+    /**
+     * 获取覆盖区块的灾害（尚未按距离确认）
+     * @param chunkX 区块X坐标
+     * @param chunkZ 区块Z坐标
+     * @return 灾害数组，不能修改
+     */
+    public ActiveDisaster[] getCandidates(int chunkX, int chunkZ) {
+        ActiveDisaster[] bucket = chunks.get(LongObjectMap.pack(chunkX, chunkZ));
+        return bucket == null ? EMPTY : bucket;
+    }
+
+    /**
+     * 获取坐标所在的灾害
+     * @param x X坐标
+     * @param y Y坐标
+     * @param z Z坐标
+     * @return 灾害，不在任何灾害范围内时返回 null
+     */
+    public ActiveDisaster getDisasterAt(double x, double y, double z) {
+        for (ActiveDisaster disaster : getCandidates((int) Math.floor(x) >> 4, (int) Math.floor(z) >> 4)) {
+            if (disaster.contains(x, y, z)) {
+                return disaster;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 获取世界中的所有灾害
+     * @return 灾害列表，不能修改
+     */
+    public List<ActiveDisaster> getDisasters() {
+        return disasters;
+    }
+
+    public boolean isEmpty() {
+        return disasters.isEmpty();
+    }
+
+    public int size() {
+        return disasters.size();
+    }
+
+    /**
+     * 遍历与灾害影响范围（水平圆）相交的区块
+     */
+    private static void forEachChunk(ActiveDisaster disaster, ChunkAction action) {
+        double centerX = disaster.getCenter().getX();
+        double centerZ = disaster.getCenter().getZ();
+        double radius = disaster.getConfig().getRadius();
+        double radiusSquared = radius * radius;
+        int minChunkX = (int) Math.floor(centerX - radius) >> 4;
+        int maxChunkX = (int) Math.floor(centerX + radius) >> 4;
+        int minChunkZ = (int) Math.floor(centerZ - radius) >> 4;
+        int maxChunkZ = (int) Math.floor(centerZ + radius) >> 4;
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            // 区块内离中心最近的点
+            double nearestX = Math.max(chunkX << 4, Math.min(centerX, (chunkX << 4) + 16));
+            double dx = nearestX - centerX;
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                double nearestZ = Math.max(chunkZ << 4, Math.min(centerZ, (chunkZ << 4) + 16));
+                double dz = nearestZ - centerZ;
+                if (dx * dx + dz * dz <= radiusSquared) {
+                    action.accept(LongObjectMap.pack(chunkX, chunkZ));
+                }
+            }
+        }
+    }
+
+    private interface ChunkAction {
+        void accept(long key);
+    }
+}
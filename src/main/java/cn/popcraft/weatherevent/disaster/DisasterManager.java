@@ -7,18 +7,37 @@ import org.bukkit.World;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.weather.ThunderChangeEvent;
 import org.bukkit.event.weather.WeatherChangeEvent;
+import org.bukkit.event.world.TimeSkipEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.scheduler.BukkitTask;
 
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.logging.Logger;
 
 /**
  * 灾害管理器
- * 负责管理天气灾害事件
+ * 负责管理天气灾害事件。一个世界可以同时存在多个局部灾害，按ID管理，
+ * 并按世界登记到区块占用索引中，用于快速判断位置所在的灾害。
+ * 灾害触发不再逐秒掷骰：按世界当前的天气和昼夜状态取出预先计算的可触发灾害，
+ * 由等效的逐秒几率换算为泊松过程的速率，采样下一次触发时间并只安排一次唤醒；
+ * 天气、昼夜或冷却状态变化时重新采样
  */
 public class DisasterManager implements Listener {
     
+    // 灾害更新间隔（tick）
+    public static final int UPDATE_INTERVAL_TICKS = 20;
+    
+    // 天气类型，下标用于可触发灾害表
+    private static final String[] WEATHER_TYPES = {"clear", "rain", "thunder"};
+    // 唤醒延迟上限（tick），速率极低时视为不会触发
+    private static final long MAX_WAKEUP_DELAY = 20L * 60 * 60 * 24;
+    
     private final WeatherEvent plugin;
     private final Logger logger;
     
@@ -27,28 +46,59 @@ public class DisasterManager implements Listener {
     private double globalChance; // 全局触发几率
     private int minPlayersOnline; // 最少在线玩家数
     private boolean announceDisasters; // 是否广播灾害
+    private int maxEntitiesPerTick; // 每个灾害每次更新最多影响的非玩家生物数量
+    private int maxPerWorld; // 每个世界最多同时存在的灾害数量
+    private long tickBudgetNanos; // 所有灾害每次更新共用的时间预算（纳秒）
     
     // 灾害配置映射
     private final Map<DisasterType, DisasterConfig> disasterConfigs;
     
-    // 活跃灾害
-    private final Map<String, ActiveDisaster> activeDisasters;
+    // 活跃灾害，按ID索引
+    private final Map<Integer, ActiveDisaster> activeDisasters;
     
-    // 灾害冷却
+    // 各世界的灾害区块占用索引
+    private final Map<UUID, DisasterIndex> worldIndexes;
+    
+    // 灾害冷却，按世界和灾害类型记录
     private final Map<String, Long> disasterCooldowns;
     
+    // 按 (天气, 是否夜晚) 预先计算的可触发灾害，下标为 天气下标 * 2 + (夜晚 ? 1 : 0)
+    private DisasterConfig[][] eligibleByState;
+    private boolean nightSensitive; // 是否有只在夜晚触发的灾害，没有时昼夜变化不需要重新采样
+    
+    // 各世界下一次唤醒的任务
+    private final Map<UUID, BukkitTask> wakeups;
+    private BukkitTask updateTask;
+    
+    private long wakeupCount;     // 唤醒次数
+    private long triggerAttempts; // 到达采样的触发时间的次数
+    
+    private int nextDisasterId;
+    private int updateCursor; // 超出时间预算时，下一次从这里开始更新
+    private long deferredUpdates; // 因超出时间预算推迟的灾害更新次数
+    
+    // 灾害粒子渲染器
+    private final DisasterParticleRenderer particleRenderer;
+    
     public DisasterManager(WeatherEvent plugin) {
         this.plugin = plugin;
         this.logger = plugin.getLogger();
         this.disasterConfigs = new HashMap<>();
-        this.activeDisasters = new HashMap<>();
+        this.activeDisasters = new LinkedHashMap<>();
+        this.worldIndexes = new HashMap<>();
         this.disasterCooldowns = new HashMap<>();
+        this.wakeups = new HashMap<>();
+        this.eligibleByState = new DisasterConfig[WEATHER_TYPES.length * 2][0];
+        this.particleRenderer = new DisasterParticleRenderer();
         
         // 默认配置
         this.enabled = false;
         this.globalChance = 0.1;
         this.minPlayersOnline = 1;
         this.announceDisasters = true;
+        this.maxEntitiesPerTick = 64;
+        this.maxPerWorld = 3;
+        this.tickBudgetNanos = 2_000_000L;
     }
     
     /**
@@ -61,6 +111,9 @@ public class DisasterManager implements Listener {
             return;
         }
         
+        // 停止之前的任务，重新加载时不会重复启动
+        stopTasks();
+        
         this.enabled = config.getBoolean("enabled", false);
         if (!enabled) {
             logger.info("灾害系统已禁用");
@@ -71,13 +124,27 @@ public class DisasterManager implements Listener {
         this.globalChance = config.getDouble("global-chance", 0.1);
         this.minPlayersOnline = config.getInt("min-players-online", 1);
         this.announceDisasters = config.getBoolean("announce-disasters", true);
+        this.maxEntitiesPerTick = config.getInt("max-entities-per-tick", 64);
+        this.maxPerWorld = Math.max(1, config.getInt("max-per-world", 3));
+        this.tickBudgetNanos = config.getLong("tick-budget-nanos", 2_000_000L);
+        particleRenderer.configure(
+            plugin.getConfig().getDouble("performance.disaster-particles.view-distance", 32.0),
+            plugin.getConfig().getInt("performance.disaster-particles.world-budget", 2000));
         
         // 加载灾害配置
         loadDisasterConfigs(config.getConfigurationSection("disasters"));
         
+        // 预先计算各状态下可触发的灾害
+        buildEligibleTable();
+        
         // 启动灾害更新任务
         startDisasterUpdateTask();
         
+        // 为每个世界安排下一次触发
+        for (World world : Bukkit.getWorlds()) {
+            scheduleWorld(world);
+        }
+        
         logger.info("灾害系统已启用，共加载 " + disasterConfigs.size() + " 种灾害");
     }
     
@@ -103,82 +170,263 @@ public class DisasterManager implements Listener {
         }
     }
     
+    /**
+     * 预先计算每种 (天气, 昼夜) 状态下满足条件的灾害
+     */
+    private void buildEligibleTable() {
+        nightSensitive = false;
+        for (int weather = 0; weather < WEATHER_TYPES.length; weather++) {
+            for (int night = 0; night < 2; night++) {
+                List<DisasterConfig> eligible = new ArrayList<>();
+                for (DisasterType type : DisasterType.values()) {
+                    DisasterConfig config = disasterConfigs.get(type);
+                    if (config == null || !config.isEnabled() || getTriggerChance(config) <= 0) {
+                        continue;
+                    }
+                    if (config.isNightOnly()) {
+                        nightSensitive = true;
+                    }
+                    if (config.getAllowedWeathers().contains(WEATHER_TYPES[weather]) && 
+                        (!config.isNightOnly() || night == 1)) {
+                        eligible.add(config);
+                    }
+                }
+                eligibleByState[weather * 2 + night] = eligible.toArray(new DisasterConfig[0]);
+            }
+        }
+    }
+    
     /**
      * 启动灾害更新任务
      */
     private void startDisasterUpdateTask() {
-        // 每秒检查一次灾害
-        Bukkit.getScheduler().runTaskTimer(plugin, () -> {
+        // 每秒更新活跃灾害
+        updateTask = Bukkit.getScheduler().runTaskTimer(plugin, () -> {
             if (!enabled) return;
             
             // 检查活跃灾害
             updateActiveDisasters();
-            
-            // 尝试触发新灾害
-            if (Bukkit.getOnlinePlayers().size() >= minPlayersOnline) {
-                tryTriggerDisasters();
+        }, UPDATE_INTERVAL_TICKS, UPDATE_INTERVAL_TICKS); // 每秒更新一次
+    }
+    
+    /**
+     * 停止更新任务和所有世界的唤醒
+     */
+    private void stopTasks() {
+        if (updateTask != null) {
+            updateTask.cancel();
+            updateTask = null;
+        }
+        for (BukkitTask task : wakeups.values()) {
+            task.cancel();
+        }
+        wakeups.clear();
+    }
+    
+    /**
+     * 为世界采样下一次触发时间并安排唤醒
+     * 原先每秒对每种可触发灾害依次以几率 p 掷骰，一秒内不触发的概率为 Π(1 - p)，
+     * 等效的泊松速率为 Σ -ln(1 - p)，两次触发之间的间隔服从该速率的指数分布。
+     * 如果冷却结束或昼夜变化早于采样的触发时间，则在那时重新采样
+     * @param world 世界
+     */
+    private void scheduleWorld(World world) {
+        BukkitTask previous = wakeups.remove(world.getUID());
+        if (previous != null) {
+            previous.cancel();
+        }
+        if (!enabled) {
+            return;
+        }
+        
+        long now = System.currentTimeMillis();
+        double rate = 0;
+        long nextCooldownEnd = Long.MAX_VALUE;
+        for (DisasterConfig config : eligibleByState[getStateIndex(world)]) {
+            long cooldownEnd = getCooldownEnd(world, config.getType());
+            if (cooldownEnd > now) {
+                nextCooldownEnd = Math.min(nextCooldownEnd, cooldownEnd);
+            } else {
+                rate += -Math.log(1 - getTriggerChance(config));
+            }
+        }
+        
+        long delay = MAX_WAKEUP_DELAY;
+        boolean trigger = false;
+        if (rate > 0) {
+            double seconds = -Math.log(1 - ThreadLocalRandom.current().nextDouble()) / rate;
+            if (seconds * 20 < MAX_WAKEUP_DELAY) {
+                delay = (long) Math.ceil(seconds * 20);
+                trigger = true;
+            }
+        }
+        if (nextCooldownEnd != Long.MAX_VALUE) {
+            long cooldownTicks = (nextCooldownEnd - now + 49) / 50;
+            if (cooldownTicks < delay) {
+                delay = cooldownTicks;
+                trigger = false;
+            }
+        }
+        if (nightSensitive) {
+            long dayNightTicks = getTicksUntilDayNightChange(world);
+            if (dayNightTicks < delay) {
+                delay = dayNightTicks;
+                trigger = false;
+            }
+        }
+        
+        UUID worldId = world.getUID();
+        boolean fire = trigger;
+        wakeups.put(worldId, Bukkit.getScheduler().runTaskLater(plugin, () -> onWakeup(worldId, fire), Math.max(1, delay)));
+    }
+    
+    /**
+     * 世界的唤醒到达
+     * @param worldId 世界ID
+     * @param fire 是否到达采样的触发时间
+     */
+    private void onWakeup(UUID worldId, boolean fire) {
+        wakeups.remove(worldId);
+        World world = Bukkit.getWorld(worldId);
+        if (world == null || !enabled) {
+            return;
+        }
+        wakeupCount++;
+        
+        if (fire) {
+            triggerAttempts++;
+            tryTriggerDisaster(world);
+        }
+        scheduleWorld(world);
+    }
+    
+    /**
+     * 在采样的触发时间尝试触发一种灾害
+     * 不满足在线人数或灾害数量条件时放弃本次触发，与原先不掷骰的行为等效
+     * @param world 世界
+     */
+    private void tryTriggerDisaster(World world) {
+        if (Bukkit.getOnlinePlayers().size() < minPlayersOnline || getDisasterCount(world) >= maxPerWorld) {
+            return;
+        }
+        
+        // 与原先依次掷骰一致：第 i 种被选中的概率为 p_i × Π_{j<i}(1 - p_j)，再以至少一种触发为条件
+        DisasterConfig[] eligible = eligibleByState[getStateIndex(world)];
+        long now = System.currentTimeMillis();
+        double noneTriggered = 1;
+        for (DisasterConfig config : eligible) {
+            if (getCooldownEnd(world, config.getType()) <= now) {
+                noneTriggered *= 1 - getTriggerChance(config);
             }
-        }, 20L, 20L); // 每秒更新一次
+        }
+        double roll = ThreadLocalRandom.current().nextDouble() * (1 - noneTriggered);
+        double remaining = 1;
+        DisasterConfig selected = null;
+        for (DisasterConfig config : eligible) {
+            if (getCooldownEnd(world, config.getType()) > now) {
+                continue;
+            }
+            double chance = getTriggerChance(config);
+            selected = config;
+            roll -= chance * remaining;
+            if (roll < 0) {
+                break;
+            }
+            remaining *= 1 - chance;
+        }
+        
+        if (selected != null) {
+            triggerDisaster(world, selected.getType(), selected);
+        }
+    }
+    
+    /**
+     * 获取灾害每秒的触发几率
+     * @param config 灾害配置
+     * @return 几率，不超过 0.999999
+     */
+    private double getTriggerChance(DisasterConfig config) {
+        return Math.max(0, Math.min(0.999999, config.getChance() * globalChance));
+    }
+    
+    /**
+     * 获取世界当前 (天气, 昼夜) 状态在可触发灾害表中的下标
+     * @param world 世界
+     * @return 下标
+     */
+    private int getStateIndex(World world) {
+        int weather = world.isThundering() ? 2 : world.hasStorm() ? 1 : 0;
+        return weather * 2 + (isNight(world) ? 1 : 0);
+    }
+    
+    /**
+     * 获取距离下一次昼夜变化的tick数
+     * @param world 世界
+     * @return tick数
+     */
+    private long getTicksUntilDayNightChange(World world) {
+        long time = world.getTime();
+        if (time < 13000) {
+            return 13000 - time;
+        } else if (time <= 23000) {
+            return 23001 - time;
+        }
+        return 24000 - time + 13000;
     }
     
     /**
      * 更新活跃灾害
+     * 所有灾害共用一份时间预算，超出时剩余的灾害推迟到下一次更新，下一次从推迟的灾害开始
      */
     private void updateActiveDisasters() {
-        Iterator<Map.Entry<String, ActiveDisaster>> iterator = activeDisasters.entrySet().iterator();
+        if (activeDisasters.isEmpty()) {
+            return;
+        }
+        particleRenderer.beginTick();
+        assignPlayers();
         
-        while (iterator.hasNext()) {
-            Map.Entry<String, ActiveDisaster> entry = iterator.next();
-            ActiveDisaster disaster = entry.getValue();
+        ActiveDisaster[] disasters = activeDisasters.values().toArray(new ActiveDisaster[0]);
+        int count = disasters.length;
+        int start = updateCursor % count;
+        long startTime = System.nanoTime();
+        int updated = 0;
+        while (updated < count) {
+            // 至少更新一个灾害，保证每个灾害最终都能推进
+            if (updated > 0 && System.nanoTime() - startTime >= tickBudgetNanos) {
+                deferredUpdates += count - updated;
+                break;
+            }
+            ActiveDisaster disaster = disasters[(start + updated) % count];
+            updated++;
             
             // 更新灾害
             disaster.update();
             
             // 检查是否结束
             if (disaster.isEnded()) {
-                // 应用结束效果
-                disaster.applyEndEffects();
-                
-                // 移除灾害
-                iterator.remove();
+                endDisaster(disaster);
                 
                 logger.info(disaster.getType().getDisplayName() + " 在 " + 
                           disaster.getWorld().getName() + " 结束");
             }
         }
+        updateCursor = start + updated;
     }
     
     /**
-     * 尝试触发灾害
+     * 按区块索引把每个玩家分配给其所在的灾害，每个世界只遍历一次玩家
      */
-    private void tryTriggerDisasters() {
-        for (World world : Bukkit.getWorlds()) {
-            // 检查世界是否已存在灾害
-            if (hasActiveDisaster(world)) {
-                continue;
+    private void assignPlayers() {
+        for (DisasterIndex index : worldIndexes.values()) {
+            List<ActiveDisaster> disasters = index.getDisasters();
+            for (ActiveDisaster disaster : disasters) {
+                disaster.clearAffectedPlayers();
             }
-            
-            // 检查世界冷却
-            if (isOnCooldown(world)) {
-                continue;
-            }
-            
-            // 尝试触发每种灾害
-            for (Map.Entry<DisasterType, DisasterConfig> entry : disasterConfigs.entrySet()) {
-                DisasterType type = entry.getKey();
-                DisasterConfig config = entry.getValue();
-                
-                if (!config.isEnabled()) {
-                    continue;
-                }
-                
-                // 检查触发条件
-                if (canTriggerDisaster(world, type, config)) {
-                    // 检查几率
-                    double chance = config.getChance() * globalChance;
-                    if (Math.random() < chance) {
-                        triggerDisaster(world, type, config);
-                        break; // 一次只触发一种灾害
+            for (Player player : disasters.get(0).getWorld().getPlayers()) {
+                Location location = player.getLocation();
+                for (ActiveDisaster disaster : index.getCandidates(location.getBlockX() >> 4, location.getBlockZ() >> 4)) {
+                    if (disaster.contains(location.getX(), location.getY(), location.getZ())) {
+                        disaster.addAffectedPlayer(player);
                     }
                 }
             }
@@ -186,30 +434,19 @@ public class DisasterManager implements Listener {
     }
     
     /**
-     * 检查是否可以触发灾害
-     * @param world 世界
-     * @param type 灾害类型
-     * @param config 灾害配置
-     * @return 是否可以触发
+     * 结束并移除灾害
+     * @param disaster 灾害
      */
-    private boolean canTriggerDisaster(World world, DisasterType type, DisasterConfig config) {
-        // 检查天气条件
-        String weatherType = getCurrentWeatherType(world);
-        if (!config.getAllowedWeathers().contains(weatherType)) {
-            return false;
-        }
-        
-        // 检查生物群系条件
-        if (!config.getAllowedBiomes().isEmpty()) {
-            // 这里可以添加生物群系检查逻辑
-        }
-        
-        // 检查时间条件
-        if (config.isNightOnly() && !isNight(world)) {
-            return false;
+    private void endDisaster(ActiveDisaster disaster) {
+        disaster.applyEndEffects();
+        activeDisasters.remove(disaster.getId());
+        DisasterIndex index = worldIndexes.get(disaster.getWorld().getUID());
+        if (index != null) {
+            index.remove(disaster);
+            if (index.isEmpty()) {
+                worldIndexes.remove(disaster.getWorld().getUID());
+            }
         }
-        
-        return true;
     }
     
     /**
@@ -218,20 +455,28 @@ public class DisasterManager implements Listener {
      * @param type 灾害类型
      * @param config 灾害配置
      */
-    private void triggerDisaster(World world, DisasterType type, DisasterConfig config) {
-        // 选择中心位置（随机玩家附近）
+    private boolean triggerDisaster(World world, DisasterType type, DisasterConfig config) {
+        // 选择中心位置（随机一个不在其他灾害范围内的玩家附近）
         List<Player> players = world.getPlayers();
-        if (players.isEmpty()) return;
+        if (players.isEmpty()) return false;
         
-        Player targetPlayer = players.get(new Random().nextInt(players.size()));
-        Location center = targetPlayer.getLocation();
+        Location center = null;
+        int start = new Random().nextInt(players.size());
+        for (int i = 0; i < players.size() && center == null; i++) {
+            Location location = players.get((start + i) % players.size()).getLocation();
+            if (getDisasterAt(location) == null) {
+                center = location;
+            }
+        }
+        if (center == null) return false;
         
-        // 创建活跃灾害
-        ActiveDisaster disaster = new ActiveDisaster(type, config, world, center, plugin);
-        activeDisasters.put(world.getName(), disaster);
+        // 创建活跃灾害并登记到索引
+        ActiveDisaster disaster = new ActiveDisaster(++nextDisasterId, type, config, world, center, plugin);
+        activeDisasters.put(disaster.getId(), disaster);
+        worldIndexes.computeIfAbsent(world.getUID(), id -> new DisasterIndex()).add(disaster);
         
         // 设置冷却
-        setCooldown(world, config.getCooldownSeconds());
+        setCooldown(world, type, config.getCooldownSeconds());
         
         // 广播灾害
         if (announceDisasters) {
@@ -243,21 +488,7 @@ public class DisasterManager implements Listener {
         }
         
         logger.info(type.getDisplayName() + " 在 " + world.getName() + " 触发");
-    }
-    
-    /**
-     * 获取当前天气类型
-     * @param world 世界
-     * @return 天气类型
-     */
-    private String getCurrentWeatherType(World world) {
-        if (world.isThundering()) {
-            return "thunder";
-        } else if (world.hasStorm()) {
-            return "rain";
-        } else {
-            return "clear";
-        }
+        return true;
     }
     
     /**
@@ -276,51 +507,142 @@ public class DisasterManager implements Listener {
      * @return 是否有活跃灾害
      */
     public boolean hasActiveDisaster(World world) {
-        return activeDisasters.containsKey(world.getName());
+        return worldIndexes.containsKey(world.getUID());
     }
     
     /**
-     * 检查世界是否在冷却中
+     * 获取世界的活跃灾害数量
      * @param world 世界
-     * @return 是否在冷却中
+     * @return 灾害数量
      */
-    private boolean isOnCooldown(World world) {
-        Long cooldownEnd = disasterCooldowns.get(world.getName());
-        return cooldownEnd != null && System.currentTimeMillis() < cooldownEnd;
+    public int getDisasterCount(World world) {
+        DisasterIndex index = worldIndexes.get(world.getUID());
+        return index == null ? 0 : index.size();
     }
     
     /**
-     * 设置世界冷却
+     * 获取位置所在的灾害
+     * @param location 位置
+     * @return 灾害，不在任何灾害范围内时返回null
+     */
+    public ActiveDisaster getDisasterAt(Location location) {
+        if (location.getWorld() == null) {
+            return null;
+        }
+        DisasterIndex index = worldIndexes.get(location.getWorld().getUID());
+        return index == null ? null : index.getDisasterAt(location.getX(), location.getY(), location.getZ());
+    }
+    
+    /**
+     * 检查位置是否在灾害范围内
+     * @param location 位置
+     * @return 是否在灾害范围内
+     */
+    public boolean isInsideDisaster(Location location) {
+        return getDisasterAt(location) != null;
+    }
+    
+    /**
+     * 获取灾害类型在世界中的冷却结束时间
      * @param world 世界
+     * @param type 灾害类型
+     * @return 冷却结束时间（毫秒），没有冷却时返回 0
+     */
+    private long getCooldownEnd(World world, DisasterType type) {
+        Long cooldownEnd = disasterCooldowns.get(world.getName() + ":" + type.getId());
+        return cooldownEnd == null ? 0 : cooldownEnd;
+    }
+    
+    /**
+     * 设置灾害类型在世界中的冷却
+     * @param world 世界
+     * @param type 灾害类型
      * @param seconds 冷却秒数
      */
-    private void setCooldown(World world, int seconds) {
-        disasterCooldowns.put(world.getName(), 
+    private void setCooldown(World world, DisasterType type, int seconds) {
+        disasterCooldowns.put(world.getName() + ":" + type.getId(), 
             System.currentTimeMillis() + (seconds * 1000L));
     }
     
     /**
-     * 天气变化时检查灾害
+     * 天气变化时重新采样
      */
-    @EventHandler
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onWeatherChange(WeatherChangeEvent event) {
-        if (!enabled) return;
-        
-        World world = event.getWorld();
-        
-        // 如果天气转为暴风雨，增加灾害几率
-        if (event.toWeatherState()) {
-            // 这里可以添加额外的灾害触发逻辑
+        rescheduleNextTick(event.getWorld());
+    }
+    
+    /**
+     * 雷暴变化时重新采样
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onThunderChange(ThunderChangeEvent event) {
+        rescheduleNextTick(event.getWorld());
+    }
+    
+    /**
+     * 时间被跳过（睡觉、/time set）时重新采样
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onTimeSkip(TimeSkipEvent event) {
+        rescheduleNextTick(event.getWorld());
+    }
+    
+    @EventHandler
+    public void onWorldLoad(WorldLoadEvent event) {
+        if (enabled) {
+            scheduleWorld(event.getWorld());
         }
     }
     
+    @EventHandler
+    public void onWorldUnload(WorldUnloadEvent event) {
+        BukkitTask task = wakeups.remove(event.getWorld().getUID());
+        if (task != null) {
+            task.cancel();
+        }
+    }
+    
+    /**
+     * 事件发生时状态尚未改变，下一tick再重新采样
+     * @param world 世界
+     */
+    private void rescheduleNextTick(World world) {
+        if (!enabled) return;
+        Bukkit.getScheduler().runTask(plugin, () -> {
+            if (world.equals(Bukkit.getWorld(world.getUID()))) {
+                scheduleWorld(world);
+            }
+        });
+    }
+    
     /**
      * 获取世界的活跃灾害
      * @param world 世界
-     * @return 活跃灾害，如果没有返回null
+     * @return 最早开始的活跃灾害，如果没有返回null
      */
     public ActiveDisaster getActiveDisaster(World world) {
-        return activeDisasters.get(world.getName());
+        DisasterIndex index = worldIndexes.get(world.getUID());
+        return index == null ? null : index.getDisasters().get(0);
+    }
+    
+    /**
+     * 获取世界的所有活跃灾害
+     * @param world 世界
+     * @return 活跃灾害列表
+     */
+    public List<ActiveDisaster> getActiveDisasters(World world) {
+        DisasterIndex index = worldIndexes.get(world.getUID());
+        return index == null ? Collections.emptyList() : new ArrayList<>(index.getDisasters());
+    }
+    
+    /**
+     * 按ID获取活跃灾害
+     * @param id 灾害ID
+     * @return 活跃灾害，如果没有返回null
+     */
+    public ActiveDisaster getActiveDisaster(int id) {
+        return activeDisasters.get(id);
     }
     
     /**
@@ -335,19 +657,36 @@ public class DisasterManager implements Listener {
             return false;
         }
         
-        triggerDisaster(world, type, config);
-        return true;
+        boolean triggered = triggerDisaster(world, type, config);
+        if (triggered) {
+            // 冷却改变了可触发的灾害，重新采样
+            scheduleWorld(world);
+        }
+        return triggered;
     }
     
     /**
-     * 停止世界的灾害
+     * 停止世界的所有灾害
      * @param world 世界
      * @return 是否成功停止
      */
     public boolean stopDisaster(World world) {
-        ActiveDisaster disaster = activeDisasters.remove(world.getName());
+        List<ActiveDisaster> disasters = getActiveDisasters(world);
+        for (ActiveDisaster disaster : disasters) {
+            endDisaster(disaster);
+        }
+        return !disasters.isEmpty();
+    }
+    
+    /**
+     * 按ID停止灾害
+     * @param id 灾害ID
+     * @return 是否成功停止
+     */
+    public boolean stopDisaster(int id) {
+        ActiveDisaster disaster = activeDisasters.get(id);
         if (disaster != null) {
-            disaster.applyEndEffects();
+            endDisaster(disaster);
             return true;
         }
         return false;
@@ -361,6 +700,42 @@ public class DisasterManager implements Listener {
         return enabled;
     }
     
+    /**
+     * 获取灾害粒子渲染器
+     * @return 粒子渲染器
+     */
+    public DisasterParticleRenderer getParticleRenderer() {
+        return particleRenderer;
+    }
+    
+    /**
+     * 获取每个灾害每次更新最多影响的非玩家生物数量
+     * @return 数量上限，0 表示不限制
+     */
+    public int getMaxEntitiesPerTick() {
+        return maxEntitiesPerTick;
+    }
+    
+    public long getDeferredUpdates() {
+        return deferredUpdates;
+    }
+    
+    public long getWakeupCount() {
+        return wakeupCount;
+    }
+    
+    public long getTriggerAttempts() {
+        return triggerAttempts;
+    }
+    
+    /**
+     * 获取已安排唤醒的世界数量
+     * @return 世界数量
+     */
+    public int getScheduledWorldCount() {
+        return wakeups.size();
+    }
+    
     /**
      * 重新加载配置
      */
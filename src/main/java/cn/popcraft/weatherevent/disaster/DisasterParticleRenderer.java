@@ -0,0 +1,152 @@
+package cn.popcraft.weatherevent.disaster;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 灾害粒子渲染器
+ * 直接向视距内的玩家发送粒子，数量随距离减少；
+ * 每次灾害更新中每个世界共用一份粒子预算，预算不足时所有观看者按相同比例减少粒子，
+ * 不会因为玩家顺序让后面的玩家看不到粒子。
+ * 只能在主线程使用
+ */
+public class DisasterParticleRenderer {
+    private static final double MIN_SCALE = 0.25; // 视距边缘的粒子比例
+
+    private double viewDistance;
+    private double viewDistanceSquared;
+    private int worldBudget;
+
+    // 本次更新各世界已发送的粒子数
+    private final Map<UUID, int[]> spent;
+    private final Location scratch;
+    // 本次渲染的观看者及其需要的粒子数，重复使用
+    private final List<Player> viewers;
+    private int[] demands;
+
+    private long renderedParticles;  // 已发送的粒子数
+    private long droppedParticles;   // 因预算不足放弃的粒子数
+
+    public DisasterParticleRenderer() {
+        this.spent = new HashMap<>();
+        this.scratch = new Location(null, 0, 0, 0);
+        this.viewers = new ArrayList<>();
+        this.demands = new int[16];
+        configure(32, 2000);
+    }
+
+    /**
+     * 设置参数
+     * @param viewDistance 视距（方块），客户端不显示 32 格以外的普通粒子
+     * @param worldBudget 每个世界每次更新最多发送的粒子数，0 表示不发送
+     */
+    public void configure(double viewDistance, int worldBudget) {
+        this.viewDistance = Math.max(1, viewDistance);
+        this.viewDistanceSquared = this.viewDistance * this.viewDistance;
+        this.worldBudget = Math.max(0, worldBudget);
+    }
+
+    /**
+     * 开始新一轮灾害更新，重置各世界的预算
+     */
+    public void beginTick() {
+        spent.clear();
+    }
+
+    /**
+     * 渲染粒子效果
+     * @param world 世界
+     * @param center 灾害中心
+     * @param effect 粒子效果
+     */
+    public void render(World world, Location center, ParticleEffect effect) {
+        int[] used = spent.computeIfAbsent(world.getUID(), id -> new int[1]);
+        double originX = center.getX();
+        double originY = center.getY() + effect.getYOffset();
+        double originZ = center.getZ();
+
+        // 先统计视距内的观看者和总需求
+        viewers.clear();
+        int demand = 0;
+        for (Player player : world.getPlayers()) {
+            player.getLocation(scratch);
+            double dx = scratch.getX() - originX;
+            double dy = scratch.getY() - originY;
+            double dz = scratch.getZ() - originZ;
+            double distanceSquared = dx * dx + dy * dy + dz * dz;
+            if (distanceSquared > viewDistanceSquared) {
+                continue;
+            }
+            int count = scaledCount(effect.getCount(), Math.sqrt(distanceSquared));
+            if (viewers.size() == demands.length) {
+                demands = Arrays.copyOf(demands, demands.length * 2);
+            }
+            demands[viewers.size()] = count;
+            viewers.add(player);
+            demand += count;
+        }
+        if (demand == 0) {
+            return;
+        }
+
+        // 需求超出剩余预算时按比例缩减每个观看者的数量
+        int available = Math.max(0, worldBudget - used[0]);
+        double ratio = demand <= available ? 1.0 : (double) available / demand;
+        for (int v = 0; v < viewers.size(); v++) {
+            Player player = viewers.get(v);
+            int count = ratio == 1.0 ? demands[v] : (int) (demands[v] * ratio);
+            droppedParticles += demands[v] - count;
+            if (count == 0) {
+                continue;
+            }
+            used[0] += count;
+            renderedParticles += count;
+
+            double[] offsets = effect.getOffsets();
+            if (offsets == null) {
+                // 区域效果：一个数据包，由客户端在范围内分布粒子
+                player.spawnParticle(effect.getParticle(), originX, originY, originZ, count,
+                        effect.getSpreadX(), effect.getSpreadY(), effect.getSpreadZ(), effect.getSpeed(), effect.getData());
+            } else {
+                // 形状效果：按固定步长从偏移表取点，数量减少时仍均匀覆盖整个形状
+                int points = offsets.length / 3;
+                double step = (double) points / count;
+                for (int i = 0; i < count; i++) {
+                    int index = (int) (i * step) * 3;
+                    player.spawnParticle(effect.getParticle(),
+                            originX + offsets[index], originY + offsets[index + 1], originZ + offsets[index + 2], 1,
+                            effect.getSpreadX(), effect.getSpreadY(), effect.getSpreadZ(), effect.getSpeed(), effect.getData());
+                }
+            }
+        }
+        viewers.clear();
+    }
+
+    /**
+     * 按距离计算粒子数量：视距四分之一以内为全部，之后线性减少到视距边缘的 {@link #MIN_SCALE}
+     */
+    private int scaledCount(int count, double distance) {
+        double near = viewDistance / 4;
+        if (distance <= near) {
+            return count;
+        }
+        double scale = 1 - (1 - MIN_SCALE) * (distance - near) / (viewDistance - near);
+        return Math.max(1, (int) Math.round(count * scale));
+    }
+
+    public long getRenderedParticles() {
+        return renderedParticles;
+    }
+
+    public long getDroppedParticles() {
+        return droppedParticles;
+    }
+}
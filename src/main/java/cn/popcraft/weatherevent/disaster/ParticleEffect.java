@@ -0,0 +1,119 @@
+package cn.popcraft.weatherevent.disaster;
+
+import org.bukkit.Particle;
+
+/**
+ * 灾害粒子效果
+ * 区域效果由客户端在范围内随机分布粒子；形状效果使用预先计算的偏移表，
+ * 所有灾害实例共用同一张表
+ */
+public class ParticleEffect {
+
+    private final Particle particle;
+    private final Object data;       // 粒子附加数据（颜色、方块等），没有时为 null
+    private final int count;         // 最近距离时的粒子数量
+    private final double yOffset;    // 发射点相对灾害中心的高度
+    private final double spreadX;
+    private final double spreadY;
+    private final double spreadZ;
+    private final double speed;
+    private final double[] offsets;  // 形状偏移表 [x, y, z] × n，区域效果为 null
+
+    private ParticleEffect(Particle particle, Object data, int count, double yOffset,
+                           double spreadX, double spreadY, double spreadZ, double speed, double[] offsets) {
+        this.particle = particle;
+        this.data = data;
+        this.count = count;
+        this.yOffset = yOffset;
+        this.spreadX = spreadX;
+        this.spreadY = spreadY;
+        this.spreadZ = spreadZ;
+        this.speed = speed;
+        this.offsets = offsets;
+    }
+
+    /**
+     * 创建区域效果，相当于 particle 命令的范围参数
+     * @param particle 粒子
+     * @param data 附加数据，可以为 null
+     * @param count 粒子数量
+     * @param yOffset 发射点高度
+     * @param spreadX X方向范围
+     * @param spreadY Y方向范围
+     * @param spreadZ Z方向范围
+     * @param speed 速度
+     * @return 粒子效果
+     */
+    public static ParticleEffect area(Particle particle, Object data, int count, double yOffset,
+                                      double spreadX, double spreadY, double spreadZ, double speed) {
+        return new ParticleEffect(particle, data, count, yOffset, spreadX, spreadY, spreadZ, speed, null);
+    }
+
+    /**
+     * 创建漏斗形状效果（龙卷风），每层是一圈粒子，半径随高度增大，相邻层错开角度形成螺旋
+     * @param particle 粒子
+     * @param height 高度
+     * @param bottomRadius 底部半径
+     * @param topRadius 顶部半径
+     * @param layers 层数
+     * @param pointsPerLayer 每层粒子数
+     * @return 粒子效果
+     */
+    public static ParticleEffect funnel(Particle particle, double height, double bottomRadius, double topRadius,
+                                        int layers, int pointsPerLayer) {
+        double[] offsets = new double[layers * pointsPerLayer * 3];
+        int index = 0;
+        for (int layer = 0; layer < layers; layer++) {
+            double progress = layers == 1 ? 0 : (double) layer / (layers - 1);
+            double radius = bottomRadius + (topRadius - bottomRadius) * progress;
+            double phase = layer * 0.6;
+            for (int point = 0; point < pointsPerLayer; point++) {
+                double angle = phase + Math.PI * 2 * point / pointsPerLayer;
+                offsets[index++] = Math.cos(angle) * radius;
+                offsets[index++] = height * progress;
+                offsets[index++] = Math.sin(angle) * radius;
+            }
+        }
+        return new ParticleEffect(particle, null, layers * pointsPerLayer, 0, 0.1, 0.1, 0.1, 0, offsets);
+    }
+
+    public Particle getParticle() {
+        return particle;
+    }
+
+    public Object getData() {
+        return data;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getYOffset() {
+        return yOffset;
+    }
+
+    public double getSpreadX() {
+        return spreadX;
+    }
+
+    public double getSpreadY() {
+        return spreadY;
+    }
+
+    public double getSpreadZ() {
+        return spreadZ;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * 获取形状偏移表
+     * @return 偏移表，区域效果返回 null
+     */
+    public double[] getOffsets() {
+        return offsets;
+    }
+}
@@ -2,6 +2,9 @@ package cn.popcraft.weatherevent.effects;
 
 import cn.popcraft.weatherevent.WeatherEvent;
 import cn.popcraft.weatherevent.manager.BiomeCacheManager;
+import cn.popcraft.weatherevent.manager.CommandCompiler;
+import cn.popcraft.weatherevent.manager.PotionReconciler;
+import cn.popcraft.weatherevent.message.PlaceholderContext;
 import org.bukkit.World;
 import org.bukkit.block.Biome;
 import org.bukkit.configuration.ConfigurationSection;
@@ -117,19 +120,16 @@ public class AdvancedBiomeWeatherEffect {
      */
     private void applyWeatherCondition(Player player, World world, BiomeWeatherCondition condition) {
         // 应用药水效果
+        PotionReconciler potionReconciler = plugin.getEffectManager().getPotionReconciler();
         for (PotionEffect effect : condition.getPotionEffects()) {
-            player.addPotionEffect(effect, true);
+            potionReconciler.apply(player, effect, true);
         }
         
         // 执行命令
+        CommandCompiler commandCompiler = plugin.getCommandCompiler();
+        PlaceholderContext context = new PlaceholderContext(player, world);
         for (String command : condition.getCommands()) {
-            String processedCommand = command.replace("%player%", player.getName())
-                    .replace("%player_name%", player.getName())
-                    .replace("%player_x%", String.valueOf(player.getLocation().getX()))
-                    .replace("%player_y%", String.valueOf(player.getLocation().getY()))
-                    .replace("%player_z%", String.valueOf(player.getLocation().getZ()));
-            
-            plugin.getServer().dispatchCommand(plugin.getServer().getConsoleSender(), processedCommand);
+            commandCompiler.compile(command).execute(context);
         }
         
         // 显示消息
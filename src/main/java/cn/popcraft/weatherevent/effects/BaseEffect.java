@@ -3,6 +3,7 @@ package cn.popcraft.weatherevent.effects;
 import cn.popcraft.weatherevent.WeatherEvent;
 import cn.popcraft.weatherevent.config.ChainEffect;
 import cn.popcraft.weatherevent.condition.ConditionChecker;
+import cn.popcraft.weatherevent.message.PlaceholderContext;
 import org.bukkit.World;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
@@ -230,8 +231,7 @@ public abstract class BaseEffect implements WeatherEffect {
      * @param command 命令
      */
     protected void executeCommand(Player player, String command) {
-        String processedCommand = command.replace("%player%", player.getName());
-        plugin.getServer().dispatchCommand(plugin.getServer().getConsoleSender(), processedCommand);
+        plugin.getCommandCompiler().compile(command).execute(new PlaceholderContext(player));
         
         // 触发连锁效果
         triggerChainEffects(player);
@@ -353,6 +353,7 @@ public abstract class BaseEffect implements WeatherEffect {
 
     /**
      * 检查效果是否适用于当前世界状态
+     * 调用方不会缓存结果，依赖天气、时间或其他任何状态都可以
      * @param world 目标世界
      * @return 是否适用
      */
@@ -5,10 +5,13 @@ import cn.popcraft.weatherevent.config.ChainEffect;
 import cn.popcraft.weatherevent.config.DynamicParameter;
 import cn.popcraft.weatherevent.config.EffectCondition;
 import cn.popcraft.weatherevent.config.SharedEffectManager;
+import cn.popcraft.weatherevent.manager.CompiledCommand;
+import cn.popcraft.weatherevent.message.PlaceholderContext;
+import org.bukkit.Material;
 import org.bukkit.World;
+import org.bukkit.block.Biome;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
-import org.bukkit.Sound;
 import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionEffectType;
 
@@ -16,6 +19,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * 基础天气效果实现类
@@ -36,6 +41,14 @@ public abstract class BaseWeatherEffect implements WeatherEffect {
     protected Map<String, Object> message; // 消息映射
     protected EffectCondition condition; // 效果触发条件
     protected List<ChainEffect> chainEffects; // 连锁效果列表
+    private EffectPlan plan; // 编译后的执行计划，配置变化时置空并在下次使用时重新编译
+    
+    // 注册时解析的运行参数，避免每次更新都查询配置树
+    private long cooldownMillis; // 冷却时间（毫秒），0表示无冷却
+    private int cooldownIndex; // 冷却管理器中的效果下标
+    private int statisticsIndex = -1; // 统计管理器中的效果序号，未注册时为 -1
+    private boolean groupRestricted; // 是否有玩家组单独禁用了此效果
+    private boolean regionRestricted; // 是否有区域单独禁用了此效果
     
     /**
      * 构造一个基础天气效果
@@ -61,15 +74,81 @@ public abstract class BaseWeatherEffect implements WeatherEffect {
         loadChainEffects();
     }
     
+    /**
+     * 获取编译后的执行计划
+     * @return 执行计划
+     */
+    protected EffectPlan getPlan() {
+        EffectPlan current = plan;
+        if (current == null) {
+            current = EffectPlan.compile(this, plugin.getCommandCompiler(), plugin.getPlaceholderRegistry(), plugin.getLogger());
+            plan = current;
+        }
+        return current;
+    }
+    
+    /**
+     * 设置注册时解析的运行参数
+     * @param cooldownMillis 冷却时间（毫秒）
+     * @param cooldownIndex 冷却管理器中的效果下标
+     * @param statisticsIndex 统计管理器中的效果序号
+     * @param groupRestricted 是否有玩家组单独禁用了此效果
+     * @param regionRestricted 是否有区域单独禁用了此效果
+     */
+    public void setRuntimeSettings(long cooldownMillis, int cooldownIndex, int statisticsIndex,
+                                   boolean groupRestricted, boolean regionRestricted) {
+        this.cooldownMillis = cooldownMillis;
+        this.cooldownIndex = cooldownIndex;
+        this.statisticsIndex = statisticsIndex;
+        this.groupRestricted = groupRestricted;
+        this.regionRestricted = regionRestricted;
+    }
+    
+    public long getCooldownMillis() {
+        return cooldownMillis;
+    }
+    
+    public int getCooldownIndex() {
+        return cooldownIndex;
+    }
+    
+    public int getStatisticsIndex() {
+        return statisticsIndex;
+    }
+    
+    public boolean isGroupRestricted() {
+        return groupRestricted;
+    }
+    
+    public boolean isRegionRestricted() {
+        return regionRestricted;
+    }
+
+    /**
+     * {@link #isApplicable(World)} 是否只取决于天气（晴/雨/雷暴）和固定时间段
+     * （日出 0-1000、白天 1000-13000、日落 13000-14000、夜晚 14000-24000）。
+     * 返回 true 的效果由 {@link WorldEffectIndex} 按状态缓存结果；
+     * 默认返回 false，每次查询都重新检查，依赖其他状态（如可配置的时间范围）的效果不要覆盖
+     * @return 是否可以按世界状态缓存
+     */
+    public boolean isStateIndexable() {
+        return false;
+    }
+
     /**
      * 从配置中加载触发条件
      */
     protected void loadConditions() {
         if (config == null) return;
         
-        // 加载生物群系限制
-        if (config.isList("biomes")) {
-            condition.setBiomes(config.getStringList("biomes"));
+        // 加载生物群系限制，未知名称在加载时剔除
+        List<String> biomeNames = config.getStringList("biomes");
+        if (!biomeNames.isEmpty()) {
+            List<String> unknown = new ArrayList<>();
+            condition.setBiomes(EffectCondition.parseBiomes(biomeNames, unknown));
+            if (!unknown.isEmpty()) {
+                plugin.getLogger().warning("效果 " + effectName + " 中存在未知的生物群系，已忽略: " + unknown);
+            }
         }
         
         // 加载高度限制
@@ -93,9 +172,14 @@ public abstract class BaseWeatherEffect implements WeatherEffect {
             condition.setWeatherTypes(config.getStringList("weather-types"));
         }
         
-        // 加载方块类型限制
-        if (config.isList("block-types")) {
-            condition.setBlockTypes(config.getStringList("block-types"));
+        // 加载方块类型限制，未知名称在加载时剔除
+        List<String> blockNames = config.getStringList("block-types");
+        if (!blockNames.isEmpty()) {
+            List<String> unknown = new ArrayList<>();
+            condition.setBlockTypes(EffectCondition.parseBlockTypes(blockNames, unknown));
+            if (!unknown.isEmpty()) {
+                plugin.getLogger().warning("效果 " + effectName + " 中存在未知的方块类型，已忽略: " + unknown);
+            }
         }
     }
     
@@ -292,73 +376,132 @@ public abstract class BaseWeatherEffect implements WeatherEffect {
     
     @Override
     public void apply(Player player, World world) {
-        if (!enabled || !isApplicable(world)) return;
+        apply(new PlayerContext(player, plugin.getEffectManager().getBiomeCacheManager()));
+    }
+    
+    @Override
+    public void apply(PlayerContext context) {
+        if (!isApplicable(context.getWorld())) return;
         
         // 检查条件
-        if (!checkConditions(player)) return;
+        if (!evaluate(context)) return;
         
-        // 应用药水效果
-        for (PotionEffect effect : getPotionEffects()) {
-            player.addPotionEffect(effect);
+        executeActions(context.getPlayer(), context.getWorld());
+    }
+    
+    /**
+     * 检查效果在给定玩家状态下是否应当触发
+     * 传入快照时只读取快照和加载后不再变化的配置，可以在异步线程中调用
+     * @param state 玩家状态
+     * @return 是否应当触发
+     */
+    public boolean evaluate(PlayerState state) {
+        return enabled && checkConditions(state);
+    }
+    
+    /**
+     * 是否支持基于快照的异步条件评估
+     * 不支持的效果在快照模式下仍在主线程调用 apply
+     * @return 是否支持
+     */
+    public boolean supportsSnapshotEvaluation() {
+        return true;
+    }
+    
+    /**
+     * 记录效果成功应用并执行效果动作（条件已检查通过），必须在主线程调用
+     * 子类通过覆盖 {@link #applyActions(Player, World)} 定制动作，统计不会因此遗漏
+     * @param player 玩家
+     * @param world 世界
+     */
+    public final void executeActions(Player player, World world) {
+        // 嵌套在其他效果中的效果没有注册到统计管理器
+        if (statisticsIndex >= 0) {
+            plugin.getEffectManager().getStatisticsManager().recordEffectSuccess(statisticsIndex, player);
         }
+        applyActions(player, world);
+    }
+    
+    /**
+     * 执行效果动作，由 {@link #executeActions(Player, World)} 调用
+     * @param player 玩家
+     * @param world 世界
+     */
+    public void applyActions(Player player, World world) {
+        // 命令、标题、动作栏和消息共用一个占位符上下文，都没有配置时不创建
+        EffectPlan plan = getPlan();
+        PlaceholderContext context = plan.getCommands() != null || plan.getTitle() != null
+                || plan.getActionBar() != null || plan.getMessage() != null
+                ? new PlaceholderContext(player, world) : null;
+        
+        // 应用药水效果
+        applyPotionEffects(player);
         
         // 尝试应用随机效果
         tryApplyRandomEffects(player);
         
         // 尝试执行命令
-        tryExecuteCommands(player);
+        tryExecuteCommands(player, context);
         
         // 尝试发送标题
-        trySendTitle(player);
+        trySendTitle(player, context);
         
         // 尝试发送动作栏消息
-        trySendActionBar(player);
+        trySendActionBar(player, context);
         
         // 尝试播放声音
         tryPlaySound(player);
         
         // 尝试发送消息
-        trySendMessage(player);
+        trySendMessage(player, context);
     }
     
     /**
-     * 检查效果触发条件
+     * 应用配置的药水效果
+     * 玩家已有相同且未临近过期的效果时不会重复发送
      * @param player 玩家
+     */
+    protected void applyPotionEffects(Player player) {
+        plugin.getEffectManager().getPotionReconciler().applyAll(player, getPotionEffects());
+    }
+    
+    /**
+     * 检查效果触发条件
+     * @param state 玩家状态
      * @return 是否满足所有条件
      */
-    protected boolean checkConditions(Player player) {
+    protected boolean checkConditions(PlayerState state) {
         // 检查生物群系条件
-        if (condition.getBiomes() != null && !condition.getBiomes().isEmpty()) {
-            String biomeName = player.getLocation().getBlock().getBiome().name().toLowerCase();
-            boolean biomeMatch = condition.getBiomes().stream()
-                    .anyMatch(b -> b.equalsIgnoreCase(biomeName));
-            if (!biomeMatch) return false;
+        Set<Biome> biomes = condition.getBiomes();
+        if (biomes != null && !biomes.contains(state.getBiome())) {
+            return false;
         }
         
         // 检查天气条件
         if (condition.getWeatherTypes() != null && !condition.getWeatherTypes().isEmpty()) {
-            String currentWeather = getCurrentWeatherType(player.getWorld());
-            if (!condition.getWeatherTypes().contains(currentWeather)) {
+            if (!condition.getWeatherTypes().contains(state.getWeatherType())) {
                 return false;
             }
         }
         
         // 检查高度条件
-        int y = player.getLocation().getBlockY();
-        if (condition.getMinHeight() != null && y < condition.getMinHeight()) return false;
-        if (condition.getMaxHeight() != null && y > condition.getMaxHeight()) return false;
+        if (condition.getMinHeight() != null || condition.getMaxHeight() != null) {
+            int y = state.getBlockY();
+            if (condition.getMinHeight() != null && y < condition.getMinHeight()) return false;
+            if (condition.getMaxHeight() != null && y > condition.getMaxHeight()) return false;
+        }
         
         // 检查光照条件
-        int light = player.getLocation().getBlock().getLightLevel();
-        if (condition.getMinLight() != null && light < condition.getMinLight()) return false;
-        if (condition.getMaxLight() != null && light > condition.getMaxLight()) return false;
+        if (condition.getMinLight() != null || condition.getMaxLight() != null) {
+            int light = state.getLightLevel();
+            if (condition.getMinLight() != null && light < condition.getMinLight()) return false;
+            if (condition.getMaxLight() != null && light > condition.getMaxLight()) return false;
+        }
         
         // 检查方块类型条件
-        if (condition.getBlockTypes() != null && !condition.getBlockTypes().isEmpty()) {
-            String blockType = player.getLocation().getBlock().getType().name().toLowerCase();
-            boolean blockMatch = condition.getBlockTypes().stream()
-                    .anyMatch(b -> b.equalsIgnoreCase(blockType));
-            if (!blockMatch) return false;
+        Set<Material> blockTypes = condition.getBlockTypes();
+        if (blockTypes != null && !blockTypes.contains(state.getBlockType())) {
+            return false;
         }
         
         return true;
@@ -413,7 +556,13 @@ public abstract class BaseWeatherEffect implements WeatherEffect {
         return message;
     }
     
-    // 移除 @Override
+    /**
+     * 检查效果是否适用于当前世界状态
+     * 结果只有在 {@link #isStateIndexable()} 返回 true 时才会被世界效果索引缓存，
+     * 否则每次查询都会重新调用
+     * @param world 目标世界
+     * @return 是否适用
+     */
     public boolean isApplicable(World world) {
         // 检查天气条件
         if (condition.getWeatherTypes() != null && !condition.getWeatherTypes().isEmpty()) {
@@ -441,108 +590,50 @@ public abstract class BaseWeatherEffect implements WeatherEffect {
         }
     }
     
-    @SuppressWarnings("unchecked") // 抑制未经检查操作警告
     protected void tryApplyRandomEffects(Player player) {
         // 实现随机效果应用逻辑
-        if (randomEffects == null || randomEffects.isEmpty()) return;
+        EffectPlan.RandomEffectPlan randomPlan = getPlan().getRandomEffects();
+        if (randomPlan == null) return;
         
         // 检查前置条件
-        Map<String, Object> prerequisites = (Map<String, Object>) randomEffects.get("prerequisites");
-        if (prerequisites != null && !prerequisites.isEmpty()) {
-            String type = (String) prerequisites.get("type");
-            if ("has_potion_effect".equals(type)) {
-                String effectTypeName = (String) prerequisites.get("effect_type");
-                int level = ((Number) prerequisites.getOrDefault("level", 0)).intValue();
-                
-                PotionEffectType effectType = PotionEffectType.getByName(effectTypeName);
-                if (effectType == null) return;
-                
-                PotionEffect activeEffect = player.getPotionEffect(effectType);
-                if (activeEffect == null || activeEffect.getAmplifier() != level) return;
-            }
+        if (randomPlan.isPrerequisiteUnsatisfiable()) return;
+        PotionEffectType prerequisiteType = randomPlan.getPrerequisiteType();
+        if (prerequisiteType != null) {
+            PotionEffect activeEffect = player.getPotionEffect(prerequisiteType);
+            if (activeEffect == null || activeEffect.getAmplifier() != randomPlan.getPrerequisiteLevel()) return;
         }
         
-        double chance = (double) randomEffects.getOrDefault("chance", 0.0);
-        if (Math.random() > chance) return;
-        
-        List<Map<String, Object>> effects = (List<Map<String, Object>>) randomEffects.get("effects");
-        if (effects != null && !effects.isEmpty()) {
-            Map<String, Object> effect = effects.get((int) (Math.random() * effects.size()));
-            PotionEffectType type = PotionEffectType.getByName((String) effect.get("type"));
-            if (type != null) {
-                // 处理动态参数
-                Object levelObj = effect.get("level");
-                Object durationObj = effect.get("duration");
-                
-                int level = DynamicParameter.parseIntParameter(levelObj);
-                int duration = DynamicParameter.parseIntParameter(durationObj);
-                
-                player.addPotionEffect(new PotionEffect(type, duration, level));
-            }
-        }
+        if (!EffectPlan.roll(randomPlan.getChance())) return;
+        
+        int index = ThreadLocalRandom.current().nextInt(randomPlan.size());
+        plugin.getEffectManager().getPotionReconciler().apply(player, new PotionEffect(randomPlan.getType(index),
+                randomPlan.sampleDuration(index), randomPlan.sampleLevel(index)));
     }
     
-    @SuppressWarnings("unchecked") // 抑制未经检查操作警告
     protected void tryExecuteCommands(Player player) {
+        tryExecuteCommands(player, null);
+    }
+    
+    /**
+     * 尝试执行命令
+     * @param player 玩家
+     * @param context 占位符上下文，为 null 时需要时再创建
+     */
+    protected void tryExecuteCommands(Player player, PlaceholderContext context) {
         // 实现命令执行逻辑
-        if (commands == null || commands.isEmpty()) return;
+        EffectPlan.CommandPlan commandPlan = getPlan().getCommands();
+        if (commandPlan == null) return;
         
-        double chance = (double) commands.getOrDefault("chance", 0.0);
-        if (Math.random() > chance) return;
+        if (!EffectPlan.roll(commandPlan.getChance())) return;
         
-        List<String> commandList = (List<String>) commands.get("list");
-        if (commandList != null) {
-            for (String cmd : commandList) {
-                String processedCmd = cmd.replace("%player%", player.getName())
-                        .replace("%player_name%", player.getName())
-                        .replace("%player_x%", String.valueOf(player.getLocation().getX()))
-                        .replace("%player_y%", String.valueOf(player.getLocation().getY()))
-                        .replace("%player_z%", String.valueOf(player.getLocation().getZ()))
-                        .replace("%player_health%", String.valueOf(player.getHealth()))
-                        .replace("%player_food%", String.valueOf(player.getFoodLevel()));
-                
-                // 检查是否是title命令，如果是，则使用API直接发送
-                if (processedCmd.startsWith("title ") && processedCmd.contains(" title ")) {
-                    // 提取玩家名称和标题文本
-                    String[] parts = processedCmd.split(" title ", 2);
-                    String playerName = parts[0].substring(6).trim();
-                    String titleText = parts[1];
-                    
-                    // 查找目标玩家
-                    Player targetPlayer = plugin.getServer().getPlayerExact(playerName);
-                    if (targetPlayer != null) {
-                        targetPlayer.sendTitle(titleText, "", 10, 70, 20);
-                    }
-                } else if (processedCmd.startsWith("playsound ")) {
-                    // 提取声音信息
-                    String[] parts = processedCmd.split(" ");
-                    if (parts.length >= 6) {
-                        String soundName = parts[1];
-                        String playerName = parts[2];
-                        float volume = 1.0f;
-                        float pitch = 1.0f;
-                        
-                        try {
-                            if (parts.length >= 7) volume = Float.parseFloat(parts[6]);
-                            if (parts.length >= 8) pitch = Float.parseFloat(parts[7]);
-                        } catch (NumberFormatException ignored) {}
-                        
-                        // 查找目标玩家
-                        Player targetPlayer = plugin.getServer().getPlayerExact(playerName);
-                        if (targetPlayer != null) {
-                            try {
-                                Sound sound = Sound.valueOf(soundName.toUpperCase().replace(".", "_").replace(":", "_"));
-                                targetPlayer.playSound(targetPlayer.getLocation(), sound, volume, pitch);
-                            } catch (IllegalArgumentException e) {
-                                // 如果声音名称无效，尝试使用字符串形式
-                                targetPlayer.playSound(targetPlayer.getLocation(), soundName, volume, pitch);
-                            }
-                        }
-                    }
-                } else {
-                    // 执行原始命令
-                    plugin.getServer().dispatchCommand(plugin.getServer().getConsoleSender(), processedCmd);
-                }
+        List<CompiledCommand> commandList = commandPlan.getCommands();
+        if (!commandList.isEmpty()) {
+            // title、playsound 等常见命令已在加载时编译为直接的 API 调用
+            if (context == null) {
+                context = new PlaceholderContext(player);
+            }
+            for (CompiledCommand command : commandList) {
+                command.execute(context);
             }
         }
         
@@ -600,6 +691,7 @@ public abstract class BaseWeatherEffect implements WeatherEffect {
         @SuppressWarnings("unchecked")
         List<Map<String, Object>> effectsList = (List<Map<String, Object>>) randomEffects.get("effects");
         effectsList.add(effect);
+        plan = null;
     }
     
     protected void addCommand(String command) {
@@ -612,55 +704,39 @@ public abstract class BaseWeatherEffect implements WeatherEffect {
         @SuppressWarnings("unchecked")
         List<String> commandList = (List<String>) commands.get("list");
         commandList.add(command);
+        plan = null;
     }
 
     /**
      * 尝试发送标题
      * @param player 玩家
+     * @param context 占位符上下文，为 null 时需要时再创建
      */
-    protected void trySendTitle(Player player) {
-        if (title == null || title.isEmpty() || !(boolean) title.getOrDefault("enabled", false)) return;
-        
-        double chance = (double) title.getOrDefault("chance", 1.0);
-        if (Math.random() > chance) return;
-        
-        String titleText = (String) title.getOrDefault("text", "");
-        String subtitle = (String) title.getOrDefault("subtitle", "");
-        int fadeIn = ((Number) title.getOrDefault("fadeIn", 10)).intValue();
-        int stay = ((Number) title.getOrDefault("stay", 70)).intValue();
-        int fadeOut = ((Number) title.getOrDefault("fadeOut", 20)).intValue();
+    protected void trySendTitle(Player player, PlaceholderContext context) {
+        EffectPlan.TitlePlan titlePlan = getPlan().getTitle();
+        if (titlePlan == null || !EffectPlan.roll(titlePlan.getChance())) return;
         
         // 替换占位符
-        titleText = titleText.replace("%player%", player.getName())
-                .replace("%player_name%", player.getName())
-                .replace("%player_health%", String.valueOf(player.getHealth()))
-                .replace("%player_food%", String.valueOf(player.getFoodLevel()));
-        
-        subtitle = subtitle.replace("%player%", player.getName())
-                .replace("%player_name%", player.getName())
-                .replace("%player_health%", String.valueOf(player.getHealth()))
-                .replace("%player_food%", String.valueOf(player.getFoodLevel()));
+        if (context == null) {
+            context = new PlaceholderContext(player);
+        }
+        String titleText = titlePlan.getText().render(context);
+        String subtitle = titlePlan.getSubtitle().render(context);
         
-        player.sendTitle(titleText, subtitle, fadeIn, stay, fadeOut);
+        player.sendTitle(titleText, subtitle, titlePlan.getFadeIn(), titlePlan.getStay(), titlePlan.getFadeOut());
     }
     
     /**
      * 尝试发送动作栏消息
      * @param player 玩家
+     * @param context 占位符上下文，为 null 时需要时再创建
      */
-    protected void trySendActionBar(Player player) {
-        if (actionBar == null || actionBar.isEmpty() || !(boolean) actionBar.getOrDefault("enabled", false)) return;
-        
-        double chance = (double) actionBar.getOrDefault("chance", 1.0);
-        if (Math.random() > chance) return;
-        
-        String text = (String) actionBar.getOrDefault("text", "");
+    protected void trySendActionBar(Player player, PlaceholderContext context) {
+        EffectPlan.TextPlan actionBarPlan = getPlan().getActionBar();
+        if (actionBarPlan == null || !EffectPlan.roll(actionBarPlan.getChance())) return;
         
         // 替换占位符
-        text = text.replace("%player%", player.getName())
-                .replace("%player_name%", player.getName())
-                .replace("%player_health%", String.valueOf(player.getHealth()))
-                .replace("%player_food%", String.valueOf(player.getFoodLevel()));
+        String text = actionBarPlan.getText().render(context != null ? context : new PlaceholderContext(player));
         
         // 使用Spigot API发送动作栏消息
         player.spigot().sendMessage(net.md_5.bungee.api.ChatMessageType.ACTION_BAR, 
@@ -672,53 +748,28 @@ public abstract class BaseWeatherEffect implements WeatherEffect {
      * @param player 玩家
      */
     protected void tryPlaySound(Player player) {
-        if (sound == null || sound.isEmpty() || !(Boolean) sound.getOrDefault("enabled", false)) return;
-        
-        double chance = (Double) sound.getOrDefault("chance", 1.0);
-        if (Math.random() > chance) return;
-        
-        String resource = (String) sound.getOrDefault("resource", "entity.player.levelup");
-        // 添加空值检查
-        if (resource == null || resource.isEmpty()) {
-            resource = "entity.player.levelup";
-        }
-        
-        float volume = ((Number) sound.getOrDefault("volume", 1.0f)).floatValue();
-        float pitch = ((Number) sound.getOrDefault("pitch", 1.0f)).floatValue();
+        EffectPlan.SoundPlan soundPlan = getPlan().getSound();
+        if (soundPlan == null || !EffectPlan.roll(soundPlan.getChance())) return;
         
-        try {
-            // 添加对空值的额外检查，避免在valueOf方法中出现异常
-            if (resource != null && !resource.isEmpty()) {
-                Sound soundEnum = Sound.valueOf(resource.toUpperCase().replace(".", "_").replace(":", "_"));
-                player.playSound(player.getLocation(), soundEnum, volume, pitch);
-            }
-        } catch (IllegalArgumentException e) {
+        if (soundPlan.getSound() != null) {
+            player.playSound(player.getLocation(), soundPlan.getSound(), soundPlan.getVolume(), soundPlan.getPitch());
+        } else {
             // 如果声音名称无效，尝试使用字符串形式
-            if (resource != null && !resource.isEmpty()) {
-                player.playSound(player.getLocation(), resource, volume, pitch);
-            }
+            player.playSound(player.getLocation(), soundPlan.getResource(), soundPlan.getVolume(), soundPlan.getPitch());
         }
     }
     
     /**
      * 尝试发送消息
      * @param player 玩家
+     * @param context 占位符上下文，为 null 时需要时再创建
      */
-    protected void trySendMessage(Player player) {
-        if (message == null || message.isEmpty() || !(boolean) message.getOrDefault("enabled", false)) return;
-        
-        double chance = (double) message.getOrDefault("chance", 1.0);
-        if (Math.random() > chance) return;
-        
-        String text = (String) message.getOrDefault("text", "");
+    protected void trySendMessage(Player player, PlaceholderContext context) {
+        EffectPlan.TextPlan messagePlan = getPlan().getMessage();
+        if (messagePlan == null || !EffectPlan.roll(messagePlan.getChance())) return;
         
         // 替换占位符
-        text = text.replace("%player%", player.getName())
-                .replace("%player_name%", player.getName())
-                .replace("%player_health%", String.valueOf(player.getHealth()))
-                .replace("%player_food%", String.valueOf(player.getFoodLevel()));
-        
-        player.sendMessage(text);
+        player.sendMessage(messagePlan.getText().render(context != null ? context : new PlaceholderContext(player)));
     }
     
     @Override
@@ -732,5 +783,6 @@ public abstract class BaseWeatherEffect implements WeatherEffect {
         loadSound();
         loadMessage();
         loadChainEffects();
+        plan = null;
     }
 }
\ No newline at end of file
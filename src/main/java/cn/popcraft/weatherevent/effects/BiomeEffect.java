@@ -2,7 +2,6 @@ package cn.popcraft.weatherevent.effects;
 
 import cn.popcraft.weatherevent.WeatherEvent;
 import org.bukkit.World;
-import org.bukkit.block.Biome;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
 
@@ -41,18 +40,29 @@ public class BiomeEffect extends BaseWeatherEffect {
      * @return 是否适用
      */
     public boolean isApplicable(Player player, World world) {
-        // 检查玩家是否在目标生物群系中
-        Biome playerBiome = player.getLocation().getBlock().getBiome();
-        boolean biomeMatch = playerBiome.name().equals(targetBiome);
+        return isPlayerApplicable(new PlayerContext(player, plugin.getEffectManager().getBiomeCacheManager()));
+    }
+
+    /**
+     * 检查玩家是否处于目标生物群系
+     * @param state 玩家状态
+     * @return 是否适用
+     */
+    public boolean isPlayerApplicable(PlayerState state) {
+        boolean biomeMatch = state.getBiome().name().equals(targetBiome);
         
         // 检查天气条件
         if (condition.getWeatherTypes() != null && !condition.getWeatherTypes().isEmpty()) {
-            String currentWeather = getCurrentWeatherType(world);
-            return biomeMatch && condition.getWeatherTypes().contains(currentWeather);
+            return biomeMatch && condition.getWeatherTypes().contains(state.getWeatherType());
         }
         
         return biomeMatch;
     }
+    
+    @Override
+    public boolean evaluate(PlayerState state) {
+        return isPlayerApplicable(state) && super.evaluate(state);
+    }
 
     /**
      * 检查效果是否适用于当前世界状态
@@ -67,19 +77,11 @@ public class BiomeEffect extends BaseWeatherEffect {
         return true;
     }
     
-    /**
-     * 应用效果到玩家
-     * @param player 目标玩家
-     * @param world 目标世界
-     */
     @Override
-    public void apply(Player player, World world) {
-        // 只有当玩家在目标生物群系中时才应用效果
-        if (isApplicable(player, world)) {
-            super.apply(player, world);
-        }
+    public boolean isStateIndexable() {
+        return true;
     }
-
+    
     @Override
     public String getDescription() {
         return "在" + targetBiome + "生物群系中提供特殊效果";
@@ -87,33 +87,41 @@ public class BiomeWeatherEffect extends BaseWeatherEffect {
     
     @Override
     public void apply(Player player, World world) {
-        if (!isEnabled() || !isApplicable(world)) return;
+        apply(new PlayerContext(player, plugin.getEffectManager().getBiomeCacheManager()));
+    }
+    
+    @Override
+    public void apply(PlayerContext context) {
+        if (!isEnabled() || !isApplicable(context.getWorld())) return;
         
         // 获取玩家所在的生物群系
-        Biome playerBiome = player.getLocation().getBlock().getBiome();
-        String biomeName = playerBiome.name();
+        Biome biome = context.getBiome();
         
         // 检查生物群系条件
-        if (condition.getBiomes() != null && !condition.getBiomes().isEmpty()) {
-            if (!condition.getBiomes().contains(biomeName)) {
-                return;
-            }
+        if (condition.getBiomes() != null && !condition.getBiomes().contains(biome)) {
+            return;
         }
         
         // 获取当前世界的天气状态
-        String weatherType = getWeatherType(world);
+        String weatherType = context.getWeatherType();
         
         // 查找对应的生物群系天气效果
-        Map<String, BaseWeatherEffect> weatherEffects = biomeWeatherEffects.get(biomeName);
+        Map<String, BaseWeatherEffect> weatherEffects = biomeWeatherEffects.get(biome.name());
         if (weatherEffects != null) {
             BaseWeatherEffect effect = weatherEffects.get(weatherType);
             if (effect != null && effect.isEnabled()) {
                 // 应用对应的效果
-                effect.apply(player, world);
+                effect.apply(context);
             }
         }
     }
     
+    @Override
+    public boolean supportsSnapshotEvaluation() {
+        // 实际效果由嵌套的生物群系天气效果决定，只能在主线程直接应用
+        return false;
+    }
+    
     @Override
     public void remove(Player player, World world) {
         // 移除所有可能应用的效果
@@ -138,19 +146,9 @@ public class BiomeWeatherEffect extends BaseWeatherEffect {
         return true;
     }
     
-    /**
-     * 获取当前世界的天气类型
-     * @param world 目标世界
-     * @return 天气类型（"clear", "rain", "thunder"）
-     */
-    private String getWeatherType(World world) {
-        if (world.isThundering()) {
-            return "thunder";
-        } else if (world.hasStorm()) {
-            return "rain";
-        } else {
-            return "clear";
-        }
+    @Override
+    public boolean isStateIndexable() {
+        return true;
     }
     
     @Override
@@ -2,7 +2,6 @@ package cn.popcraft.weatherevent.effects;
 
 import cn.popcraft.weatherevent.WeatherEvent;
 import org.bukkit.World;
-import org.bukkit.block.Biome;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
 
@@ -114,14 +113,24 @@ public class BiomeWeatherManager {
      * @param world 目标世界
      */
     public void applyEffects(Player player, World world) {
+        applyEffects(new PlayerContext(player, plugin.getEffectManager().getBiomeCacheManager()));
+    }
+    
+    /**
+     * 使用玩家上下文应用生物群系天气效果
+     * @param context 玩家上下文
+     */
+    public void applyEffects(PlayerContext context) {
         if (!enabled) return;
         
+        Player player = context.getPlayer();
+        World world = context.getWorld();
+        
         // 获取玩家所在的生物群系
-        Biome playerBiome = player.getLocation().getBlock().getBiome();
-        String biomeName = playerBiome.name();
+        String biomeName = context.getBiome().name();
         
         // 获取当前世界的天气状态
-        String weatherType = getWeatherType(world);
+        String weatherType = context.getWeatherType();
         
         // 应用高级生物群系天气效果
         AdvancedBiomeWeatherEffect advancedEffect = advancedBiomeWeatherEffects.get(biomeName);
@@ -135,7 +144,7 @@ public class BiomeWeatherManager {
             BaseWeatherEffect effect = weatherEffects.get(weatherType);
             if (effect != null && effect.isEnabled()) {
                 // 应用对应的效果
-                effect.apply(player, world);
+                effect.apply(context);
             }
         }
     }
@@ -156,21 +165,6 @@ public class BiomeWeatherManager {
         }
     }
     
-    /**
-     * 获取当前世界的天气类型
-     * @param world 目标世界
-     * @return 天气类型（"clear", "rain", "thunder"）
-     */
-    private String getWeatherType(World world) {
-        if (world.isThundering()) {
-            return "thunder";
-        } else if (world.hasStorm()) {
-            return "rain";
-        } else {
-            return "clear";
-        }
-    }
-    
     /**
      * 检查是否启用
      * @return 是否启用
@@ -44,16 +44,31 @@ public class CaveEffect extends BaseWeatherEffect {
      * @return 是否适用
      */
     public boolean isApplicable(Player player, World world) {
-        // 检查玩家是否在洞穴环境中（高度和光照条件）
-        int playerY = player.getLocation().getBlockY();
-        int lightLevel = player.getLocation().getBlock().getLightLevel();
+        return isPlayerApplicable(new PlayerContext(player, plugin.getEffectManager().getBiomeCacheManager()));
+    }
+
+    /**
+     * 检查玩家是否处于洞穴环境
+     * @param state 玩家状态
+     * @return 是否适用
+     */
+    public boolean isPlayerApplicable(PlayerState state) {
+        int playerY = state.getBlockY();
+        int lightLevel = state.getLightLevel();
         
-        // 使用条件对象中的高度和光照限制
-        boolean heightCheck = playerY >= condition.getMinHeight() && playerY <= condition.getMaxHeight();
-        boolean lightCheck = lightLevel >= condition.getMinLight() && lightLevel <= condition.getMaxLight();
+        // 未配置的限制视为不限制
+        boolean heightCheck = (condition.getMinHeight() == null || playerY >= condition.getMinHeight())
+                && (condition.getMaxHeight() == null || playerY <= condition.getMaxHeight());
+        boolean lightCheck = (condition.getMinLight() == null || lightLevel >= condition.getMinLight())
+                && (condition.getMaxLight() == null || lightLevel <= condition.getMaxLight());
         
         return heightCheck && lightCheck;
     }
+    
+    @Override
+    public boolean evaluate(PlayerState state) {
+        return isPlayerApplicable(state) && super.evaluate(state);
+    }
 
     /**
      * 检查效果是否适用于当前世界状态
@@ -68,19 +83,11 @@ public class CaveEffect extends BaseWeatherEffect {
         return true;
     }
     
-    /**
-     * 应用效果到玩家
-     * @param player 目标玩家
-     * @param world 目标世界
-     */
     @Override
-    public void apply(Player player, World world) {
-        // 只有当玩家在洞穴环境中时才应用效果
-        if (isApplicable(player, world)) {
-            super.apply(player, world);
-        }
+    public boolean isStateIndexable() {
+        return true;
     }
-
+    
     @Override
     public List<PotionEffect> getPotionEffects() {
         return potionEffects;
@@ -44,6 +44,11 @@ public class ClearEffect extends BaseWeatherEffect {
     public boolean isApplicable(World world) {
         return !world.hasStorm() && !world.isThundering();
     }
+    
+    @Override
+    public boolean isStateIndexable() {
+        return true;
+    }
 
     @Override
     public List<PotionEffect> getPotionEffects() {
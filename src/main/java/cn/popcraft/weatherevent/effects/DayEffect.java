@@ -40,4 +40,9 @@ public class DayEffect extends BaseWeatherEffect {
         long time = world.getTime();
         return time >= 1000 && time < 13000;
     }
+
+    @Override
+    public boolean isStateIndexable() {
+        return true;
+    }
 }
\ No newline at end of file
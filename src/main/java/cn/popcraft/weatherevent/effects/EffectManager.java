@@ -4,9 +4,15 @@ import cn.popcraft.weatherevent.WeatherEvent;
 import cn.popcraft.weatherevent.manager.BiomeCacheManager;
 import cn.popcraft.weatherevent.manager.CooldownManager;
 import cn.popcraft.weatherevent.manager.PermissionManager;
+import cn.popcraft.weatherevent.manager.PlayerShardScheduler;
+import cn.popcraft.weatherevent.manager.PotionReconciler;
+import cn.popcraft.weatherevent.manager.RegionEnterEvent;
+import cn.popcraft.weatherevent.manager.RegionLeaveEvent;
 import cn.popcraft.weatherevent.manager.RegionManager;
 import cn.popcraft.weatherevent.manager.StatisticsManager;
+import cn.popcraft.weatherevent.message.PlaceholderContext;
 import org.bukkit.Bukkit;
+import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.block.Biome;
 import org.bukkit.configuration.ConfigurationSection;
@@ -34,6 +40,32 @@ public class EffectManager implements Listener {
     private BukkitTask effectTask; // 效果更新任务
     private int updateInterval; // 更新间隔，单位为 tick
     
+    // 玩家分片调度
+    private boolean shardingEnabled; // 是否将玩家分散到更新间隔内的各个tick
+    private long shardTickBudgetNanos; // 每tick处理玩家的时间预算（纳秒）
+    private PlayerShardScheduler shardScheduler;
+    
+    // 快照评估模式：条件在工作线程评估，效果动作回到主线程执行
+    private boolean snapshotEvaluationEnabled;
+    private int snapshotEvaluationThreads;
+    private SnapshotEvaluator snapshotEvaluator;
+    
+    // 按 (天气 × 时间段) 索引的各世界适用效果
+    private final WorldEffectIndex effectIndex;
+    
+    // 主线程复用的玩家上下文，每处理一个玩家重置一次
+    private final PlayerContext playerContext;
+    private long[] readyEffects; // 复用的冷却位图
+    
+    // 天气/雷暴变化后等待重新评估的世界，同一tick内的多次变化合并为一次
+    private final Set<String> dirtyWorlds = new LinkedHashSet<>();
+    private BukkitTask reevaluationTask;
+    private long dirtyMarks;           // 世界被标记为待评估的次数
+    private long coalescedMarks;       // 标记时世界已在待评估队列中的次数
+    private long worldReevaluations;   // 实际执行的世界重新评估次数
+    private long reevaluatedPlayers;   // 重新评估处理的玩家数
+    private long lastReevaluationNanos; // 上次合并评估耗时
+    
     // 用于跟踪每个世界的天气状态
     private final Map<String, WeatherState> worldWeatherStates;
     
@@ -57,6 +89,7 @@ public class EffectManager implements Listener {
     
     // 统计管理器
     private final StatisticsManager statisticsManager;
+    private final PotionReconciler potionReconciler;
     
     // 内部类，用于存储世界的天气状态
     private static class WeatherState {
@@ -79,13 +112,20 @@ public class EffectManager implements Listener {
         this.effects = new HashMap<>();
         this.worldWeatherStates = new HashMap<>();
         this.updateInterval = 20; // 默认每秒更新一次
+        this.shardingEnabled = true;
+        this.shardTickBudgetNanos = 2_000_000L; // 默认每tick 2毫秒
+        this.snapshotEvaluationEnabled = false;
+        this.snapshotEvaluationThreads = 2;
         this.biomeWeatherManager = biomeWeatherManager;
         this.enhancedTimeEffectManager = new EnhancedTimeEffectManager(plugin);
         this.permissionManager = new PermissionManager(plugin);
         this.cooldownManager = new CooldownManager();
         this.regionManager = new RegionManager(plugin);
-        this.biomeCacheManager = new BiomeCacheManager(plugin.getLogger());
+        this.biomeCacheManager = new BiomeCacheManager();
+        this.playerContext = new PlayerContext(biomeCacheManager);
         this.statisticsManager = new StatisticsManager(plugin);
+        this.potionReconciler = new PotionReconciler();
+        this.effectIndex = new WorldEffectIndex(effects.values(), regionManager);
     }
     
     /**
@@ -95,6 +135,10 @@ public class EffectManager implements Listener {
         // 清除现有效果
         unregisterAllEffects();
         
+        // 重新加载世界、区域和玩家组配置
+        regionManager.reload();
+        permissionManager.reload();
+        
         // 获取配置
         ConfigurationSection config = plugin.getConfig().getConfigurationSection("effects");
         if (config == null) {
@@ -106,6 +150,19 @@ public class EffectManager implements Listener {
         // 设置更新间隔
         updateInterval = plugin.getConfig().getInt("update-interval", 20);
         
+        // 设置玩家分片调度
+        shardingEnabled = plugin.getConfig().getBoolean("performance.player-sharding.enabled", true);
+        shardTickBudgetNanos = plugin.getConfig().getLong("performance.player-sharding.tick-budget-nanos", 2_000_000L);
+        
+        // 设置药水效果比较
+        potionReconciler.configure(
+            plugin.getConfig().getBoolean("performance.potion-diff.enabled", true),
+            plugin.getConfig().getInt("performance.potion-diff.refresh-threshold-ticks", updateInterval * 2));
+        
+        // 设置快照评估模式
+        snapshotEvaluationEnabled = plugin.getConfig().getBoolean("performance.snapshot-evaluation.enabled", false);
+        snapshotEvaluationThreads = plugin.getConfig().getInt("performance.snapshot-evaluation.threads", 2);
+        
         // 初始化所有世界的天气状态
         initializeWorldWeatherStates();
         
@@ -261,16 +318,39 @@ public class EffectManager implements Listener {
      * @param effect 要注册的效果
      */
     public void registerEffect(BaseWeatherEffect effect) {
+        resolveRuntimeSettings(effect);
         effects.put(effect.getId(), effect);
+        effectIndex.invalidate();
         plugin.getLogger().info("已注册效果: " + effect.getId() + " - " + effect.getDescription());
     }
     
+    /**
+     * 解析效果的冷却时间、玩家组限制和区域限制
+     * @param effect 效果
+     */
+    private void resolveRuntimeSettings(BaseWeatherEffect effect) {
+        long cooldownMillis = 0L;
+        ConfigurationSection effectConfig = plugin.getConfig().getConfigurationSection("effects." + effect.getId());
+        if (effectConfig != null) {
+            int cooldownSeconds = effectConfig.getInt("cooldown", 0);
+            if (cooldownSeconds > 0) {
+                cooldownMillis = cooldownSeconds * 1000L;
+            }
+        }
+        
+        effect.setRuntimeSettings(cooldownMillis, cooldownManager.internEffect(effect.getId()),
+                statisticsManager.internEffect(effect.getId()),
+                permissionManager.isEffectRestricted(effect.getId()),
+                regionManager.isEffectRestrictedInRegions(effect.getId()));
+    }
+    
     /**
      * 取消注册一个效果
      * @param effectId 效果ID
      */
     public void unregisterEffect(String effectId) {
         BaseWeatherEffect effect = effects.remove(effectId);
+        effectIndex.invalidate();
         if (effect != null) {
             plugin.getLogger().info("已取消注册效果: " + effectId);
         }
@@ -281,6 +361,7 @@ public class EffectManager implements Listener {
      */
     public void unregisterAllEffects() {
         effects.clear();
+        effectIndex.invalidate();
         stopEffectTask();
     }
     
@@ -291,8 +372,29 @@ public class EffectManager implements Listener {
         // 如果任务已经在运行，先停止它
         stopEffectTask();
         
-        // 创建新的定时任务，定期更新所有效果
-        effectTask = Bukkit.getScheduler().runTaskTimer(plugin, this::updateEffects, 20L, updateInterval);
+        cooldownManager.start(plugin);
+        
+        if (snapshotEvaluationEnabled) {
+            snapshotEvaluator = new SnapshotEvaluator(plugin, snapshotEvaluationThreads);
+        }
+        
+        if (shardingEnabled) {
+            // 每tick处理一个分片的玩家，分摊原本集中在一次回调里的工作
+            shardScheduler = new PlayerShardScheduler(this::processPlayer, updateInterval, shardTickBudgetNanos);
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                shardScheduler.addPlayer(player);
+            }
+            effectTask = Bukkit.getScheduler().runTaskTimer(plugin, () -> {
+                shardScheduler.tick();
+                flushSnapshots();
+            }, 20L, 1L);
+        } else {
+            // 创建新的定时任务，定期更新所有效果
+            effectTask = Bukkit.getScheduler().runTaskTimer(plugin, () -> {
+                updateEffects();
+                flushSnapshots();
+            }, 20L, updateInterval);
+        }
     }
     
     /**
@@ -303,6 +405,58 @@ public class EffectManager implements Listener {
             effectTask.cancel();
             effectTask = null;
         }
+        cooldownManager.stop();
+        if (reevaluationTask != null) {
+            reevaluationTask.cancel();
+            reevaluationTask = null;
+        }
+        dirtyWorlds.clear();
+        shardScheduler = null;
+        if (snapshotEvaluator != null) {
+            snapshotEvaluator.shutdown();
+            snapshotEvaluator = null;
+        }
+    }
+    
+    /**
+     * 把本tick采集的玩家快照交给工作线程评估
+     */
+    private void flushSnapshots() {
+        if (snapshotEvaluator != null) {
+            snapshotEvaluator.flush(this::applySnapshotActions);
+        }
+    }
+    
+    /**
+     * 在主线程执行快照评估通过的效果动作
+     * @param actions 效果动作
+     */
+    private void applySnapshotActions(List<SnapshotEvaluator.Action> actions) {
+        for (SnapshotEvaluator.Action action : actions) {
+            Player player = Bukkit.getPlayer(action.getPlayerId());
+            if (player == null || !player.isOnline()) {
+                continue;
+            }
+            
+            // 评估期间玩家切换了世界或效果被重新加载，放弃该动作
+            World world = player.getWorld();
+            BaseWeatherEffect effect = action.getEffect();
+            if (!world.getName().equals(action.getWorldName()) || effects.get(effect.getId()) != effect) {
+                continue;
+            }
+            
+            // 评估期间可能已由其他批次触发，重新检查冷却
+            long cooldownMillis = effect.getCooldownMillis();
+            if (cooldownMillis > 0L && cooldownManager.isOnCooldown(player, effect.getCooldownIndex())) {
+                continue;
+            }
+            
+            effect.executeActions(player, world);
+            
+            if (cooldownMillis > 0L) {
+                cooldownManager.setCooldown(player, effect.getCooldownIndex(), cooldownMillis);
+            }
+        }
     }
     
     /**
@@ -316,58 +470,128 @@ public class EffectManager implements Listener {
                 continue;
             }
             
-            // 获取适用于当前世界的效果
-            List<BaseWeatherEffect> applicableEffects = new ArrayList<>();
-            for (BaseWeatherEffect effect : effects.values()) {
-                if (effect.isApplicable(world) && regionManager.isEffectEnabledInWorld(world, effect.getId())) {
-                    applicableEffects.add(effect);
-                }
+            // 对世界中的每个玩家应用效果
+            for (Player player : world.getPlayers()) {
+                processPlayer(player);
+            }
+        }
+    }
+    
+    /**
+     * 标记世界需要重新评估
+     * 在本tick结束后统一处理，同一世界在同一tick内多次变化只评估一次
+     * @param world 世界
+     */
+    private void markWorldDirty(World world) {
+        dirtyMarks++;
+        if (!dirtyWorlds.add(world.getName())) {
+            coalescedMarks++;
+            return;
+        }
+        if (reevaluationTask == null) {
+            // 天气事件在状态真正改变之前触发，延后到调度阶段时世界已是新的天气
+            reevaluationTask = Bukkit.getScheduler().runTask(plugin, this::reevaluateDirtyWorlds);
+        }
+    }
+    
+    /**
+     * 重新评估所有待评估的世界
+     */
+    private void reevaluateDirtyWorlds() {
+        reevaluationTask = null;
+        if (dirtyWorlds.isEmpty()) {
+            return;
+        }
+        
+        long start = System.nanoTime();
+        for (String worldName : dirtyWorlds) {
+            World world = Bukkit.getWorld(worldName);
+            if (world == null || !regionManager.isWorldEnabled(world)) {
+                continue;
             }
             
-            // 对世界中的每个玩家应用效果
+            worldReevaluations++;
             for (Player player : world.getPlayers()) {
-                // 更新玩家会话信息
-                enhancedTimeEffectManager.updatePlayerSession(player);
-                
-                // 检查玩家权限
-                PermissionManager.GroupEffectConfig groupConfig = permissionManager.getPlayerGroupConfig(player);
-                if (groupConfig.isBypassEffects()) {
-                    continue; // 玩家免疫所有效果
-                }
-                
-                // 应用时间相关效果
-                applyTimeRelatedEffects(player, world);
-                
-                for (BaseWeatherEffect effect : applicableEffects) {
-                    // 记录效果触发
-                    statisticsManager.recordEffectTrigger(effect.getId(), player);
-                    
-                    // 检查效果权限和冷却
-                    if (!groupConfig.shouldSkipEffect(effect.getId()) && 
-                        !cooldownManager.isOnCooldown(player, effect.getId()) &&
-                        regionManager.isEffectEnabledInRegion(player, effect.getId())) {
-                        effect.apply(player, world);
-                        
-                        // 设置冷却时间（如果配置了）
-                        ConfigurationSection effectConfig = plugin.getConfig().getConfigurationSection("effects." + effect.getId());
-                        if (effectConfig != null) {
-                            int cooldownSeconds = effectConfig.getInt("cooldown", 0);
-                            if (cooldownSeconds > 0) {
-                                cooldownManager.setCooldown(player, effect.getId(), cooldownSeconds * 1000L);
-                            }
-                        }
+                processPlayer(player);
+                reevaluatedPlayers++;
+            }
+        }
+        dirtyWorlds.clear();
+        flushSnapshots();
+        lastReevaluationNanos = System.nanoTime() - start;
+    }
+    
+    /**
+     * 对单个玩家应用所有适用的效果
+     * @param player 玩家
+     */
+    private void processPlayer(Player player) {
+        PlayerContext context = playerContext.reset(player);
+        World world = context.getWorld();
+        
+        // 检查世界是否启用天气效果
+        if (!regionManager.isWorldEnabled(world)) {
+            return;
+        }
+        
+        // 获取适用于当前世界的效果
+        List<BaseWeatherEffect> applicableEffects = effectIndex.getApplicableEffects(world);
+        
+        // 更新玩家会话信息
+        enhancedTimeEffectManager.updatePlayerSession(player);
+        
+        // 检查玩家权限
+        PermissionManager.GroupEffectConfig groupConfig = permissionManager.getPlayerGroupConfig(player);
+        if (groupConfig.isBypassEffects()) {
+            return; // 玩家免疫所有效果
+        }
+        
+        // 应用时间相关效果
+        applyTimeRelatedEffects(player, world);
+        
+        // 快照模式下交给工作线程评估的效果
+        List<BaseWeatherEffect> snapshotCandidates = null;
+        
+        // 一次取出玩家所有效果的冷却状态
+        readyEffects = cooldownManager.getReadyEffects(player, readyEffects);
+        
+        for (BaseWeatherEffect effect : applicableEffects) {
+            // 记录效果触发
+            statisticsManager.recordEffectTrigger(effect.getStatisticsIndex(), player);
+            
+            // 检查效果权限和冷却（只有存在相应限制时才进行查询）
+            long cooldownMillis = effect.getCooldownMillis();
+            if ((!effect.isGroupRestricted() || !groupConfig.shouldSkipEffect(effect.getId())) && 
+                (cooldownMillis == 0L || CooldownManager.isReady(readyEffects, effect.getCooldownIndex())) &&
+                (!effect.isRegionRestricted() || regionManager.isEffectEnabledInRegion(player, effect.getId()))) {
+                if (snapshotEvaluator != null && effect.supportsSnapshotEvaluation()) {
+                    if (snapshotCandidates == null) {
+                        snapshotCandidates = new ArrayList<>();
                     }
+                    snapshotCandidates.add(effect);
+                    continue;
                 }
                 
-                // 应用生物群系天气效果
-                if (biomeWeatherManager != null && biomeWeatherManager.isEnabled()) {
-                    biomeWeatherManager.applyEffects(player, world);
-                }
+                effect.apply(context);
                 
-                // 执行天气指令
-                executeWeatherCommands(player, world);
+                // 设置冷却时间（如果配置了）
+                if (cooldownMillis > 0L) {
+                    cooldownManager.setCooldown(player, effect.getCooldownIndex(), cooldownMillis);
+                }
             }
         }
+        
+        if (snapshotCandidates != null) {
+            snapshotEvaluator.submit(PlayerSnapshot.capture(context), snapshotCandidates);
+        }
+        
+        // 应用生物群系天气效果
+        if (biomeWeatherManager != null && biomeWeatherManager.isEnabled()) {
+            biomeWeatherManager.applyEffects(context);
+        }
+        
+        // 执行天气指令
+        executeWeatherCommands(player, world);
     }
     
     /**
@@ -455,8 +679,7 @@ public class EffectManager implements Listener {
             return;
         }
         
-        String processedCommand = command.replace("%player%", player.getName());
-        plugin.getServer().dispatchCommand(plugin.getServer().getConsoleSender(), processedCommand);
+        plugin.getCommandCompiler().compile(command).execute(new PlaceholderContext(player));
     }
     
     /**
@@ -507,6 +730,58 @@ public class EffectManager implements Listener {
         return statisticsManager;
     }
     
+    /**
+     * 获取药水效果协调器
+     * @return 药水效果协调器
+     */
+    public PotionReconciler getPotionReconciler() {
+        return potionReconciler;
+    }
+    
+    /**
+     * 获取世界效果索引
+     * @return 世界效果索引
+     */
+    public WorldEffectIndex getEffectIndex() {
+        return effectIndex;
+    }
+    
+    /**
+     * 获取快照评估器
+     * @return 快照评估器，未启用快照评估模式时返回null
+     */
+    public SnapshotEvaluator getSnapshotEvaluator() {
+        return snapshotEvaluator;
+    }
+    
+    public long getDirtyMarks() {
+        return dirtyMarks;
+    }
+    
+    public long getCoalescedMarks() {
+        return coalescedMarks;
+    }
+    
+    public long getWorldReevaluations() {
+        return worldReevaluations;
+    }
+    
+    public long getReevaluatedPlayers() {
+        return reevaluatedPlayers;
+    }
+    
+    public long getLastReevaluationNanos() {
+        return lastReevaluationNanos;
+    }
+    
+    /**
+     * 获取玩家分片调度器
+     * @return 分片调度器，未启用分片时返回null
+     */
+    public PlayerShardScheduler getShardScheduler() {
+        return shardScheduler;
+    }
+    
     /**
      * 获取指定ID的效果
      * @param effectId 效果ID
@@ -527,6 +802,11 @@ public class EffectManager implements Listener {
         // 初始化玩家会话
         enhancedTimeEffectManager.getPlayerSession(player);
         
+        // 加入分片调度
+        if (shardScheduler != null) {
+            shardScheduler.addPlayer(player);
+        }
+        
         // 应用初始效果
         applyEffectsForPlayer(player, world);
     }
@@ -539,6 +819,14 @@ public class EffectManager implements Listener {
         Player player = event.getPlayer();
         // 清除玩家的冷却时间
         cooldownManager.clearCooldowns(player);
+        
+        // 清除玩家的药水效果发送统计
+        potionReconciler.clearPlayer(player);
+
+        // 移出分片调度
+        if (shardScheduler != null) {
+            shardScheduler.removePlayer(player);
+        }
     }
     
     /**
@@ -569,8 +857,8 @@ public class EffectManager implements Listener {
         );
         state.isRaining = event.toWeatherState(); // 更新为新的雨天状态
         
-        // 天气改变时，更新效果
-        updateEffects();
+        // 天气改变时，只标记该世界，在本tick结束后统一重新评估
+        markWorldDirty(world);
     }
     
     /**
@@ -587,8 +875,68 @@ public class EffectManager implements Listener {
         );
         state.isThundering = event.toThunderState(); // 更新为新的雷暴状态
         
-        // 雷暴状态改变时，更新效果
-        updateEffects();
+        // 雷暴状态改变时，只标记该世界，与同一tick内的天气变化合并评估
+        markWorldDirty(world);
+    }
+    
+    /**
+     * 当玩家进入区域时，立即移除该区域禁用的效果
+     * 区域只在进入和离开时影响效果，定时更新中不再重新查找玩家所在区域
+     */
+    @EventHandler
+    public void onRegionEnter(RegionEnterEvent event) {
+        Player player = event.getPlayer();
+        World world = event.getLocation().getWorld();
+        
+        for (String effectId : event.getRegion().getDisabledEffects()) {
+            BaseWeatherEffect effect = effects.get(effectId);
+            // 进入的区域优先级较低时效果仍可能由生效的区域启用
+            if (effect != null && effect.isApplicable(world) && 
+                !regionManager.isEffectEnabledInRegion(player, effectId)) {
+                effect.remove(player, world);
+            }
+        }
+    }
+    
+    /**
+     * 当玩家离开区域时，立即应用该区域禁用、现在重新启用的效果
+     */
+    @EventHandler
+    public void onRegionLeave(RegionLeaveEvent event) {
+        Set<String> disabledEffects = event.getRegion().getDisabledEffects();
+        World world = event.getLocation().getWorld();
+        if (disabledEffects.isEmpty() || world != event.getPlayer().getWorld() || !regionManager.isWorldEnabled(world)) {
+            return;
+        }
+        
+        Player player = event.getPlayer();
+        PermissionManager.GroupEffectConfig groupConfig = permissionManager.getPlayerGroupConfig(player);
+        if (groupConfig.isBypassEffects()) {
+            return;
+        }
+        
+        PlayerContext context = null;
+        for (BaseWeatherEffect effect : effectIndex.getApplicableEffects(world)) {
+            if (!disabledEffects.contains(effect.getId()) || 
+                !regionManager.isEffectEnabledInRegion(player, effect.getId()) ||
+                (effect.isGroupRestricted() && groupConfig.shouldSkipEffect(effect.getId()))) {
+                continue;
+            }
+            
+            long cooldownMillis = effect.getCooldownMillis();
+            if (cooldownMillis > 0L && cooldownManager.isOnCooldown(player, effect.getCooldownIndex())) {
+                continue;
+            }
+            
+            if (context == null) {
+                context = new PlayerContext(player, biomeCacheManager);
+            }
+            effect.apply(context);
+            
+            if (cooldownMillis > 0L) {
+                cooldownManager.setCooldown(player, effect.getCooldownIndex(), cooldownMillis);
+            }
+        }
     }
     
     /**
@@ -596,22 +944,31 @@ public class EffectManager implements Listener {
      */
     @EventHandler
     public void onPlayerMove(PlayerMoveEvent event) {
-        // 只在玩家跨区块移动或者改变生物群系时处理
-        if (event.getFrom().getBlock().getBiome() != event.getTo().getBlock().getBiome()) {
-            Player player = event.getPlayer();
-            World world = player.getWorld();
+        // 生物群系按 4×4×4 方块存储，没有离开所在格时不可能改变生物群系
+        Location from = event.getFrom();
+        Location to = event.getTo();
+        if (to == null || from.getWorld() != to.getWorld() ||
+            ((from.getBlockX() >> 2) == (to.getBlockX() >> 2) &&
+             (from.getBlockY() >> 2) == (to.getBlockY() >> 2) &&
+             (from.getBlockZ() >> 2) == (to.getBlockZ() >> 2))) {
+            return;
+        }
+        
+        // 只在玩家改变生物群系时处理
+        if (biomeCacheManager.getBiome(from) != biomeCacheManager.getBiome(to)) {
+            PlayerContext context = new PlayerContext(event.getPlayer(), biomeCacheManager);
             
             // 更新玩家的生物群系相关效果
             if (biomeWeatherManager != null && biomeWeatherManager.isEnabled()) {
-                biomeWeatherManager.applyEffects(player, world);
+                biomeWeatherManager.applyEffects(context);
             }
             
             // 检查并应用单独的生物群系效果
             for (BaseWeatherEffect effect : effects.values()) {
                 if (effect instanceof BiomeEffect) {
                     BiomeEffect biomeEffect = (BiomeEffect) effect;
-                    if (biomeEffect.isApplicable(player, world)) {
-                        biomeEffect.apply(player, world);
+                    if (biomeEffect.isPlayerApplicable(context)) {
+                        biomeEffect.apply(context);
                     }
                 }
             }
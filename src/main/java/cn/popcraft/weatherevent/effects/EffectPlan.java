@@ -0,0 +1,379 @@
+package cn.popcraft.weatherevent.effects;
+
+import cn.popcraft.weatherevent.config.DynamicParameter;
+import cn.popcraft.weatherevent.manager.CommandCompiler;
+import cn.popcraft.weatherevent.manager.CompiledCommand;
+import cn.popcraft.weatherevent.message.PlaceholderRegistry;
+import cn.popcraft.weatherevent.message.PlaceholderTemplate;
+import org.bukkit.Sound;
+import org.bukkit.potion.PotionEffectType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Logger;
+
+/**
+ * 效果执行计划
+ * 在加载时把效果的随机效果、命令、标题、动作栏、声音、消息配置编译为不可变的类型化结构，
+ * 应用效果时无需再查询映射、拆箱或依赖异常判断
+ */
+public final class EffectPlan {
+
+    // 声音名称到枚举的映射，替代 Sound.valueOf 的异常判断
+    private static final Map<String, Sound> SOUNDS_BY_NAME = new HashMap<>();
+
+    static {
+        for (Sound sound : Sound.values()) {
+            SOUNDS_BY_NAME.put(sound.name(), sound);
+        }
+    }
+
+    private final RandomEffectPlan randomEffects;
+    private final CommandPlan commands;
+    private final TitlePlan title;
+    private final TextPlan actionBar;
+    private final SoundPlan sound;
+    private final TextPlan message;
+
+    private EffectPlan(RandomEffectPlan randomEffects, CommandPlan commands, TitlePlan title,
+                       TextPlan actionBar, SoundPlan sound, TextPlan message) {
+        this.randomEffects = randomEffects;
+        this.commands = commands;
+        this.title = title;
+        this.actionBar = actionBar;
+        this.sound = sound;
+        this.message = message;
+    }
+
+    /**
+     * 编译效果配置
+     * 未配置或未启用的部分编译为null
+     * @param effect 效果
+     * @param commandCompiler 命令编译器
+     * @param placeholders 占位符注册表，用于编译标题和消息文本
+     * @param logger 日志记录器，用于报告无法解析的配置
+     * @return 执行计划
+     */
+    public static EffectPlan compile(BaseWeatherEffect effect, CommandCompiler commandCompiler,
+                                     PlaceholderRegistry placeholders, Logger logger) {
+        String id = effect.getId();
+        return new EffectPlan(
+                compileRandomEffects(id, effect.getRandomEffects(), logger),
+                compileCommands(effect.getCommands(), commandCompiler),
+                compileTitle(effect.getTitle(), placeholders),
+                compileText(effect.getActionBar(), placeholders),
+                compileSound(effect.getSound()),
+                compileText(effect.getMessage(), placeholders));
+    }
+
+    /**
+     * 根据名称解析声音枚举
+     * 名称中的 "." 和 ":" 视为 "_"，不区分大小写
+     * @param name 声音名称
+     * @return 声音枚举，无法解析时返回null
+     */
+    public static Sound resolveSound(String name) {
+        if (name == null || name.isEmpty()) return null;
+        return SOUNDS_BY_NAME.get(name.toUpperCase().replace(".", "_").replace(":", "_"));
+    }
+
+    /**
+     * 按概率判定是否触发
+     * @param chance 触发概率
+     * @return 是否触发
+     */
+    static boolean roll(double chance) {
+        if (chance >= 1.0) return true;
+        if (chance <= 0.0) return false;
+        return ThreadLocalRandom.current().nextDouble() <= chance;
+    }
+
+    @SuppressWarnings("unchecked") // 抑制未经检查操作警告
+    private static RandomEffectPlan compileRandomEffects(String id, Map<String, Object> config, Logger logger) {
+        if (config == null || config.isEmpty()) return null;
+
+        PotionEffectType prerequisiteType = null;
+        int prerequisiteLevel = 0;
+        boolean prerequisiteUnsatisfiable = false;
+        Object prerequisitesObj = config.get("prerequisites");
+        if (prerequisitesObj instanceof Map) {
+            Map<String, Object> prerequisites = (Map<String, Object>) prerequisitesObj;
+            if ("has_potion_effect".equals(prerequisites.get("type"))) {
+                Object typeName = prerequisites.get("effect_type");
+                prerequisiteType = typeName instanceof String ? PotionEffectType.getByName((String) typeName) : null;
+                Object level = prerequisites.get("level");
+                prerequisiteLevel = level instanceof Number ? ((Number) level).intValue() : 0;
+                if (prerequisiteType == null) {
+                    // 前置条件的效果类型无效时，随机效果永远不会触发
+                    prerequisiteUnsatisfiable = true;
+                    logger.warning("效果 " + id + " 的随机效果前置条件包含无效的药水效果类型: " + typeName);
+                }
+            }
+        }
+
+        List<PotionEffectType> types = new ArrayList<>();
+        List<int[]> levels = new ArrayList<>();
+        List<int[]> durations = new ArrayList<>();
+        Object effectsObj = config.get("effects");
+        if (effectsObj instanceof List) {
+            for (Object entry : (List<Object>) effectsObj) {
+                if (!(entry instanceof Map)) continue;
+                Map<String, Object> effect = (Map<String, Object>) entry;
+                Object typeName = effect.get("type");
+                PotionEffectType type = typeName instanceof String ? PotionEffectType.getByName((String) typeName) : null;
+                if (type == null) {
+                    logger.warning("效果 " + id + " 的随机效果包含无效的药水效果类型: " + typeName);
+                    continue;
+                }
+                types.add(type);
+                levels.add(DynamicParameter.parseIntRange(effect.get("level")));
+                durations.add(DynamicParameter.parseIntRange(effect.get("duration")));
+            }
+        }
+        if (types.isEmpty()) return null;
+
+        Object chance = config.get("chance");
+        return new RandomEffectPlan(
+                chance instanceof Number ? ((Number) chance).doubleValue() : 0.0,
+                prerequisiteType, prerequisiteLevel, prerequisiteUnsatisfiable,
+                types.toArray(new PotionEffectType[0]),
+                levels.toArray(new int[0][]),
+                durations.toArray(new int[0][]));
+    }
+
+    @SuppressWarnings("unchecked") // 抑制未经检查操作警告
+    private static CommandPlan compileCommands(Map<String, Object> config, CommandCompiler commandCompiler) {
+        if (config == null || config.isEmpty()) return null;
+
+        Object listObj = config.get("list");
+        List<CompiledCommand> list = new ArrayList<>();
+        if (listObj instanceof List) {
+            for (Object cmd : (List<Object>) listObj) {
+                if (cmd != null) list.add(commandCompiler.compile(cmd.toString()));
+            }
+        }
+
+        Object chance = config.get("chance");
+        return new CommandPlan(chance instanceof Number ? ((Number) chance).doubleValue() : 0.0,
+                Collections.unmodifiableList(list));
+    }
+
+    private static TitlePlan compileTitle(Map<String, Object> config, PlaceholderRegistry placeholders) {
+        if (!isEnabled(config)) return null;
+
+        return new TitlePlan(getDouble(config, "chance", 1.0),
+                placeholders.compile(getString(config, "text", "")),
+                placeholders.compile(getString(config, "subtitle", "")),
+                getInt(config, "fadeIn", 10),
+                getInt(config, "stay", 70),
+                getInt(config, "fadeOut", 20));
+    }
+
+    private static TextPlan compileText(Map<String, Object> config, PlaceholderRegistry placeholders) {
+        if (!isEnabled(config)) return null;
+
+        return new TextPlan(getDouble(config, "chance", 1.0), placeholders.compile(getString(config, "text", "")));
+    }
+
+    private static SoundPlan compileSound(Map<String, Object> config) {
+        if (!isEnabled(config)) return null;
+
+        String resource = getString(config, "resource", "entity.player.levelup");
+        if (resource.isEmpty()) {
+            resource = "entity.player.levelup";
+        }
+
+        return new SoundPlan(getDouble(config, "chance", 1.0),
+                resolveSound(resource), resource,
+                (float) getDouble(config, "volume", 1.0),
+                (float) getDouble(config, "pitch", 1.0));
+    }
+
+    private static boolean isEnabled(Map<String, Object> config) {
+        if (config == null || config.isEmpty()) return false;
+        return Boolean.TRUE.equals(config.get("enabled"));
+    }
+
+    private static double getDouble(Map<String, Object> config, String key, double def) {
+        Object value = config.get(key);
+        return value instanceof Number ? ((Number) value).doubleValue() : def;
+    }
+
+    private static int getInt(Map<String, Object> config, String key, int def) {
+        Object value = config.get(key);
+        return value instanceof Number ? ((Number) value).intValue() : def;
+    }
+
+    private static String getString(Map<String, Object> config, String key, String def) {
+        Object value = config.get(key);
+        return value instanceof String ? (String) value : def;
+    }
+
+    public RandomEffectPlan getRandomEffects() {
+        return randomEffects;
+    }
+
+    public CommandPlan getCommands() {
+        return commands;
+    }
+
+    public TitlePlan getTitle() {
+        return title;
+    }
+
+    public TextPlan getActionBar() {
+        return actionBar;
+    }
+
+    public SoundPlan getSound() {
+        return sound;
+    }
+
+    public TextPlan getMessage() {
+        return message;
+    }
+
+    /**
+     * 随机药水效果计划
+     */
+    public static final class RandomEffectPlan {
+        private final double chance;
+        private final PotionEffectType prerequisiteType; // 为null表示无前置条件
+        private final int prerequisiteLevel;
+        private final boolean prerequisiteUnsatisfiable;
+        private final PotionEffectType[] types;
+        private final int[][] levels; // 每项为 {min, max}
+        private final int[][] durations; // 每项为 {min, max}
+
+        RandomEffectPlan(double chance, PotionEffectType prerequisiteType, int prerequisiteLevel,
+                         boolean prerequisiteUnsatisfiable, PotionEffectType[] types,
+                         int[][] levels, int[][] durations) {
+            this.chance = chance;
+            this.prerequisiteType = prerequisiteType;
+            this.prerequisiteLevel = prerequisiteLevel;
+            this.prerequisiteUnsatisfiable = prerequisiteUnsatisfiable;
+            this.types = types;
+            this.levels = levels;
+            this.durations = durations;
+        }
+
+        public double getChance() { return chance; }
+        public PotionEffectType getPrerequisiteType() { return prerequisiteType; }
+        public int getPrerequisiteLevel() { return prerequisiteLevel; }
+        public boolean isPrerequisiteUnsatisfiable() { return prerequisiteUnsatisfiable; }
+        public int size() { return types.length; }
+        public PotionEffectType getType(int index) { return types[index]; }
+
+        /**
+         * 在配置范围内取等级
+         * @param index 效果索引
+         * @return 等级
+         */
+        public int sampleLevel(int index) {
+            return sample(levels[index]);
+        }
+
+        /**
+         * 在配置范围内取持续时间
+         * @param index 效果索引
+         * @return 持续时间（tick）
+         */
+        public int sampleDuration(int index) {
+            return sample(durations[index]);
+        }
+
+        private static int sample(int[] range) {
+            if (range[0] == range[1]) return range[0];
+            return range[0] + ThreadLocalRandom.current().nextInt(range[1] - range[0] + 1);
+        }
+    }
+
+    /**
+     * 命令计划
+     */
+    public static final class CommandPlan {
+        private final double chance;
+        private final List<CompiledCommand> commands;
+
+        CommandPlan(double chance, List<CompiledCommand> commands) {
+            this.chance = chance;
+            this.commands = commands;
+        }
+
+        public double getChance() { return chance; }
+        public List<CompiledCommand> getCommands() { return commands; }
+    }
+
+    /**
+     * 标题计划
+     */
+    public static final class TitlePlan {
+        private final double chance;
+        private final PlaceholderTemplate text;
+        private final PlaceholderTemplate subtitle;
+        private final int fadeIn;
+        private final int stay;
+        private final int fadeOut;
+
+        TitlePlan(double chance, PlaceholderTemplate text, PlaceholderTemplate subtitle, int fadeIn, int stay, int fadeOut) {
+            this.chance = chance;
+            this.text = text;
+            this.subtitle = subtitle;
+            this.fadeIn = fadeIn;
+            this.stay = stay;
+            this.fadeOut = fadeOut;
+        }
+
+        public double getChance() { return chance; }
+        public PlaceholderTemplate getText() { return text; }
+        public PlaceholderTemplate getSubtitle() { return subtitle; }
+        public int getFadeIn() { return fadeIn; }
+        public int getStay() { return stay; }
+        public int getFadeOut() { return fadeOut; }
+    }
+
+    /**
+     * 文本计划（动作栏、聊天消息）
+     */
+    public static final class TextPlan {
+        private final double chance;
+        private final PlaceholderTemplate text;
+
+        TextPlan(double chance, PlaceholderTemplate text) {
+            this.chance = chance;
+            this.text = text;
+        }
+
+        public double getChance() { return chance; }
+        public PlaceholderTemplate getText() { return text; }
+    }
+
+    /**
+     * 声音计划
+     */
+    public static final class SoundPlan {
+        private final double chance;
+        private final Sound sound; // 为null时按资源名称播放
+        private final String resource;
+        private final float volume;
+        private final float pitch;
+
+        SoundPlan(double chance, Sound sound, String resource, float volume, float pitch) {
+            this.chance = chance;
+            this.sound = sound;
+            this.resource = resource;
+            this.volume = volume;
+            this.pitch = pitch;
+        }
+
+        public double getChance() { return chance; }
+        public Sound getSound() { return sound; }
+        public String getResource() { return resource; }
+        public float getVolume() { return volume; }
+        public float getPitch() { return pitch; }
+    }
+}
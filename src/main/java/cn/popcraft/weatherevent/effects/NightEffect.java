@@ -42,6 +42,11 @@ public class NightEffect extends BaseWeatherEffect {
         return time >= 14000 || time < 0; // 注意：time < 0 可能表示世界重置或其他特殊情况
     }
     
+    @Override
+    public boolean isStateIndexable() {
+        return true;
+    }
+    
     // 新添加的方法：修复返回类型不兼容的错误
     // 假设 WeatherEffect 或 BaseEffect 定义了 getPotionEffects() 返回 List<PotionEffect>
     // 这里直接返回 potionEffects 字段，确保兼容性
@@ -0,0 +1,174 @@
+package cn.popcraft.weatherevent.effects;
+
+import cn.popcraft.weatherevent.manager.BiomeCacheManager;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Biome;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
+
+import java.util.UUID;
+
+/**
+ * 玩家上下文
+ * 一次效果更新中同一玩家的状态，按需读取并缓存，保证每项世界查询最多执行一次。
+ * 只能在主线程使用；可以通过 {@link #reset(Player)} 复用，避免重复分配 Location
+ */
+public class PlayerContext implements PlayerState {
+    private final BiomeCacheManager biomeCache;
+    private Player player;
+    private World world;
+    private final Location location = new Location(null, 0, 0, 0);
+    private boolean locationLoaded;
+
+    private Block block;
+    private Biome biome;
+    private Material blockType;
+    private String weatherType;
+    private int lightLevel = -1;
+    private int skyLight = -1;
+
+    /**
+     * 创建空的上下文，使用前需要调用 {@link #reset(Player)}
+     * @param biomeCache 生物群系缓存
+     */
+    public PlayerContext(BiomeCacheManager biomeCache) {
+        this.biomeCache = biomeCache;
+    }
+
+    public PlayerContext(Player player, BiomeCacheManager biomeCache) {
+        this.biomeCache = biomeCache;
+        reset(player);
+    }
+
+    /**
+     * 切换到新的玩家并清除所有缓存
+     * @param player 玩家
+     * @return 当前上下文
+     */
+    public PlayerContext reset(Player player) {
+        this.player = player;
+        this.world = player.getWorld();
+        this.locationLoaded = false;
+        this.block = null;
+        this.biome = null;
+        this.blockType = null;
+        this.weatherType = null;
+        this.lightLevel = -1;
+        this.skyLight = -1;
+        return this;
+    }
+
+    public Player getPlayer() {
+        return player;
+    }
+
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * 获取玩家位置
+     * 返回的是复用的对象，调用方不能修改或长期持有
+     * @return 玩家位置
+     */
+    public Location getLocation() {
+        if (!locationLoaded) {
+            player.getLocation(location);
+            locationLoaded = true;
+        }
+        return location;
+    }
+
+    /**
+     * 获取玩家所在方块
+     * @return 方块
+     */
+    public Block getBlock() {
+        if (block == null) {
+            block = getLocation().getBlock();
+        }
+        return block;
+    }
+
+    @Override
+    public UUID getPlayerId() {
+        return player.getUniqueId();
+    }
+
+    @Override
+    public String getWorldName() {
+        return world.getName();
+    }
+
+    @Override
+    public String getWeatherType() {
+        if (weatherType == null) {
+            weatherType = world.isThundering() ? "thunder" : (world.hasStorm() ? "rain" : "clear");
+        }
+        return weatherType;
+    }
+
+    @Override
+    public long getWorldTime() {
+        return world.getTime();
+    }
+
+    @Override
+    public int getBlockX() {
+        return getLocation().getBlockX();
+    }
+
+    @Override
+    public int getBlockY() {
+        return getLocation().getBlockY();
+    }
+
+    @Override
+    public int getBlockZ() {
+        return getLocation().getBlockZ();
+    }
+
+    @Override
+    public Biome getBiome() {
+        if (biome == null) {
+            biome = biomeCache.getBiome(world, getBlockX(), getBlockY(), getBlockZ());
+        }
+        return biome;
+    }
+
+    @Override
+    public Material getBlockType() {
+        if (blockType == null) {
+            blockType = getBlock().getType();
+        }
+        return blockType;
+    }
+
+    @Override
+    public int getLightLevel() {
+        if (lightLevel < 0) {
+            lightLevel = getBlock().getLightLevel();
+        }
+        return lightLevel;
+    }
+
+    @Override
+    public int getSkyLight() {
+        if (skyLight < 0) {
+            skyLight = getBlock().getLightFromSky();
+        }
+        return skyLight;
+    }
+
+    @Override
+    public double getHealth() {
+        return player.getHealth();
+    }
+
+    @Override
+    public int getFoodLevel() {
+        return player.getFoodLevel();
+    }
+}
@@ -0,0 +1,122 @@
+package cn.popcraft.weatherevent.effects;
+
+import org.bukkit.Material;
+import org.bukkit.block.Biome;
+
+import java.util.UUID;
+
+/**
+ * 玩家状态快照
+ * 在主线程一次性读取效果条件所需的玩家与世界状态，之后可以在任意线程只读使用
+ */
+public final class PlayerSnapshot implements PlayerState {
+    private final UUID playerId;
+    private final String worldName;
+    private final String weatherType;
+    private final long worldTime;
+    private final int blockX;
+    private final int blockY;
+    private final int blockZ;
+    private final Biome biome;
+    private final Material blockType;
+    private final int lightLevel;
+    private final int skyLight;
+    private final double health;
+    private final int foodLevel;
+
+    private PlayerSnapshot(UUID playerId, String worldName, String weatherType, long worldTime,
+                           int blockX, int blockY, int blockZ, Biome biome, Material blockType,
+                           int lightLevel, int skyLight, double health, int foodLevel) {
+        this.playerId = playerId;
+        this.worldName = worldName;
+        this.weatherType = weatherType;
+        this.worldTime = worldTime;
+        this.blockX = blockX;
+        this.blockY = blockY;
+        this.blockZ = blockZ;
+        this.biome = biome;
+        this.blockType = blockType;
+        this.lightLevel = lightLevel;
+        this.skyLight = skyLight;
+        this.health = health;
+        this.foodLevel = foodLevel;
+    }
+
+    /**
+     * 在主线程采集玩家快照
+     * 从玩家上下文读取，本tick已查询过的值不会重复查询
+     * @param state 玩家状态
+     * @return 玩家快照
+     */
+    public static PlayerSnapshot capture(PlayerState state) {
+        return new PlayerSnapshot(state.getPlayerId(), state.getWorldName(), state.getWeatherType(), state.getWorldTime(),
+                state.getBlockX(), state.getBlockY(), state.getBlockZ(),
+                state.getBiome(), state.getBlockType(), state.getLightLevel(), state.getSkyLight(),
+                state.getHealth(), state.getFoodLevel());
+    }
+
+    @Override
+    public UUID getPlayerId() {
+        return playerId;
+    }
+
+    @Override
+    public String getWorldName() {
+        return worldName;
+    }
+
+    @Override
+    public String getWeatherType() {
+        return weatherType;
+    }
+
+    @Override
+    public long getWorldTime() {
+        return worldTime;
+    }
+
+    @Override
+    public int getBlockX() {
+        return blockX;
+    }
+
+    @Override
+    public int getBlockY() {
+        return blockY;
+    }
+
+    @Override
+    public int getBlockZ() {
+        return blockZ;
+    }
+
+    @Override
+    public Biome getBiome() {
+        return biome;
+    }
+
+    @Override
+    public Material getBlockType() {
+        return blockType;
+    }
+
+    @Override
+    public int getLightLevel() {
+        return lightLevel;
+    }
+
+    @Override
+    public int getSkyLight() {
+        return skyLight;
+    }
+
+    @Override
+    public double getHealth() {
+        return health;
+    }
+
+    @Override
+    public int getFoodLevel() {
+        return foodLevel;
+    }
+}
@@ -0,0 +1,44 @@
+package cn.popcraft.weatherevent.effects;
+
+import org.bukkit.Material;
+import org.bukkit.block.Biome;
+
+import java.util.UUID;
+
+/**
+ * 玩家状态
+ * 效果条件检查所需的玩家与世界状态，由 {@link PlayerContext}（主线程，按需读取）
+ * 和 {@link PlayerSnapshot}（不可变，可跨线程）提供
+ */
+public interface PlayerState {
+
+    UUID getPlayerId();
+
+    String getWorldName();
+
+    /**
+     * 获取世界天气类型
+     * @return 天气类型（"clear", "rain", "thunder"）
+     */
+    String getWeatherType();
+
+    long getWorldTime();
+
+    int getBlockX();
+
+    int getBlockY();
+
+    int getBlockZ();
+
+    Biome getBiome();
+
+    Material getBlockType();
+
+    int getLightLevel();
+
+    int getSkyLight();
+
+    double getHealth();
+
+    int getFoodLevel();
+}
@@ -46,4 +46,9 @@ for(Player player : Bukkit.getOnlinePlayers()) {
     public boolean isApplicable(World world) {
         return world.hasStorm() && !world.isThundering();
     }
+    
+    @Override
+    public boolean isStateIndexable() {
+        return true;
+    }
 }
\ No newline at end of file
@@ -4,7 +4,6 @@ import org.bukkit.World;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
 import cn.popcraft.weatherevent.WeatherEvent;
-import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionEffectType;
 
 import java.util.ArrayList;
@@ -40,22 +39,21 @@ public class RainSlowEffect extends BaseWeatherEffect {
     }
     
     @Override
-    public void apply(Player player, World world) {
-        if (!enabled || !isApplicable(world)) return;
-        
+    public boolean evaluate(PlayerState state) {
         // 只有当玩家在室外时才应用效果
-        if (player.getLocation().getBlock().getLightFromSky() > 4) {
-            // 应用药水效果
-            for (PotionEffect effect : getPotionEffects()) {
-                player.addPotionEffect(effect);
-            }
-            
-            // 尝试应用随机效果
-            tryApplyRandomEffects(player);
-            
-            // 尝试执行命令
-            tryExecuteCommands(player);
-        }
+        return enabled && state.getSkyLight() > 4;
+    }
+    
+    @Override
+    public void applyActions(Player player, World world) {
+        // 应用药水效果
+        applyPotionEffects(player);
+        
+        // 尝试应用随机效果
+        tryApplyRandomEffects(player);
+        
+        // 尝试执行命令
+        tryExecuteCommands(player);
     }
     
     @Override
@@ -64,6 +62,11 @@ public class RainSlowEffect extends BaseWeatherEffect {
         return world.hasStorm() && !world.isThundering();
     }
     
+    @Override
+    public boolean isStateIndexable() {
+        return true;
+    }
+    
     @Override
     public String getDescription() {
         return "在雨天时减慢移动速度";
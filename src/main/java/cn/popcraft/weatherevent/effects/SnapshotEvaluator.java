@@ -0,0 +1,198 @@
+package cn.popcraft.weatherevent.effects;
+
+import cn.popcraft.weatherevent.WeatherEvent;
+import org.bukkit.Bukkit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * 快照评估器
+ * 分三个阶段处理效果：主线程采集玩家快照，工作线程池并行评估效果条件，
+ * 再回到主线程执行通过评估的效果动作
+ */
+public class SnapshotEvaluator {
+    private final WeatherEvent plugin;
+    private final int threads;
+    private final ExecutorService workers;
+
+    // 当前tick采集的待评估玩家，仅在主线程访问
+    private List<Entry> batch = new ArrayList<>();
+
+    private final AtomicInteger inFlightBatches = new AtomicInteger();
+    private final AtomicLong evaluatedConditions = new AtomicLong();
+    private final AtomicLong producedActions = new AtomicLong();
+    private final AtomicLong lastEvaluationNanos = new AtomicLong();
+    private long submittedBatches;
+
+    /**
+     * 创建快照评估器
+     * @param plugin 插件实例
+     * @param threads 工作线程数
+     */
+    public SnapshotEvaluator(WeatherEvent plugin, int threads) {
+        this.plugin = plugin;
+        this.threads = Math.max(1, threads);
+        AtomicInteger threadId = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(this.threads, runnable -> {
+            Thread thread = new Thread(runnable, "WeatherEvent-Evaluator-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 添加一个玩家快照及其候选效果（主线程调用）
+     * @param snapshot 玩家快照
+     * @param candidates 候选效果
+     */
+    public void submit(PlayerSnapshot snapshot, List<BaseWeatherEffect> candidates) {
+        batch.add(new Entry(snapshot, candidates));
+    }
+
+    /**
+     * 将当前tick采集的快照交给工作线程评估（主线程调用）
+     * 评估完成后在主线程把产生的动作交给 applier
+     * @param applier 在主线程执行动作的回调
+     */
+    public void flush(Consumer<List<Action>> applier) {
+        if (batch.isEmpty()) return;
+
+        List<Entry> entries = batch;
+        batch = new ArrayList<>();
+        submittedBatches++;
+        inFlightBatches.incrementAndGet();
+
+        // 按线程数切分，每个分块由一个工作线程评估
+        long startTime = System.nanoTime();
+        int chunkSize = (entries.size() + threads - 1) / threads;
+        List<CompletableFuture<List<Action>>> futures = new ArrayList<>();
+        for (int start = 0; start < entries.size(); start += chunkSize) {
+            List<Entry> chunk = entries.subList(start, Math.min(entries.size(), start + chunkSize));
+            futures.add(CompletableFuture.supplyAsync(() -> evaluate(chunk), workers));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).whenComplete((ignored, error) -> {
+            lastEvaluationNanos.set(System.nanoTime() - startTime);
+            if (error != null) {
+                inFlightBatches.decrementAndGet();
+                plugin.getLogger().log(Level.WARNING, "效果条件评估失败", error);
+                return;
+            }
+
+            List<Action> actions = new ArrayList<>();
+            for (CompletableFuture<List<Action>> future : futures) {
+                actions.addAll(future.join());
+            }
+            producedActions.addAndGet(actions.size());
+
+            if (!plugin.isEnabled()) {
+                inFlightBatches.decrementAndGet();
+                return;
+            }
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                inFlightBatches.decrementAndGet();
+                applier.accept(actions);
+            });
+        });
+    }
+
+    private List<Action> evaluate(List<Entry> entries) {
+        List<Action> actions = new ArrayList<>();
+        long evaluated = 0;
+        for (Entry entry : entries) {
+            for (BaseWeatherEffect effect : entry.candidates) {
+                evaluated++;
+                try {
+                    if (effect.evaluate(entry.snapshot)) {
+                        actions.add(new Action(entry.snapshot.getPlayerId(), entry.snapshot.getWorldName(), effect));
+                    }
+                } catch (RuntimeException e) {
+                    plugin.getLogger().log(Level.WARNING, "评估效果 " + effect.getId() + " 时发生错误", e);
+                }
+            }
+        }
+        evaluatedConditions.addAndGet(evaluated);
+        return actions;
+    }
+
+    /**
+     * 关闭工作线程池，丢弃尚未提交的快照
+     */
+    public void shutdown() {
+        batch = new ArrayList<>();
+        workers.shutdownNow();
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public long getSubmittedBatches() {
+        return submittedBatches;
+    }
+
+    public int getInFlightBatches() {
+        return inFlightBatches.get();
+    }
+
+    public long getEvaluatedConditions() {
+        return evaluatedConditions.get();
+    }
+
+    public long getProducedActions() {
+        return producedActions.get();
+    }
+
+    public long getLastEvaluationNanos() {
+        return lastEvaluationNanos.get();
+    }
+
+    /**
+     * 待评估的玩家
+     */
+    private static class Entry {
+        private final PlayerSnapshot snapshot;
+        private final List<BaseWeatherEffect> candidates;
+
+        private Entry(PlayerSnapshot snapshot, List<BaseWeatherEffect> candidates) {
+            this.snapshot = snapshot;
+            this.candidates = candidates;
+        }
+    }
+
+    /**
+     * 评估通过、需要在主线程执行的效果动作
+     */
+    public static class Action {
+        private final UUID playerId;
+        private final String worldName;
+        private final BaseWeatherEffect effect;
+
+        public Action(UUID playerId, String worldName, BaseWeatherEffect effect) {
+            this.playerId = playerId;
+            this.worldName = worldName;
+            this.effect = effect;
+        }
+
+        public UUID getPlayerId() {
+            return playerId;
+        }
+
+        public String getWorldName() {
+            return worldName;
+        }
+
+        public BaseWeatherEffect getEffect() {
+            return effect;
+        }
+    }
+}
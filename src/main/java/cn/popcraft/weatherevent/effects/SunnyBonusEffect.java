@@ -4,7 +4,6 @@ import org.bukkit.World;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
 import cn.popcraft.weatherevent.WeatherEvent;
-import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionEffectType;
 
 import java.util.ArrayList;
@@ -57,22 +56,22 @@ public class SunnyBonusEffect extends BaseWeatherEffect {
     }
     
     @Override
-    public void apply(Player player, World world) {
-        if (!enabled || !isApplicable(world)) return;
-        
+    public boolean evaluate(PlayerState state) {
         // 只有当玩家在室外且是白天时才应用效果
-        if (player.getLocation().getBlock().getLightFromSky() > 4 && (world.getTime() < 12300 || world.getTime() > 23850)) {
-            // 应用药水效果
-            for (PotionEffect effect : getPotionEffects()) {
-                player.addPotionEffect(effect);
-            }
-            
-            // 尝试应用随机效果
-            tryApplyRandomEffects(player);
-            
-            // 尝试执行命令
-            tryExecuteCommands(player);
-        }
+        long time = state.getWorldTime();
+        return enabled && state.getSkyLight() > 4 && (time < 12300 || time > 23850);
+    }
+    
+    @Override
+    public void applyActions(Player player, World world) {
+        // 应用药水效果
+        applyPotionEffects(player);
+        
+        // 尝试应用随机效果
+        tryApplyRandomEffects(player);
+        
+        // 尝试执行命令
+        tryExecuteCommands(player);
     }
     
     @Override
@@ -81,6 +80,11 @@ public class SunnyBonusEffect extends BaseWeatherEffect {
         return !world.hasStorm() && !world.isThundering();
     }
     
+    @Override
+    public boolean isStateIndexable() {
+        return true;
+    }
+    
     @Override
     public String getDescription() {
         StringBuilder desc = new StringBuilder("在晴天时提供");
@@ -43,4 +43,9 @@ public class SunriseEffect extends BaseWeatherEffect {
         long time = world.getTime();
         return time >= 0 && time < 1000;
     }
+    
+    @Override
+    public boolean isStateIndexable() {
+        return true;
+    }
 }
\ No newline at end of file
@@ -4,7 +4,6 @@ import org.bukkit.World;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
 import cn.popcraft.weatherevent.WeatherEvent;
-import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionEffectType;
 
 import java.util.Random;
@@ -49,32 +48,31 @@ public class ThunderDamageEffect extends BaseWeatherEffect {
     }
     
     @Override
-    public void apply(Player player, World world) {
-        if (!enabled || !isApplicable(world)) return;
-        
+    public boolean evaluate(PlayerState state) {
         // 只有当玩家在室外时才应用效果
-        if (player.getLocation().getBlock().getLightFromSky() > 4) {
-            // 根据几率决定是否造成伤害
-            if (random.nextDouble() < damageChance) {
-                // 播放雷击音效但不实际生成闪电（避免破坏地形）
-                world.playSound(player.getLocation(), "entity.lightning_bolt.thunder", 1.0f, 1.0f);
-                
-                // 造成伤害
-                if (damageAmount > 0) {
-                    player.damage(damageAmount);
-                }
-                
-                // 应用药水效果
-                for (PotionEffect effect : getPotionEffects()) {
-                    player.addPotionEffect(effect);
-                }
-                
-                // 尝试应用随机效果
-                tryApplyRandomEffects(player);
-                
-                // 尝试执行命令
-                tryExecuteCommands(player);
+        return enabled && state.getSkyLight() > 4;
+    }
+    
+    @Override
+    public void applyActions(Player player, World world) {
+        // 根据几率决定是否造成伤害
+        if (random.nextDouble() < damageChance) {
+            // 播放雷击音效但不实际生成闪电（避免破坏地形）
+            world.playSound(player.getLocation(), "entity.lightning_bolt.thunder", 1.0f, 1.0f);
+            
+            // 造成伤害
+            if (damageAmount > 0) {
+                player.damage(damageAmount);
             }
+            
+            // 应用药水效果
+            applyPotionEffects(player);
+            
+            // 尝试应用随机效果
+            tryApplyRandomEffects(player);
+            
+            // 尝试执行命令
+            tryExecuteCommands(player);
         }
     }
     
@@ -84,6 +82,11 @@ public class ThunderDamageEffect extends BaseWeatherEffect {
         return world.isThundering();
     }
     
+    @Override
+    public boolean isStateIndexable() {
+        return true;
+    }
+    
     @Override
     public String getDescription() {
         StringBuilder desc = new StringBuilder("在雷暴天气时有");
@@ -54,6 +54,11 @@ for(Player player : Bukkit.getOnlinePlayers()) {
     public boolean isApplicable(World world) {
         return world.isThundering(); // 这部分正确，无需修改
     }
+    
+    @Override
+    public boolean isStateIndexable() {
+        return true;
+    }
 
     @Override
     public List<PotionEffect> getPotionEffects() {
@@ -49,6 +49,15 @@ public interface WeatherEffect {
      */
     void apply(Player player, World world);
 
+    /**
+     * 使用玩家上下文应用效果
+     * 同一次更新中的多个效果共享上下文，避免重复查询玩家所在位置的世界状态
+     * @param context 玩家上下文
+     */
+    default void apply(PlayerContext context) {
+        apply(context.getPlayer(), context.getWorld());
+    }
+
     /**
      * 移除玩家的效果
      * @param player 目标玩家
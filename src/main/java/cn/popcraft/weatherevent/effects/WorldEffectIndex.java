@@ -0,0 +1,165 @@
+package cn.popcraft.weatherevent.effects;
+
+import cn.popcraft.weatherevent.manager.RegionManager;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 世界效果索引
+ * 按 (天气 × 时间段) 缓存每个世界适用的效果列表。
+ * 声明了 {@link BaseWeatherEffect#isStateIndexable()} 的效果的 isApplicable 只取决于天气和时间段，
+ * 同一状态下的结果可以一直复用，直到效果重新注册或配置重载；
+ * 其他效果（可配置时间范围的效果、通过 API 注册的效果等）只缓存世界是否启用，每次查询时重新检查
+ */
+public class WorldEffectIndex {
+    public static final int WEATHER_CLEAR = 0;
+    public static final int WEATHER_RAIN = 1;
+    public static final int WEATHER_THUNDER = 2;
+
+    public static final int PHASE_SUNRISE = 0; // 0 - 1000
+    public static final int PHASE_DAY = 1;     // 1000 - 13000
+    public static final int PHASE_SUNSET = 2;  // 13000 - 14000
+    public static final int PHASE_NIGHT = 3;   // 14000 - 24000
+
+    private static final int PHASE_COUNT = 4;
+    private static final int KEY_COUNT = 3 * PHASE_COUNT;
+
+    private final Map<String, WorldEntry> worlds = new HashMap<>();
+    private final Collection<BaseWeatherEffect> effects;
+    private final RegionManager regionManager;
+
+    private long rebuilds;    // 重新计算效果列表的次数
+    private long transitions; // 世界状态切换的次数
+
+    /**
+     * 创建世界效果索引
+     * @param effects 已注册的效果集合（实时视图）
+     * @param regionManager 区域管理器
+     */
+    public WorldEffectIndex(Collection<BaseWeatherEffect> effects, RegionManager regionManager) {
+        this.effects = effects;
+        this.regionManager = regionManager;
+    }
+
+    /**
+     * 计算世界当前的索引键
+     * @param world 世界
+     * @return 索引键
+     */
+    public static int keyOf(World world) {
+        int weather = world.isThundering() ? WEATHER_THUNDER : (world.hasStorm() ? WEATHER_RAIN : WEATHER_CLEAR);
+        return weather * PHASE_COUNT + phaseOf(world.getTime());
+    }
+
+    /**
+     * 计算时间所属的时间段
+     * @param time 世界时间
+     * @return 时间段
+     */
+    public static int phaseOf(long time) {
+        if (time >= 0 && time < 1000) return PHASE_SUNRISE;
+        if (time >= 1000 && time < 13000) return PHASE_DAY;
+        if (time >= 13000 && time < 14000) return PHASE_SUNSET;
+        return PHASE_NIGHT;
+    }
+
+    /**
+     * 获取世界当前适用的效果
+     * 仅在该世界第一次进入某个状态时计算，之后直接按索引键取出；
+     * 不能按状态缓存的效果每次调用都会重新检查
+     * @param world 世界
+     * @return 不可修改的效果列表
+     */
+    public List<BaseWeatherEffect> getApplicableEffects(World world) {
+        WorldEntry entry = worlds.computeIfAbsent(world.getName(), k -> new WorldEntry());
+        int key = keyOf(world);
+        if (key != entry.currentKey) {
+            entry.currentKey = key;
+            transitions++;
+        }
+
+        Bucket bucket = entry.buckets[key];
+        if (bucket == null) {
+            bucket = build(world);
+            entry.buckets[key] = bucket;
+        }
+        if (bucket.liveCount == 0) {
+            return bucket.candidates;
+        }
+
+        // 含有不能按状态缓存的效果时，按注册顺序重新检查这些效果
+        List<BaseWeatherEffect> applicable = new ArrayList<>(bucket.candidates.size());
+        for (BaseWeatherEffect effect : bucket.candidates) {
+            if (effect.isStateIndexable() || effect.isApplicable(world)) {
+                applicable.add(effect);
+            }
+        }
+        return Collections.unmodifiableList(applicable);
+    }
+
+    private Bucket build(World world) {
+        rebuilds++;
+        List<BaseWeatherEffect> candidates = new ArrayList<>();
+        int liveCount = 0;
+        for (BaseWeatherEffect effect : effects) {
+            if (!regionManager.isEffectEnabledInWorld(world, effect.getId())) {
+                continue;
+            }
+            if (!effect.isStateIndexable()) {
+                candidates.add(effect);
+                liveCount++;
+            } else if (effect.isApplicable(world)) {
+                candidates.add(effect);
+            }
+        }
+        return new Bucket(Collections.unmodifiableList(candidates), liveCount);
+    }
+
+    /**
+     * 清空所有世界的索引
+     * 在效果注册、取消注册或配置重载时调用
+     */
+    public void invalidate() {
+        worlds.clear();
+    }
+
+    /**
+     * 清空指定世界的索引
+     * @param worldName 世界名称
+     */
+    public void invalidate(String worldName) {
+        worlds.remove(worldName);
+    }
+
+    public long getRebuilds() {
+        return rebuilds;
+    }
+
+    public long getTransitions() {
+        return transitions;
+    }
+
+    private static class WorldEntry {
+        private final Bucket[] buckets = new Bucket[KEY_COUNT];
+        private int currentKey = -1;
+    }
+
+    /**
+     * 一个状态下的候选效果：可缓存的效果已确认适用，其余效果只确认了世界启用
+     */
+    private static class Bucket {
+        private final List<BaseWeatherEffect> candidates;
+        private final int liveCount; // 需要每次重新检查的效果数量
+
+        Bucket(List<BaseWeatherEffect> candidates, int liveCount) {
+            this.candidates = candidates;
+            this.liveCount = liveCount;
+        }
+    }
+}
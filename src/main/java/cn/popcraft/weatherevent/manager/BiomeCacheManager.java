@@ -1,140 +1,214 @@
 package cn.popcraft.weatherevent.manager;
 
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.block.Biome;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 
+import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.logging.Logger;
 
 /**
  * 生物群系缓存管理器
- * 用于优化生物群系检测性能，避免频繁的生物群系查询
+ * 按世界缓存已加载区块的生物群系，粒度与服务端存储一致（4×4×4 方块为一格），所有玩家共用。
+ * 区块条目在第一次查询时创建、区块卸载时清除，每格只向服务端查询一次。
+ * 只能在主线程使用
  */
-public class BiomeCacheManager {
-    private final Map<UUID, BiomeCacheEntry> biomeCache;
-    private final Logger logger;
-    private static final long CACHE_EXPIRE_TIME = 5000; // 5秒缓存过期时间
-    private static final int CACHE_CLEAN_INTERVAL = 60000; // 60秒清理一次过期缓存
-    private long lastCacheCleanTime = 0;
-    
-    public BiomeCacheManager(Logger logger) {
-        this.biomeCache = new ConcurrentHashMap<>();
-        this.logger = logger;
-        
-        // 定期清理过期缓存
-        Thread cacheCleaner = new Thread(this::cleanExpiredCache);
-        cacheCleaner.setDaemon(true);
-        cacheCleaner.start();
+public class BiomeCacheManager implements Listener {
+    private static final int QUARTS_PER_SECTION = 64; // 16×16×16 方块的子区块包含 4×4×4 格
+
+    private final Map<UUID, WorldBiomes> worlds;
+
+    private long hits;       // 命中缓存的查询次数
+    private long misses;     // 需要向服务端查询的次数
+    private long evictions;  // 因区块卸载清除的区块数
+
+    public BiomeCacheManager() {
+        this.worlds = new HashMap<>();
     }
-    
+
     /**
-     * 获取玩家当前位置的生物群系（带缓存）
+     * 获取玩家当前位置的生物群系
      * @param player 玩家
      * @return 生物群系
      */
     public Biome getPlayerBiome(Player player) {
-        UUID playerId = player.getUniqueId();
-        Location location = player.getLocation();
-        
-        // 检查缓存
-        BiomeCacheEntry cachedEntry = biomeCache.get(playerId);
-        long currentTime = System.currentTimeMillis();
-        
-        // 清理过期缓存（定期执行）
-        if (currentTime - lastCacheCleanTime > CACHE_CLEAN_INTERVAL) {
-            cleanExpiredCache();
-            lastCacheCleanTime = currentTime;
-        }
-        
-        // 如果缓存有效且位置相近，返回缓存结果
-        if (cachedEntry != null && !cachedEntry.isExpired(currentTime) && 
-            isLocationClose(location, cachedEntry.getLocation())) {
-            return cachedEntry.getBiome();
-        }
-        
-        // 获取新的生物群系并更新缓存
-        Biome currentBiome = location.getBlock().getBiome();
-        biomeCache.put(playerId, new BiomeCacheEntry(currentBiome, location, currentTime));
-        
-        return currentBiome;
+        return getBiome(player.getLocation());
     }
-    
+
     /**
-     * 检查两个位置是否相近（在同一区域内）
-     * @param loc1 位置1
-     * @param loc2 位置2
-     * @return 是否相近
+     * 获取位置的生物群系
+     * @param location 位置
+     * @return 生物群系
      */
-    private boolean isLocationClose(Location loc1, Location loc2) {
-        // 如果不在同一世界，返回false
-        if (!loc1.getWorld().equals(loc2.getWorld())) {
-            return false;
+    public Biome getBiome(Location location) {
+        return getBiome(location.getWorld(), location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+
+    /**
+     * 获取方块坐标处的生物群系
+     * @param world 世界
+     * @param x 方块X坐标
+     * @param y 方块Y坐标
+     * @param z 方块Z坐标
+     * @return 生物群系
+     */
+    public Biome getBiome(World world, int x, int y, int z) {
+        WorldBiomes worldBiomes = worlds.get(world.getUID());
+        if (worldBiomes == null) {
+            worldBiomes = new WorldBiomes(world);
+            worlds.put(world.getUID(), worldBiomes);
+        }
+
+        // 与服务端一致，超出高度范围的查询取边界处的生物群系
+        y = Math.max(worldBiomes.minY, Math.min(worldBiomes.maxY - 1, y));
+
+        ChunkBiomes chunk = worldBiomes.getChunk(x >> 4, z >> 4);
+        if (chunk == null) {
+            // 未加载的区块不缓存，避免持有卸载事件不会清除的条目
+            misses++;
+            return world.getBiome(x, y, z);
+        }
+
+        int section = (y - worldBiomes.minY) >> 4;
+        Biome[] quarts = chunk.sections[section];
+        if (quarts == null) {
+            quarts = new Biome[QUARTS_PER_SECTION];
+            chunk.sections[section] = quarts;
         }
-        
-        // 检查坐标差异是否在合理范围内（4个方块内）
-        return Math.abs(loc1.getBlockX() - loc2.getBlockX()) <= 4 &&
-               Math.abs(loc1.getBlockY() - loc2.getBlockY()) <= 4 &&
-               Math.abs(loc1.getBlockZ() - loc2.getBlockZ()) <= 4;
+
+        int index = (((y >> 2) & 3) << 4) | (((z >> 2) & 3) << 2) | ((x >> 2) & 3);
+        Biome biome = quarts[index];
+        if (biome == null) {
+            misses++;
+            biome = world.getBiome(x, y, z);
+            quarts[index] = biome;
+        } else {
+            hits++;
+        }
+        return biome;
     }
-    
+
     /**
-     * 清理过期缓存
+     * 区块卸载时清除其缓存
      */
-    private void cleanExpiredCache() {
-        long currentTime = System.currentTimeMillis();
-        biomeCache.entrySet().removeIf(entry -> entry.getValue().isExpired(currentTime));
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        WorldBiomes worldBiomes = worlds.get(event.getWorld().getUID());
+        if (worldBiomes != null && worldBiomes.removeChunk(event.getChunk().getX(), event.getChunk().getZ())) {
+            evictions++;
+        }
     }
-    
+
     /**
-     * 清除特定玩家的缓存
-     * @param player 玩家
+     * 世界卸载时清除整个世界的缓存
      */
-    public void clearPlayerCache(Player player) {
-        biomeCache.remove(player.getUniqueId());
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        WorldBiomes worldBiomes = worlds.remove(event.getWorld().getUID());
+        if (worldBiomes != null) {
+            evictions += worldBiomes.chunks.size();
+        }
     }
-    
+
     /**
      * 清除所有缓存
      */
     public void clearAllCache() {
-        biomeCache.clear();
+        worlds.clear();
     }
-    
+
     /**
-     * 获取缓存大小（用于调试）
+     * 获取缓存的区块数量（用于调试）
      * @return 缓存大小
      */
     public int getCacheSize() {
-        return biomeCache.size();
+        int size = 0;
+        for (WorldBiomes worldBiomes : worlds.values()) {
+            size += worldBiomes.chunks.size();
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
     }
-    
+
     /**
-     * 生物群系缓存条目
+     * 单个世界的生物群系缓存
      */
-    private static class BiomeCacheEntry {
-        private final Biome biome;
-        private final Location location;
-        private final long timestamp;
-        
-        public BiomeCacheEntry(Biome biome, Location location, long timestamp) {
-            this.biome = biome;
-            this.location = location.clone(); // 克隆位置以避免外部修改
-            this.timestamp = timestamp;
+    private static class WorldBiomes {
+        private final World world;
+        private final int minY;
+        private final int maxY;
+        private final int sectionCount;
+        private final LongObjectMap<ChunkBiomes> chunks = new LongObjectMap<>(256);
+
+        // 同一玩家连续的查询通常落在同一区块
+        private long lastKey;
+        private ChunkBiomes lastChunk;
+
+        WorldBiomes(World world) {
+            this.world = world;
+            this.minY = world.getMinHeight();
+            this.maxY = world.getMaxHeight();
+            this.sectionCount = Math.max(1, (maxY - minY + 15) >> 4);
         }
-        
-        public Biome getBiome() {
-            return biome;
+
+        /**
+         * 获取区块条目，区块已加载但尚未缓存时创建
+         * @return 区块条目，区块未加载时返回 null
+         */
+        ChunkBiomes getChunk(int chunkX, int chunkZ) {
+            long key = LongObjectMap.pack(chunkX, chunkZ);
+            if (lastChunk != null && lastKey == key) {
+                return lastChunk;
+            }
+
+            ChunkBiomes chunk = chunks.get(key);
+            if (chunk == null) {
+                if (!world.isChunkLoaded(chunkX, chunkZ)) {
+                    return null;
+                }
+                chunk = new ChunkBiomes(sectionCount);
+                chunks.put(key, chunk);
+            }
+            lastKey = key;
+            lastChunk = chunk;
+            return chunk;
         }
-        
-        public Location getLocation() {
-            return location;
+
+        boolean removeChunk(int chunkX, int chunkZ) {
+            long key = LongObjectMap.pack(chunkX, chunkZ);
+            if (lastKey == key) {
+                lastChunk = null;
+            }
+            return chunks.remove(key) != null;
         }
-        
-        public boolean isExpired(long currentTime) {
-            return currentTime - timestamp > CACHE_EXPIRE_TIME;
+    }
+
+    /**
+     * 单个区块的生物群系，按子区块分配
+     */
+    private static class ChunkBiomes {
+        private final Biome[][] sections;
+
+        ChunkBiomes(int sectionCount) {
+            this.sections = new Biome[sectionCount][];
         }
     }
-}
\ No newline at end of file
+}
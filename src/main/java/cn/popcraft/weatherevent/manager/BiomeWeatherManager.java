@@ -120,7 +120,7 @@ public class BiomeWeatherManager {
         if (!enabled) return;
         
         // 获取玩家所在的生物群系
-        String biomeName = player.getLocation().getBlock().getBiome().name();
+        String biomeName = plugin.getEffectManager().getBiomeCacheManager().getPlayerBiome(player).name();
         
         // 查找对应的生物群系天气效果
         BiomeWeatherEffect effect = biomeWeatherEffects.get(biomeName);
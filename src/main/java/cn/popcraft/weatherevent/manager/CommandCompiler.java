@@ -0,0 +1,790 @@
+package cn.popcraft.weatherevent.manager;
+
+import cn.popcraft.weatherevent.WeatherEvent;
+import cn.popcraft.weatherevent.effects.EffectPlan;
+import cn.popcraft.weatherevent.message.PlaceholderContext;
+import cn.popcraft.weatherevent.message.PlaceholderRegistry;
+import cn.popcraft.weatherevent.message.PlaceholderTemplate;
+import net.md_5.bungee.api.ChatMessageType;
+import net.md_5.bungee.api.chat.BaseComponent;
+import net.md_5.bungee.api.chat.TextComponent;
+import net.md_5.bungee.chat.ComponentSerializer;
+import org.bukkit.Bukkit;
+import org.bukkit.Color;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.Particle;
+import org.bukkit.Sound;
+import org.bukkit.SoundCategory;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.potion.PotionEffect;
+import org.bukkit.potion.PotionEffectType;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 命令编译器
+ * 在加载时识别常见的原版命令（effect give、particle、title、playsound、tp、give、tellraw），
+ * 预先解析参数并编译为直接的 Bukkit API 调用，跳过命令解析和控制台日志；
+ * 无法识别的命令，或运行时参数无效的命令，交给命令调度队列执行
+ */
+public class CommandCompiler {
+
+    // 与 Bukkit 枚举名称不同的原版粒子名称
+    private static final Map<String, Particle> PARTICLE_ALIASES = new HashMap<>();
+
+    static {
+        PARTICLE_ALIASES.put("dust", Particle.REDSTONE);
+        PARTICLE_ALIASES.put("block", Particle.BLOCK_CRACK);
+        PARTICLE_ALIASES.put("poof", Particle.EXPLOSION_NORMAL);
+        PARTICLE_ALIASES.put("explosion", Particle.EXPLOSION_LARGE);
+        PARTICLE_ALIASES.put("explosion_emitter", Particle.EXPLOSION_HUGE);
+        PARTICLE_ALIASES.put("firework", Particle.FIREWORKS_SPARK);
+        PARTICLE_ALIASES.put("bubble", Particle.WATER_BUBBLE);
+        PARTICLE_ALIASES.put("splash", Particle.WATER_SPLASH);
+        PARTICLE_ALIASES.put("fishing", Particle.WATER_WAKE);
+        PARTICLE_ALIASES.put("underwater", Particle.SUSPENDED);
+        PARTICLE_ALIASES.put("enchanted_hit", Particle.CRIT_MAGIC);
+        PARTICLE_ALIASES.put("smoke", Particle.SMOKE_NORMAL);
+        PARTICLE_ALIASES.put("large_smoke", Particle.SMOKE_LARGE);
+        PARTICLE_ALIASES.put("effect", Particle.SPELL);
+        PARTICLE_ALIASES.put("instant_effect", Particle.SPELL_INSTANT);
+        PARTICLE_ALIASES.put("entity_effect", Particle.SPELL_MOB);
+        PARTICLE_ALIASES.put("ambient_entity_effect", Particle.SPELL_MOB_AMBIENT);
+        PARTICLE_ALIASES.put("witch", Particle.SPELL_WITCH);
+        PARTICLE_ALIASES.put("dripping_water", Particle.DRIP_WATER);
+        PARTICLE_ALIASES.put("dripping_lava", Particle.DRIP_LAVA);
+        PARTICLE_ALIASES.put("angry_villager", Particle.VILLAGER_ANGRY);
+        PARTICLE_ALIASES.put("happy_villager", Particle.VILLAGER_HAPPY);
+        PARTICLE_ALIASES.put("mycelium", Particle.TOWN_AURA);
+        PARTICLE_ALIASES.put("enchant", Particle.ENCHANTMENT_TABLE);
+        PARTICLE_ALIASES.put("rain", Particle.WATER_DROP);
+        PARTICLE_ALIASES.put("item_slime", Particle.SLIME);
+        PARTICLE_ALIASES.put("item_snowball", Particle.SNOWBALL);
+        PARTICLE_ALIASES.put("totem_of_undying", Particle.TOTEM);
+        PARTICLE_ALIASES.put("elder_guardian", Particle.MOB_APPEARANCE);
+    }
+
+    private final WeatherEvent plugin;
+    private final PlaceholderRegistry placeholderRegistry;
+    private final Map<CommandDispatchQueue.Priority, Map<String, CompiledCommand>> cache;
+    private boolean enabled;
+
+    private long nativeExecutions;   // 直接调用 API 的次数
+    private long dispatchExecutions; // 交给命令调度队列的次数
+    private long runtimeFallbacks;   // 运行时参数无效而退回命令执行的次数
+
+    /**
+     * 创建命令编译器
+     * @param plugin 插件实例
+     * @param placeholderRegistry 占位符注册表，用于编译命令参数中的占位符
+     */
+    public CommandCompiler(WeatherEvent plugin, PlaceholderRegistry placeholderRegistry) {
+        this.plugin = plugin;
+        this.placeholderRegistry = placeholderRegistry;
+        this.cache = new EnumMap<>(CommandDispatchQueue.Priority.class);
+        for (CommandDispatchQueue.Priority priority : CommandDispatchQueue.Priority.values()) {
+            cache.put(priority, new ConcurrentHashMap<>());
+        }
+        this.enabled = true;
+    }
+
+    /**
+     * 设置编译参数，并清空已编译的命令
+     * @param enabled 是否编译原生命令，关闭时所有命令都交给命令调度队列
+     */
+    public void configure(boolean enabled) {
+        this.enabled = enabled;
+        clearCache();
+    }
+
+    /**
+     * 清空已编译的命令
+     */
+    public void clearCache() {
+        for (Map<String, CompiledCommand> commands : cache.values()) {
+            commands.clear();
+        }
+    }
+
+    /**
+     * 编译命令并缓存，优先级按命令内容推断
+     * 用于配置中的命令模板，相同文本只编译一次
+     * @param command 命令
+     * @return 编译后的命令
+     */
+    public CompiledCommand compile(String command) {
+        return compile(command, CommandDispatchQueue.Priority.classify(command));
+    }
+
+    /**
+     * 编译命令并缓存
+     * @param command 命令
+     * @param priority 退回命令执行时的优先级
+     * @return 编译后的命令
+     */
+    public CompiledCommand compile(String command, CommandDispatchQueue.Priority priority) {
+        return cache.get(priority).computeIfAbsent(command, key -> parse(key, priority));
+    }
+
+    /**
+     * 编译命令但不缓存
+     * 用于包含坐标等一次性数据的命令，由调用方自行保存结果
+     * @param command 命令
+     * @param priority 退回命令执行时的优先级
+     * @return 编译后的命令
+     */
+    public CompiledCommand parse(String command, CommandDispatchQueue.Priority priority) {
+        String source = command.trim();
+        if (source.startsWith("/")) {
+            source = source.substring(1);
+        }
+
+        DispatchCommand fallback = new DispatchCommand(source, priority);
+        if (!enabled) return fallback;
+
+        try {
+            NativeCommand compiled = parseNative(source);
+            if (compiled != null) {
+                compiled.source = source;
+                compiled.fallback = fallback;
+                return compiled;
+            }
+        } catch (IllegalArgumentException e) {
+            // 参数格式无法预先解析，交给命令执行
+        }
+        return fallback;
+    }
+
+    private NativeCommand parseNative(String source) {
+        String[] split = source.split("\\s+", 2);
+        if (split.length < 2) return null;
+
+        String label = split[0].toLowerCase(Locale.ROOT);
+        if (label.startsWith("minecraft:")) {
+            label = label.substring("minecraft:".length());
+        }
+        String arguments = split[1];
+
+        switch (label) {
+            case "effect":
+                return parseEffect(tokens(arguments, 0));
+            case "particle":
+                return parseParticle(tokens(arguments, 0));
+            case "title":
+                return parseTitle(tokens(arguments, 3));
+            case "playsound":
+                return parsePlaySound(tokens(arguments, 0));
+            case "tp":
+            case "teleport":
+                return parseTeleport(tokens(arguments, 0));
+            case "give":
+                return parseGive(tokens(arguments, 0));
+            case "tellraw":
+                return parseTellraw(tokens(arguments, 2));
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * effect give <目标> <效果> [秒数] [等级] [隐藏粒子]
+     */
+    private NativeCommand parseEffect(String[] args) {
+        if (args.length < 3 || args.length > 6 || !"give".equals(args[0])) return null;
+
+        Target target = Target.parse(args[1], placeholderRegistry);
+        PotionEffectType type = resolvePotionEffectType(args[2]);
+        if (target == null || type == null) return null;
+
+        NumberArg seconds = args.length > 3 ? NumberArg.parse(args[3], placeholderRegistry) : NumberArg.of(30);
+        NumberArg amplifier = args.length > 4 ? NumberArg.parse(args[4], placeholderRegistry) : NumberArg.of(0);
+        boolean hideParticles = args.length > 5 && parseBoolean(args[5]);
+
+        return new NativeCommand() {
+            @Override
+            void run(PlaceholderContext context) {
+                PotionEffect effect = new PotionEffect(type, seconds.intValue(context) * 20,
+                        amplifier.intValue(context), false, !hideParticles, true);
+                PotionReconciler potionReconciler = plugin.getEffectManager().getPotionReconciler();
+                for (Player player : target.resolve(context)) {
+                    potionReconciler.apply(player, effect);
+                }
+            }
+        };
+    }
+
+    /**
+     * particle <粒子> [参数] [x y z] [dx dy dz] [速度] [数量] [force|normal] [观看者]
+     */
+    private NativeCommand parseParticle(String[] args) {
+        int i = 0;
+        Particle particle = resolveParticle(args[i++]);
+        if (particle == null) return null;
+
+        Object data;
+        Class<?> dataType = particle.getDataType();
+        if (dataType == Particle.DustOptions.class) {
+            require(args, i, 4);
+            Color color = Color.fromRGB(toColorChannel(args[i]), toColorChannel(args[i + 1]), toColorChannel(args[i + 2]));
+            data = new Particle.DustOptions(color, Float.parseFloat(args[i + 3]));
+            i += 4;
+        } else if (dataType == BlockData.class) {
+            require(args, i, 1);
+            data = Bukkit.createBlockData(args[i++]);
+        } else if (dataType == Void.class) {
+            data = null;
+        } else {
+            return null;
+        }
+
+        Coordinate x = Coordinate.RELATIVE_ORIGIN, y = Coordinate.RELATIVE_ORIGIN, z = Coordinate.RELATIVE_ORIGIN;
+        if (i < args.length) {
+            require(args, i, 3);
+            x = Coordinate.parse(args[i++], placeholderRegistry);
+            y = Coordinate.parse(args[i++], placeholderRegistry);
+            z = Coordinate.parse(args[i++], placeholderRegistry);
+        }
+        NumberArg dx = NumberArg.of(0), dy = NumberArg.of(0), dz = NumberArg.of(0);
+        if (i < args.length) {
+            require(args, i, 3);
+            dx = NumberArg.parse(args[i++], placeholderRegistry);
+            dy = NumberArg.parse(args[i++], placeholderRegistry);
+            dz = NumberArg.parse(args[i++], placeholderRegistry);
+        }
+        NumberArg speed = i < args.length ? NumberArg.parse(args[i++], placeholderRegistry) : NumberArg.of(0);
+        NumberArg count = i < args.length ? NumberArg.parse(args[i++], placeholderRegistry) : NumberArg.of(0);
+
+        boolean force = false;
+        if (i < args.length) {
+            String mode = args[i++];
+            if ("force".equals(mode)) {
+                force = true;
+            } else if (!"normal".equals(mode)) {
+                return null;
+            }
+        }
+        Target viewers = null;
+        if (i < args.length) {
+            viewers = Target.parse(args[i++], placeholderRegistry);
+            if (viewers == null) return null;
+        }
+        if (i < args.length) return null;
+
+        Coordinate px = x, py = y, pz = z;
+        NumberArg ox = dx, oy = dy, oz = dz;
+        boolean forced = force;
+        Target viewerTarget = viewers;
+        return new NativeCommand() {
+            @Override
+            void run(PlaceholderContext context) {
+                Location origin = context.getLocation();
+                double posX = px.resolve(context, origin == null ? null : origin.getX());
+                double posY = py.resolve(context, origin == null ? null : origin.getY());
+                double posZ = pz.resolve(context, origin == null ? null : origin.getZ());
+                int amount = count.intValue(context);
+                double offsetX = ox.doubleValue(context), offsetY = oy.doubleValue(context), offsetZ = oz.doubleValue(context);
+                double extra = speed.doubleValue(context);
+
+                if (viewerTarget == null || viewerTarget.isAll()) {
+                    worldOf(context).spawnParticle(particle, posX, posY, posZ, amount,
+                            offsetX, offsetY, offsetZ, extra, data, forced);
+                } else {
+                    for (Player viewer : viewerTarget.resolve(context)) {
+                        viewer.spawnParticle(particle, posX, posY, posZ, amount, offsetX, offsetY, offsetZ, extra, data);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * title <目标> title|actionbar <文本>
+     */
+    private NativeCommand parseTitle(String[] args) {
+        if (args.length != 3) return null;
+
+        Target target = Target.parse(args[0], placeholderRegistry);
+        if (target == null) return null;
+        String action = args[1];
+        if (!"title".equals(action) && !"actionbar".equals(action)) return null;
+        TextArg text = TextArg.parse(args[2], placeholderRegistry);
+        boolean title = "title".equals(action);
+
+        return new NativeCommand() {
+            @Override
+            void run(PlaceholderContext context) {
+                BaseComponent[] components = text.components(context);
+                String legacy = title ? TextComponent.toLegacyText(components) : null;
+                for (Player player : target.resolve(context)) {
+                    if (title) {
+                        player.sendTitle(legacy, "", 10, 70, 20);
+                    } else {
+                        player.spigot().sendMessage(ChatMessageType.ACTION_BAR, components);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * playsound <声音> <类别> <目标> [x y z] [音量] [音调]
+     */
+    private NativeCommand parsePlaySound(String[] args) {
+        if (args.length < 3 || args.length > 8 || args.length == 4 || args.length == 5) return null;
+        if (args[0].indexOf('%') >= 0) return null;
+
+        String resource = args[0].startsWith("minecraft:") ? args[0].substring("minecraft:".length()) : args[0];
+        Sound sound = EffectPlan.resolveSound(resource);
+        SoundCategory category = resolveSoundCategory(args[1]);
+        Target target = Target.parse(args[2], placeholderRegistry);
+        if (category == null || target == null) return null;
+
+        Coordinate x = Coordinate.RELATIVE_ORIGIN, y = Coordinate.RELATIVE_ORIGIN, z = Coordinate.RELATIVE_ORIGIN;
+        if (args.length >= 6) {
+            x = Coordinate.parse(args[3], placeholderRegistry);
+            y = Coordinate.parse(args[4], placeholderRegistry);
+            z = Coordinate.parse(args[5], placeholderRegistry);
+        }
+        NumberArg volume = args.length > 6 ? NumberArg.parse(args[6], placeholderRegistry) : NumberArg.of(1);
+        NumberArg pitch = args.length > 7 ? NumberArg.parse(args[7], placeholderRegistry) : NumberArg.of(1);
+
+        Coordinate px = x, py = y, pz = z;
+        return new NativeCommand() {
+            @Override
+            void run(PlaceholderContext context) {
+                float soundVolume = (float) volume.doubleValue(context);
+                float soundPitch = (float) pitch.doubleValue(context);
+                for (Player player : target.resolve(context)) {
+                    Location base = player.getLocation();
+                    Location location = new Location(player.getWorld(),
+                            px.resolve(context, base.getX()), py.resolve(context, base.getY()), pz.resolve(context, base.getZ()));
+                    if (sound != null) {
+                        player.playSound(location, sound, category, soundVolume, soundPitch);
+                    } else {
+                        player.playSound(location, args[0], category, soundVolume, soundPitch);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * tp <目标> <x y z> [yaw pitch] 或 tp <目标> <目的地玩家>
+     */
+    private NativeCommand parseTeleport(String[] args) {
+        Target target = Target.parse(args[0], placeholderRegistry);
+        if (target == null) return null;
+
+        if (args.length == 2) {
+            Target destination = Target.parse(args[1], placeholderRegistry);
+            if (destination == null || destination.isAll()) return null;
+            return new NativeCommand() {
+                @Override
+                void run(PlaceholderContext context) {
+                    Collection<? extends Player> destinations = destination.resolve(context);
+                    if (destinations.isEmpty()) return;
+                    Player to = destinations.iterator().next();
+                    for (Player player : target.resolve(context)) {
+                        player.teleport(to);
+                    }
+                }
+            };
+        }
+
+        if (args.length != 4 && args.length != 6) return null;
+        Coordinate x = Coordinate.parse(args[1], placeholderRegistry);
+        Coordinate y = Coordinate.parse(args[2], placeholderRegistry);
+        Coordinate z = Coordinate.parse(args[3], placeholderRegistry);
+        Coordinate yaw = args.length == 6 ? Coordinate.parse(args[4], placeholderRegistry) : Coordinate.RELATIVE_ORIGIN;
+        Coordinate pitch = args.length == 6 ? Coordinate.parse(args[5], placeholderRegistry) : Coordinate.RELATIVE_ORIGIN;
+
+        return new NativeCommand() {
+            @Override
+            void run(PlaceholderContext context) {
+                for (Player player : target.resolve(context)) {
+                    Location base = player.getLocation();
+                    player.teleport(new Location(player.getWorld(),
+                            x.resolve(context, base.getX()), y.resolve(context, base.getY()), z.resolve(context, base.getZ()),
+                            (float) yaw.resolve(context, (double) base.getYaw()),
+                            (float) pitch.resolve(context, (double) base.getPitch())));
+                }
+            }
+        };
+    }
+
+    /**
+     * give <目标> <物品> [数量]
+     * 带NBT或组件的物品交给命令执行
+     */
+    private NativeCommand parseGive(String[] args) {
+        if (args.length < 2 || args.length > 3) return null;
+        if (args[1].indexOf('{') >= 0 || args[1].indexOf('[') >= 0 || args[1].indexOf('%') >= 0) return null;
+
+        Target target = Target.parse(args[0], placeholderRegistry);
+        Material material = Material.matchMaterial(args[1]);
+        if (target == null || material == null || !material.isItem()) return null;
+        NumberArg count = args.length > 2 ? NumberArg.parse(args[2], placeholderRegistry) : NumberArg.of(1);
+
+        return new NativeCommand() {
+            @Override
+            void run(PlaceholderContext context) {
+                int amount = count.intValue(context);
+                if (amount <= 0) throw new IllegalArgumentException("物品数量无效: " + amount);
+                for (Player player : target.resolve(context)) {
+                    // 背包放不下的物品掉落在玩家脚下
+                    for (ItemStack leftover : player.getInventory().addItem(new ItemStack(material, amount)).values()) {
+                        player.getWorld().dropItem(player.getLocation(), leftover);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * tellraw <目标> <JSON文本>
+     */
+    private NativeCommand parseTellraw(String[] args) {
+        if (args.length != 2) return null;
+
+        Target target = Target.parse(args[0], placeholderRegistry);
+        if (target == null) return null;
+        TextArg text = TextArg.create(args[1], true, placeholderRegistry);
+
+        return new NativeCommand() {
+            @Override
+            void run(PlaceholderContext context) {
+                BaseComponent[] components = text.components(context);
+                for (Player player : target.resolve(context)) {
+                    player.spigot().sendMessage(components);
+                }
+            }
+        };
+    }
+
+    private static String[] tokens(String arguments, int limit) {
+        return arguments.trim().split("\\s+", limit);
+    }
+
+    private static void require(String[] args, int index, int count) {
+        if (args.length < index + count) {
+            throw new IllegalArgumentException("命令参数不足");
+        }
+    }
+
+    private static boolean parseBoolean(String value) {
+        if ("true".equals(value)) return true;
+        if ("false".equals(value)) return false;
+        throw new IllegalArgumentException("无效的布尔值: " + value);
+    }
+
+    private static int toColorChannel(String value) {
+        double channel = Double.parseDouble(value);
+        return (int) Math.round(Math.max(0.0, Math.min(1.0, channel)) * 255);
+    }
+
+    private static PotionEffectType resolvePotionEffectType(String name) {
+        if (name.indexOf('%') >= 0) return null;
+        NamespacedKey key = NamespacedKey.fromString(name.toLowerCase(Locale.ROOT));
+        PotionEffectType type = key == null ? null : PotionEffectType.getByKey(key);
+        return type != null ? type : PotionEffectType.getByName(name);
+    }
+
+    private static Particle resolveParticle(String name) {
+        if (name.indexOf('%') >= 0) return null;
+        String key = name.toLowerCase(Locale.ROOT);
+        if (key.startsWith("minecraft:")) {
+            key = key.substring("minecraft:".length());
+        }
+        Particle particle = PARTICLE_ALIASES.get(key);
+        if (particle != null) return particle;
+        try {
+            return Particle.valueOf(key.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static SoundCategory resolveSoundCategory(String name) {
+        switch (name) {
+            case "master": return SoundCategory.MASTER;
+            case "music": return SoundCategory.MUSIC;
+            case "record": return SoundCategory.RECORDS;
+            case "weather": return SoundCategory.WEATHER;
+            case "block": return SoundCategory.BLOCKS;
+            case "hostile": return SoundCategory.HOSTILE;
+            case "neutral": return SoundCategory.NEUTRAL;
+            case "player": return SoundCategory.PLAYERS;
+            case "ambient": return SoundCategory.AMBIENT;
+            case "voice": return SoundCategory.VOICE;
+            default: return null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 获取已编译为原生调用的命令数
+     * @return 原生命令数
+     */
+    public int getNativeCount() {
+        int count = 0;
+        for (Map<String, CompiledCommand> commands : cache.values()) {
+            for (CompiledCommand command : commands.values()) {
+                if (command.isNative()) count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 获取已编译的命令总数
+     * @return 命令数
+     */
+    public int getCompiledCount() {
+        int count = 0;
+        for (Map<String, CompiledCommand> commands : cache.values()) {
+            count += commands.size();
+        }
+        return count;
+    }
+
+    public long getNativeExecutions() {
+        return nativeExecutions;
+    }
+
+    public long getDispatchExecutions() {
+        return dispatchExecutions;
+    }
+
+    public long getRuntimeFallbacks() {
+        return runtimeFallbacks;
+    }
+
+    /**
+     * 获取执行命令的世界
+     * @param context 占位符上下文
+     * @return 上下文世界，没有时使用主世界
+     */
+    private static World worldOf(PlaceholderContext context) {
+        World world = context.getWorld();
+        return world != null ? world : Bukkit.getWorlds().get(0);
+    }
+
+    /**
+     * 原生命令
+     * 运行时参数无效时退回命令执行
+     */
+    private abstract class NativeCommand implements CompiledCommand {
+        private String source;
+        private DispatchCommand fallback;
+
+        abstract void run(PlaceholderContext context);
+
+        @Override
+        public void execute(PlaceholderContext context) {
+            try {
+                run(context);
+                nativeExecutions++;
+            } catch (IllegalArgumentException e) {
+                runtimeFallbacks++;
+                fallback.execute(context);
+            }
+        }
+
+        @Override
+        public boolean isNative() {
+            return true;
+        }
+
+        @Override
+        public String getSource() {
+            return source;
+        }
+    }
+
+    /**
+     * 交给命令调度队列执行的命令
+     */
+    private class DispatchCommand implements CompiledCommand {
+        private final PlaceholderTemplate template;
+        private final CommandDispatchQueue.Priority priority;
+
+        private DispatchCommand(String source, CommandDispatchQueue.Priority priority) {
+            this.template = placeholderRegistry.compile(source);
+            this.priority = priority;
+        }
+
+        @Override
+        public void execute(PlaceholderContext context) {
+            plugin.getCommandDispatchQueue().enqueue(template.render(context), context.getPlayer(), priority);
+            dispatchExecutions++;
+        }
+
+        @Override
+        public boolean isNative() {
+            return false;
+        }
+
+        @Override
+        public String getSource() {
+            return template.getSource();
+        }
+    }
+
+    /**
+     * 命令目标
+     * 支持 %player%、@a 和玩家名称（可包含占位符），其他选择器交给命令执行
+     */
+    private static final class Target {
+        private static final Target CONTEXT = new Target(null, false);
+        private static final Target ALL = new Target(null, true);
+
+        private final PlaceholderTemplate name;
+        private final boolean all;
+
+        private Target(PlaceholderTemplate name, boolean all) {
+            this.name = name;
+            this.all = all;
+        }
+
+        private static Target parse(String token, PlaceholderRegistry registry) {
+            if ("%player%".equals(token) || "%player_name%".equals(token)) return CONTEXT;
+            if ("@a".equals(token)) return ALL;
+            if (token.startsWith("@")) return null;
+            return new Target(registry.compile(token), false);
+        }
+
+        private boolean isAll() {
+            return all;
+        }
+
+        private Collection<? extends Player> resolve(PlaceholderContext context) {
+            if (all) return Bukkit.getOnlinePlayers();
+            if (name == null) {
+                Player player = context.getPlayer();
+                if (player == null) throw new IllegalArgumentException("命令目标需要玩家");
+                return Collections.singletonList(player);
+            }
+            Player player = Bukkit.getPlayerExact(name.render(context));
+            // 玩家不在线时不执行，与原版命令找不到目标时一致
+            return player == null ? Collections.emptyList() : Collections.singletonList(player);
+        }
+    }
+
+    /**
+     * 数值参数，常量在编译时解析，包含占位符的在运行时解析
+     */
+    private static final class NumberArg {
+        private final double value;
+        private final PlaceholderTemplate template;
+
+        private NumberArg(double value, PlaceholderTemplate template) {
+            this.value = value;
+            this.template = template;
+        }
+
+        private static NumberArg of(double value) {
+            return new NumberArg(value, null);
+        }
+
+        private static NumberArg parse(String token, PlaceholderRegistry registry) {
+            PlaceholderTemplate template = registry.compile(token);
+            if (template.hasPlaceholders()) return new NumberArg(0, template);
+            return of(Double.parseDouble(token));
+        }
+
+        private double doubleValue(PlaceholderContext context) {
+            return template == null ? value : Double.parseDouble(template.render(context));
+        }
+
+        private int intValue(PlaceholderContext context) {
+            return (int) doubleValue(context);
+        }
+    }
+
+    /**
+     * 坐标参数，支持绝对坐标和 ~ 相对坐标
+     */
+    private static final class Coordinate {
+        private static final Coordinate RELATIVE_ORIGIN = new Coordinate(true, NumberArg.of(0));
+
+        private final boolean relative;
+        private final NumberArg offset;
+
+        private Coordinate(boolean relative, NumberArg offset) {
+            this.relative = relative;
+            this.offset = offset;
+        }
+
+        private static Coordinate parse(String token, PlaceholderRegistry registry) {
+            if (token.startsWith("^")) throw new IllegalArgumentException("不支持局部坐标: " + token);
+            if (token.startsWith("~")) {
+                return token.length() == 1 ? RELATIVE_ORIGIN
+                        : new Coordinate(true, NumberArg.parse(token.substring(1), registry));
+            }
+            return new Coordinate(false, NumberArg.parse(token, registry));
+        }
+
+        /**
+         * @param base 相对坐标的基准，为null时无法解析相对坐标
+         */
+        private double resolve(PlaceholderContext context, Double base) {
+            double value = offset.doubleValue(context);
+            if (!relative) return value;
+            if (base == null) throw new IllegalArgumentException("相对坐标需要玩家");
+            return base + value;
+        }
+    }
+
+    /**
+     * 文本参数，支持普通文本和JSON文本，常量在编译时转换为聊天组件
+     */
+    private static final class TextArg {
+        private final BaseComponent[] components;
+        private final PlaceholderTemplate template;
+        private final boolean json;
+
+        private TextArg(BaseComponent[] components, PlaceholderTemplate template, boolean json) {
+            this.components = components;
+            this.template = template;
+            this.json = json;
+        }
+
+        private static TextArg parse(String text, PlaceholderRegistry registry) {
+            char first = text.charAt(0);
+            return create(text, first == '{' || first == '[' || first == '"', registry);
+        }
+
+        private static TextArg create(String text, boolean json, PlaceholderRegistry registry) {
+            PlaceholderTemplate template = registry.compile(text);
+            if (template.hasPlaceholders()) return new TextArg(null, template, json);
+            return new TextArg(toComponents(text, json), null, json);
+        }
+
+        private static BaseComponent[] toComponents(String text, boolean json) {
+            if (!json) return TextComponent.fromLegacyText(text);
+            try {
+                return ComponentSerializer.parse(text);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("无效的JSON文本: " + text, e);
+            }
+        }
+
+        private BaseComponent[] components(PlaceholderContext context) {
+            return template == null ? components : toComponents(template.render(context), json);
+        }
+    }
+}
@@ -0,0 +1,476 @@
+package cn.popcraft.weatherevent.manager;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+
+/**
+ * 命令调度队列
+ * 所有以控制台身份执行的命令先进入队列，由主线程每tick按优先级取出执行。
+ * 每tick的执行数量、耗时和单个玩家的命令数都有上限，超出的命令顺延到下一tick，
+ * 超出玩家配额的命令移到该玩家的暂存队列，玩家有配额时再按原来的顺序执行；
+ * 已在队列中的相同命令不会重复加入，以更高优先级再次加入时提升原有命令的优先级
+ */
+public class CommandDispatchQueue {
+
+    /**
+     * 命令优先级，数值越小越先执行
+     */
+    public enum Priority {
+        HIGH,   // 灾害开始/结束等必须及时执行的命令
+        NORMAL, // 效果命令
+        LOW;    // 粒子、音效等装饰性命令
+
+        /**
+         * 根据命令内容推断优先级
+         * @param command 命令
+         * @return 装饰性命令为 LOW，其他为 NORMAL
+         */
+        public static Priority classify(String command) {
+            String trimmed = command.startsWith("/") ? command.substring(1) : command;
+            if (trimmed.startsWith("particle ") || trimmed.startsWith("minecraft:particle ")
+                    || trimmed.startsWith("playsound ") || trimmed.startsWith("minecraft:playsound ")) {
+                return LOW;
+            }
+            return NORMAL;
+        }
+    }
+
+    private final Plugin plugin;
+    private final List<ArrayDeque<Entry>> lanes;
+    private final Map<String, Entry> pendingCommands; // 命令 -> 排队中的条目
+    // 各优先级中超出玩家配额而暂存的命令，按玩家分开
+    private final List<Map<UUID, ArrayDeque<Entry>>> parked;
+
+    private boolean enabled;
+    private int maxPerTick;
+    private int maxPerPlayer;
+    private long tickBudgetNanos;
+    private int maxPending;
+    private BukkitTask task;
+
+    private long enqueued;
+    private long dispatched;
+    private long deduplicated;
+    private long promoted;         // 去重时提升到更高优先级的命令数
+    private long dropped;          // 队列已满被丢弃的命令数
+    private long expired;          // 目标玩家已离线而取消的命令数
+    private long failed;
+    private long spilledTicks;     // 有命令顺延到下一tick的tick数
+    private long totalLatencyNanos;
+    private long maxLatencyNanos;
+    private int maxDepth;
+    private long lastTickNanos;
+
+    public CommandDispatchQueue(Plugin plugin) {
+        this.plugin = plugin;
+        this.lanes = new ArrayList<>();
+        for (int i = 0; i < Priority.values().length; i++) {
+            lanes.add(new ArrayDeque<>());
+        }
+        this.pendingCommands = new HashMap<>();
+        this.parked = new ArrayList<>();
+        for (int i = 0; i < Priority.values().length; i++) {
+            parked.add(new LinkedHashMap<>());
+        }
+        this.enabled = true;
+        this.maxPerTick = 50;
+        this.maxPerPlayer = 5;
+        this.tickBudgetNanos = 2_000_000L;
+        this.maxPending = 5000;
+    }
+
+    /**
+     * 设置调度参数
+     * @param enabled 是否启用队列，关闭时命令立即执行
+     * @param maxPerTick 每tick最多执行的命令数
+     * @param maxPerPlayer 每tick每个玩家最多执行的命令数
+     * @param tickBudgetNanos 每tick的执行时间预算（纳秒）
+     * @param maxPending 队列容量，已满时丢弃非高优先级命令
+     */
+    public synchronized void configure(boolean enabled, int maxPerTick, int maxPerPlayer,
+                                       long tickBudgetNanos, int maxPending) {
+        this.enabled = enabled;
+        this.maxPerTick = Math.max(1, maxPerTick);
+        this.maxPerPlayer = Math.max(1, maxPerPlayer);
+        this.tickBudgetNanos = Math.max(0, tickBudgetNanos);
+        this.maxPending = Math.max(1, maxPending);
+    }
+
+    /**
+     * 启动每tick执行的调度任务
+     */
+    public void start() {
+        stop();
+        task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+    }
+
+    /**
+     * 停止调度任务，并立即执行剩余的高优先级命令
+     */
+    public void stop() {
+        if (task != null && !task.isCancelled()) {
+            task.cancel();
+        }
+        task = null;
+
+        List<Entry> remaining;
+        synchronized (this) {
+            remaining = new ArrayList<>(lanes.get(Priority.HIGH.ordinal()));
+            for (ArrayDeque<Entry> queue : parked.get(Priority.HIGH.ordinal()).values()) {
+                remaining.addAll(queue);
+            }
+            for (ArrayDeque<Entry> lane : lanes) {
+                lane.clear();
+            }
+            for (Map<UUID, ArrayDeque<Entry>> laneParked : parked) {
+                laneParked.clear();
+            }
+            pendingCommands.clear();
+        }
+        for (Entry entry : remaining) {
+            dispatch(entry);
+        }
+    }
+
+    /**
+     * 按命令内容推断优先级并加入队列
+     * @param command 命令
+     * @param player 命令针对的玩家，可以为 null
+     */
+    public void enqueue(String command, Player player) {
+        enqueue(command, player, Priority.classify(command));
+    }
+
+    /**
+     * 将命令加入队列
+     * 可以在任意线程调用，命令总是在主线程执行
+     * @param command 命令
+     * @param player 命令针对的玩家，可以为 null；计入该玩家的每tick配额，玩家离线后命令取消
+     * @param priority 优先级
+     */
+    public void enqueue(String command, Player player, Priority priority) {
+        if (command == null || command.isEmpty()) return;
+
+        Entry entry = new Entry(command, player == null ? null : player.getUniqueId(), priority, System.nanoTime());
+        if (!enabled && Bukkit.isPrimaryThread()) {
+            // 队列未启用时直接执行
+            dispatch(entry);
+            return;
+        }
+
+        synchronized (this) {
+            Entry existing = pendingCommands.get(command);
+            if (existing != null) {
+                deduplicated++;
+                if (priority.ordinal() < existing.priority.ordinal()) {
+                    // 已排队的相同命令移到更高优先级的队尾，避免高优先级命令被低优先级条目吞掉
+                    if (existing.parked) {
+                        unpark(existing);
+                    } else {
+                        lanes.get(existing.priority.ordinal()).removeFirstOccurrence(existing);
+                    }
+                    existing.priority = priority;
+                    lanes.get(priority.ordinal()).addLast(existing);
+                    promoted++;
+                }
+                return;
+            }
+            if (priority != Priority.HIGH && pendingCommands.size() >= maxPending) {
+                dropped++;
+                return;
+            }
+            pendingCommands.put(command, entry);
+            lanes.get(priority.ordinal()).addLast(entry);
+            enqueued++;
+            maxDepth = Math.max(maxDepth, pendingCommands.size());
+        }
+    }
+
+    /**
+     * 执行一个tick的命令
+     * 按优先级依次取出命令，达到数量或时间预算后停止；
+     * 每个优先级先执行有配额的玩家的暂存命令，再执行队列中的命令，
+     * 超出玩家配额的命令移入暂存队列，不再每tick放回队首重新检查
+     */
+    public void tick() {
+        long start = System.nanoTime();
+        int budget = maxPerTick;
+        Map<UUID, Integer> perPlayer = new HashMap<>();
+        boolean spilled = false;
+        boolean deferred = false; // 有命令因玩家配额留在暂存队列
+
+        for (int lane = 0; lane < lanes.size() && !spilled; lane++) {
+            List<UUID> parkedPlayers;
+            synchronized (this) {
+                parkedPlayers = parked.get(lane).isEmpty()
+                        ? Collections.emptyList() : new ArrayList<>(parked.get(lane).keySet());
+            }
+            for (UUID playerId : parkedPlayers) {
+                Player player = Bukkit.getPlayer(playerId);
+                if (player == null || !player.isOnline()) {
+                    expireParked(lane, playerId);
+                    continue;
+                }
+                int count = perPlayer.getOrDefault(playerId, 0);
+                while (count < maxPerPlayer) {
+                    if (budget <= 0 || System.nanoTime() - start >= tickBudgetNanos) {
+                        spilled = true;
+                        break;
+                    }
+                    Entry entry = pollParked(lane, playerId);
+                    if (entry == null) break;
+                    dispatch(entry);
+                    budget--;
+                    count++;
+                }
+                perPlayer.put(playerId, count);
+                if (count >= maxPerPlayer) {
+                    deferred = true;
+                }
+                if (spilled) break;
+            }
+
+            while (!spilled) {
+                if (budget <= 0 || System.nanoTime() - start >= tickBudgetNanos) {
+                    spilled = true;
+                    break;
+                }
+
+                Entry entry;
+                synchronized (this) {
+                    entry = lanes.get(lane).pollFirst();
+                    if (entry != null) {
+                        pendingCommands.remove(entry.command, entry);
+                    }
+                }
+                if (entry == null) break;
+
+                if (entry.playerId != null) {
+                    Player player = Bukkit.getPlayer(entry.playerId);
+                    if (player == null || !player.isOnline()) {
+                        expired++;
+                        continue;
+                    }
+                    int count = perPlayer.merge(entry.playerId, 1, Integer::sum);
+                    if (count > maxPerPlayer) {
+                        park(entry);
+                        deferred = true;
+                        continue;
+                    }
+                }
+
+                dispatch(entry);
+                budget--;
+            }
+        }
+
+        if ((spilled || deferred) && getDepth() > 0) {
+            spilledTicks++;
+        }
+        lastTickNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * 将超出玩家配额的命令移入该玩家的暂存队列
+     */
+    private synchronized void park(Entry entry) {
+        if (pendingCommands.putIfAbsent(entry.command, entry) != null) {
+            // 取出后又加入了相同的命令，保留新的条目
+            deduplicated++;
+            return;
+        }
+        entry.parked = true;
+        parked.get(entry.priority.ordinal()).computeIfAbsent(entry.playerId, k -> new ArrayDeque<>()).addLast(entry);
+    }
+
+    /**
+     * 从玩家的暂存队列中取出下一个命令
+     * @return 命令，没有时返回 null
+     */
+    private synchronized Entry pollParked(int lane, UUID playerId) {
+        ArrayDeque<Entry> queue = parked.get(lane).get(playerId);
+        if (queue == null) {
+            return null;
+        }
+        Entry entry = queue.pollFirst();
+        if (queue.isEmpty()) {
+            parked.get(lane).remove(playerId);
+        }
+        if (entry != null) {
+            entry.parked = false;
+            pendingCommands.remove(entry.command, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * 从暂存队列中移除命令（提升优先级时）
+     */
+    private void unpark(Entry entry) {
+        Map<UUID, ArrayDeque<Entry>> laneParked = parked.get(entry.priority.ordinal());
+        ArrayDeque<Entry> queue = laneParked.get(entry.playerId);
+        if (queue != null) {
+            queue.removeFirstOccurrence(entry);
+            if (queue.isEmpty()) {
+                laneParked.remove(entry.playerId);
+            }
+        }
+        entry.parked = false;
+    }
+
+    /**
+     * 玩家离线后取消其暂存的命令
+     */
+    private synchronized void expireParked(int lane, UUID playerId) {
+        ArrayDeque<Entry> queue = parked.get(lane).remove(playerId);
+        if (queue == null) {
+            return;
+        }
+        for (Entry entry : queue) {
+            pendingCommands.remove(entry.command, entry);
+        }
+        expired += queue.size();
+    }
+
+    private void dispatch(Entry entry) {
+        long latency = System.nanoTime() - entry.enqueuedAt;
+        totalLatencyNanos += latency;
+        maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+        dispatched++;
+        try {
+            Bukkit.dispatchCommand(Bukkit.getConsoleSender(), entry.command);
+        } catch (RuntimeException e) {
+            failed++;
+            plugin.getLogger().log(Level.WARNING, "执行命令失败: " + entry.command, e);
+        }
+    }
+
+    /**
+     * 获取当前排队的命令总数
+     * @return 队列深度
+     */
+    public synchronized int getDepth() {
+        return pendingCommands.size();
+    }
+
+    /**
+     * 获取指定优先级排队的命令数
+     * @param priority 优先级
+     * @return 队列深度
+     */
+    public synchronized int getDepth(Priority priority) {
+        int depth = lanes.get(priority.ordinal()).size();
+        for (ArrayDeque<Entry> queue : parked.get(priority.ordinal()).values()) {
+            depth += queue.size();
+        }
+        return depth;
+    }
+
+    /**
+     * 获取超出玩家配额而暂存的命令数
+     * @return 暂存的命令数
+     */
+    public synchronized int getParked() {
+        int count = 0;
+        for (Map<UUID, ArrayDeque<Entry>> laneParked : parked) {
+            for (ArrayDeque<Entry> queue : laneParked.values()) {
+                count += queue.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 获取平均排队延迟
+     * @return 平均延迟（纳秒）
+     */
+    public long getAverageLatencyNanos() {
+        return dispatched == 0 ? 0 : totalLatencyNanos / dispatched;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getMaxPerTick() {
+        return maxPerTick;
+    }
+
+    public int getMaxPerPlayer() {
+        return maxPerPlayer;
+    }
+
+    public long getEnqueued() {
+        return enqueued;
+    }
+
+    public long getDispatched() {
+        return dispatched;
+    }
+
+    public long getDeduplicated() {
+        return deduplicated;
+    }
+
+    public long getPromoted() {
+        return promoted;
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+
+    public long getExpired() {
+        return expired;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getSpilledTicks() {
+        return spilledTicks;
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getLastTickNanos() {
+        return lastTickNanos;
+    }
+
+    /**
+     * 排队中的命令
+     */
+    private static class Entry {
+        private final String command;
+        private final UUID playerId;
+        private Priority priority; // 所在的优先级队列，去重时可能被提升
+        private boolean parked;    // 是否在玩家的暂存队列中
+        private final long enqueuedAt;
+
+        private Entry(String command, UUID playerId, Priority priority, long enqueuedAt) {
+            this.command = command;
+            this.playerId = playerId;
+            this.priority = priority;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package cn.popcraft.weatherevent.manager;
+
+import cn.popcraft.weatherevent.message.PlaceholderContext;
+
+/**
+ * 编译后的命令
+ * 由 {@link CommandCompiler} 在加载时生成：能识别的原版命令直接调用 Bukkit API，
+ * 其余命令交给命令调度队列执行
+ */
+public interface CompiledCommand {
+
+    /**
+     * 执行命令
+     * @param context 占位符上下文，其中的玩家用于 %player% 目标和 ~ 相对坐标，世界用于粒子等位置
+     */
+    void execute(PlaceholderContext context);
+
+    /**
+     * 是否编译为直接的 API 调用
+     * @return 是否为原生命令
+     */
+    boolean isNative();
+
+    /**
+     * 获取原始命令
+     * @return 原始命令文本
+     */
+    String getSource();
+}
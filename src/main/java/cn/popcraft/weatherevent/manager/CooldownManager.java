@@ -1,22 +1,83 @@
 package cn.popcraft.weatherevent.manager;
 
+import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
 /**
  * 冷却管理器
- * 用于管理效果的冷却时间，防止过于频繁触发
+ * 用于管理效果的冷却时间，防止过于频繁触发。
+ * 效果ID在第一次使用时映射为整数下标，每个玩家的到期时间（服务器tick）保存在 long[] 中，
+ * 同时维护一个“冷却中”位图；到期的记录由分层时间轮按服务器tick清除，
+ * 查询时不需要读取系统时间。只能在主线程使用
  */
 public class CooldownManager {
-    private final Map<String, Map<UUID, Long>> cooldowns;
-    
+    private static final int WHEEL_BITS = 8;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS; // 每层 256 个槽
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 3; // 三层覆盖 2^24 tick（约 9.7 天），更长的冷却放入溢出链表
+    private static final long MILLIS_PER_TICK = 50L;
+
+    // 效果ID与下标的映射
+    private final Map<String, Integer> effectIndexes;
+
+    private final Map<UUID, PlayerCooldowns> players;
+
+    // 分层时间轮：wheels[level][slot] 为链表头
+    private final Entry[][] wheels;
+    private Entry overflow;
+    private long currentTick;
+    private BukkitTask tickTask;
+
+    private int activeCooldowns; // 当前冷却中的记录数
+    private long expirations;    // 时间轮清除的到期记录数
+
     public CooldownManager() {
-        this.cooldowns = new HashMap<>();
+        this.effectIndexes = new HashMap<>();
+        this.players = new HashMap<>();
+        this.wheels = new Entry[LEVELS][WHEEL_SIZE];
+    }
+
+    /**
+     * 启动时间轮，每个服务器tick推进一次
+     * @param plugin 插件实例
+     */
+    public void start(Plugin plugin) {
+        stop();
+        tickTask = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
     }
-    
+
+    /**
+     * 停止时间轮，已有的冷却记录保留
+     */
+    public void stop() {
+        if (tickTask != null) {
+            tickTask.cancel();
+            tickTask = null;
+        }
+    }
+
+    /**
+     * 获取效果ID对应的下标，不存在时分配新的下标
+     * @param effectId 效果ID
+     * @return 下标
+     */
+    public int internEffect(String effectId) {
+        Integer index = effectIndexes.get(effectId);
+        if (index != null) {
+            return index;
+        }
+        int newIndex = effectIndexes.size();
+        effectIndexes.put(effectId, newIndex);
+        return newIndex;
+    }
+
     /**
      * 设置玩家特定效果的冷却时间
      * @param player 玩家
@@ -24,12 +85,34 @@ public class CooldownManager {
      * @param cooldownMillis 冷却时间（毫秒）
      */
     public void setCooldown(Player player, String effectId, long cooldownMillis) {
-        UUID playerId = player.getUniqueId();
-        long expireTime = System.currentTimeMillis() + cooldownMillis;
-        
-        cooldowns.computeIfAbsent(effectId, k -> new HashMap<>()).put(playerId, expireTime);
+        setCooldown(player, internEffect(effectId), cooldownMillis);
     }
-    
+
+    /**
+     * 按下标设置玩家特定效果的冷却时间
+     * @param player 玩家
+     * @param effectIndex {@link #internEffect(String)} 返回的下标
+     * @param cooldownMillis 冷却时间（毫秒），按 tick 向上取整
+     */
+    public void setCooldown(Player player, int effectIndex, long cooldownMillis) {
+        if (cooldownMillis <= 0L) {
+            return;
+        }
+        long ticks = Math.max(1L, (cooldownMillis + MILLIS_PER_TICK - 1) / MILLIS_PER_TICK);
+        long expiry = currentTick + ticks;
+
+        PlayerCooldowns cooldowns = players.get(player.getUniqueId());
+        if (cooldowns == null) {
+            cooldowns = new PlayerCooldowns();
+            players.put(player.getUniqueId(), cooldowns);
+        }
+        if (cooldowns.set(effectIndex, expiry)) {
+            activeCooldowns++;
+        }
+        // 覆盖旧的冷却时，旧的时间轮记录到期时会因为到期时间不一致而被忽略
+        schedule(new Entry(cooldowns, effectIndex, expiry));
+    }
+
     /**
      * 检查玩家特定效果是否在冷却中
      * @param player 玩家
@@ -37,28 +120,21 @@ public class CooldownManager {
      * @return 是否在冷却中
      */
     public boolean isOnCooldown(Player player, String effectId) {
-        UUID playerId = player.getUniqueId();
-        Map<UUID, Long> effectCooldowns = cooldowns.get(effectId);
-        
-        if (effectCooldowns == null) {
-            return false;
-        }
-        
-        Long expireTime = effectCooldowns.get(playerId);
-        if (expireTime == null) {
-            return false;
-        }
-        
-        // 检查是否已过期
-        if (System.currentTimeMillis() > expireTime) {
-            // 冷却已过期，移除记录
-            effectCooldowns.remove(playerId);
-            return false;
-        }
-        
-        return true;
+        Integer index = effectIndexes.get(effectId);
+        return index != null && isOnCooldown(player, index);
+    }
+
+    /**
+     * 按下标检查玩家特定效果是否在冷却中
+     * @param player 玩家
+     * @param effectIndex {@link #internEffect(String)} 返回的下标
+     * @return 是否在冷却中
+     */
+    public boolean isOnCooldown(Player player, int effectIndex) {
+        PlayerCooldowns cooldowns = players.get(player.getUniqueId());
+        return cooldowns != null && cooldowns.expiry(effectIndex) > currentTick;
     }
-    
+
     /**
      * 获取玩家特定效果的剩余冷却时间
      * @param player 玩家
@@ -66,51 +142,256 @@ public class CooldownManager {
      * @return 剩余冷却时间（毫秒），如果没有冷却则返回0
      */
     public long getRemainingCooldown(Player player, String effectId) {
-        UUID playerId = player.getUniqueId();
-        Map<UUID, Long> effectCooldowns = cooldowns.get(effectId);
-        
-        if (effectCooldowns == null) {
+        Integer index = effectIndexes.get(effectId);
+        PlayerCooldowns cooldowns = index == null ? null : players.get(player.getUniqueId());
+        if (cooldowns == null) {
             return 0;
         }
-        
-        Long expireTime = effectCooldowns.get(playerId);
-        if (expireTime == null) {
-            return 0;
+        long remainingTicks = cooldowns.expiry(index) - currentTick;
+        return remainingTicks > 0 ? remainingTicks * MILLIS_PER_TICK : 0;
+    }
+
+    /**
+     * 获取玩家可以触发（不在冷却中）的效果位图
+     * 第 i 位对应下标 i 的效果，一次查询后逐个效果只需位运算
+     * @param player 玩家
+     * @param into 复用的数组，长度不足时重新分配
+     * @return 位图
+     */
+    public long[] getReadyEffects(Player player, long[] into) {
+        int words = (effectIndexes.size() + 63) >>> 6;
+        if (into == null || into.length < words) {
+            into = new long[Math.max(1, words)];
         }
-        
-        long remainingTime = expireTime - System.currentTimeMillis();
-        if (remainingTime <= 0) {
-            // 冷却已过期，移除记录
-            effectCooldowns.remove(playerId);
-            return 0;
+        Arrays.fill(into, -1L);
+
+        PlayerCooldowns cooldowns = players.get(player.getUniqueId());
+        if (cooldowns != null && cooldowns.active > 0) {
+            long[] cooling = cooldowns.cooling;
+            for (int i = 0; i < cooling.length && i < into.length; i++) {
+                into[i] = ~cooling[i];
+            }
         }
-        
-        return remainingTime;
+        return into;
     }
-    
+
+    /**
+     * 检查位图中的效果是否可以触发
+     * @param readyEffects {@link #getReadyEffects} 返回的位图
+     * @param effectIndex 效果下标
+     * @return 是否可以触发
+     */
+    public static boolean isReady(long[] readyEffects, int effectIndex) {
+        int word = effectIndex >>> 6;
+        return word >= readyEffects.length || (readyEffects[word] & (1L << effectIndex)) != 0;
+    }
+
     /**
      * 清除玩家的所有冷却时间
      * @param player 玩家
      */
     public void clearCooldowns(Player player) {
-        UUID playerId = player.getUniqueId();
-        for (Map<UUID, Long> effectCooldowns : cooldowns.values()) {
-            effectCooldowns.remove(playerId);
+        PlayerCooldowns cooldowns = players.remove(player.getUniqueId());
+        if (cooldowns != null) {
+            activeCooldowns -= cooldowns.active;
+            cooldowns.clear();
         }
     }
-    
+
     /**
      * 清除特定效果的所有冷却时间
      * @param effectId 效果ID
      */
     public void clearEffectCooldowns(String effectId) {
-        cooldowns.remove(effectId);
+        Integer index = effectIndexes.get(effectId);
+        if (index == null) {
+            return;
+        }
+        for (PlayerCooldowns cooldowns : players.values()) {
+            if (cooldowns.remove(index)) {
+                activeCooldowns--;
+            }
+        }
     }
-    
+
     /**
      * 清除所有冷却时间
      */
     public void clearAllCooldowns() {
-        cooldowns.clear();
+        for (PlayerCooldowns cooldowns : players.values()) {
+            cooldowns.clear();
+        }
+        players.clear();
+        for (Entry[] wheel : wheels) {
+            Arrays.fill(wheel, null);
+        }
+        overflow = null;
+        activeCooldowns = 0;
+    }
+
+    /**
+     * 推进一个tick，清除到期的冷却
+     */
+    private void tick() {
+        currentTick++;
+
+        // 低层转完一圈时把上一层对应槽的记录重新分配到低层
+        if ((currentTick & WHEEL_MASK) == 0) {
+            cascade(1, (int) ((currentTick >>> WHEEL_BITS) & WHEEL_MASK));
+            if (((currentTick >>> WHEEL_BITS) & WHEEL_MASK) == 0) {
+                cascade(2, (int) ((currentTick >>> (2 * WHEEL_BITS)) & WHEEL_MASK));
+                if (((currentTick >>> (2 * WHEEL_BITS)) & WHEEL_MASK) == 0) {
+                    Entry entry = overflow;
+                    overflow = null;
+                    reschedule(entry);
+                }
+            }
+        }
+
+        int slot = (int) (currentTick & WHEEL_MASK);
+        Entry entry = wheels[0][slot];
+        wheels[0][slot] = null;
+        while (entry != null) {
+            Entry next = entry.next;
+            if (entry.expiry <= currentTick) {
+                if (entry.owner.expireIfCurrent(entry.effectIndex, entry.expiry)) {
+                    activeCooldowns--;
+                    expirations++;
+                }
+            } else {
+                schedule(entry);
+            }
+            entry = next;
+        }
+    }
+
+    private void cascade(int level, int slot) {
+        Entry entry = wheels[level][slot];
+        wheels[level][slot] = null;
+        reschedule(entry);
+    }
+
+    private void reschedule(Entry entry) {
+        while (entry != null) {
+            Entry next = entry.next;
+            schedule(entry);
+            entry = next;
+        }
+    }
+
+    /**
+     * 按到期tick把记录放入对应层的槽
+     * 第 n 层的槽在第 n-1 层转完一圈时整体转入下一层，因此按到期tick与当前tick在该层的序号差选择层
+     */
+    private void schedule(Entry entry) {
+        long expiry = entry.expiry;
+        long delay = expiry - currentTick;
+
+        if (delay < WHEEL_SIZE) {
+            // 已到期的记录只会在上层转入时出现，放入当前槽在本tick内处理
+            int slot = (int) ((delay < 0 ? currentTick : expiry) & WHEEL_MASK);
+            entry.next = wheels[0][slot];
+            wheels[0][slot] = entry;
+        } else if ((expiry >>> WHEEL_BITS) - (currentTick >>> WHEEL_BITS) < WHEEL_SIZE) {
+            int slot = (int) ((expiry >>> WHEEL_BITS) & WHEEL_MASK);
+            entry.next = wheels[1][slot];
+            wheels[1][slot] = entry;
+        } else if ((expiry >>> (2 * WHEEL_BITS)) - (currentTick >>> (2 * WHEEL_BITS)) < WHEEL_SIZE) {
+            int slot = (int) ((expiry >>> (2 * WHEEL_BITS)) & WHEEL_MASK);
+            entry.next = wheels[2][slot];
+            wheels[2][slot] = entry;
+        } else {
+            entry.next = overflow;
+            overflow = entry;
+        }
+    }
+
+    public int getActiveCooldowns() {
+        return activeCooldowns;
+    }
+
+    public long getExpirations() {
+        return expirations;
+    }
+
+    public int getEffectCount() {
+        return effectIndexes.size();
+    }
+
+    /**
+     * 时间轮中的一条到期记录
+     */
+    private static class Entry {
+        private final PlayerCooldowns owner;
+        private final int effectIndex;
+        private final long expiry;
+        private Entry next;
+
+        Entry(PlayerCooldowns owner, int effectIndex, long expiry) {
+            this.owner = owner;
+            this.effectIndex = effectIndex;
+            this.expiry = expiry;
+        }
+    }
+
+    /**
+     * 单个玩家的冷却状态
+     */
+    private static class PlayerCooldowns {
+        private long[] expiries = new long[16]; // 到期tick，0 表示没有冷却
+        private long[] cooling = new long[1];   // 冷却中的效果位图
+        private int active;
+
+        long expiry(int index) {
+            return index < expiries.length ? expiries[index] : 0L;
+        }
+
+        /**
+         * 设置到期时间
+         * @return 该效果之前是否不在冷却中
+         */
+        boolean set(int index, long expiry) {
+            if (index >= expiries.length) {
+                expiries = Arrays.copyOf(expiries, Math.max(index + 1, expiries.length * 2));
+            }
+            int word = index >>> 6;
+            if (word >= cooling.length) {
+                cooling = Arrays.copyOf(cooling, word + 1);
+            }
+            boolean added = expiries[index] == 0L;
+            expiries[index] = expiry;
+            cooling[word] |= 1L << index;
+            if (added) {
+                active++;
+            }
+            return added;
+        }
+
+        /**
+         * 时间轮到期时调用，冷却被重新设置过则忽略
+         * @return 是否清除了冷却
+         */
+        boolean expireIfCurrent(int index, long expiry) {
+            if (expiry(index) != expiry) {
+                return false;
+            }
+            return remove(index);
+        }
+
+        boolean remove(int index) {
+            if (expiry(index) == 0L) {
+                return false;
+            }
+            expiries[index] = 0L;
+            cooling[index >>> 6] &= ~(1L << index);
+            active--;
+            return true;
+        }
+
+        void clear() {
+            Arrays.fill(expiries, 0L);
+            Arrays.fill(cooling, 0L);
+            active = 0;
+        }
     }
-}
\ No newline at end of file
+}
@@ -3,22 +3,55 @@ package cn.popcraft.weatherevent.manager;
 import cn.popcraft.weatherevent.WeatherEvent;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 
 /**
  * 权限管理器
- * 用于管理不同玩家组的效果配置和权限
+ * 用于管理不同玩家组的效果配置和权限。
+ * 玩家所属的组和免疫权限解析后按玩家缓存，在加入、切换世界、重新加载、
+ * 超过刷新间隔或其他插件调用 {@link #invalidate(Player)} 时重新解析。只能在主线程使用
  */
-public class PermissionManager {
+public class PermissionManager implements Listener {
+    public static final String GROUP_PERMISSION_PREFIX = "weatherevent.group.";
+    public static final String DISASTER_BYPASS_PERMISSION = "weatherevent.disaster.bypass";
+    
     private final WeatherEvent plugin;
-    private final Map<String, GroupEffectConfig> groupConfigs;
+    private final Map<String, GroupEffectConfig> groupConfigs; // 按配置顺序，玩家属于多个组时取第一个
+    private GroupEffectConfig defaultConfig;
+    private String[] groupNodes; // 与 groupEntries 一一对应的权限节点
+    private GroupEffectConfig[] groupEntries;
+    
+    // 玩家权限缓存
+    private final Map<UUID, CachedPermissions> cache;
+    private long refreshIntervalMillis;
+    private int version; // 重新加载或全部失效时递增
+    
+    private long cacheHits;   // 使用缓存结果的次数
+    private long resolutions; // 重新解析权限的次数
     
     public PermissionManager(WeatherEvent plugin) {
         this.plugin = plugin;
-        this.groupConfigs = new HashMap<>();
+        this.groupConfigs = new LinkedHashMap<>();
+        this.cache = new HashMap<>();
+        loadGroupConfigs();
+    }
+    
+    /**
+     * 重新加载玩家组配置，清空所有玩家的缓存
+     */
+    public void reload() {
+        groupConfigs.clear();
         loadGroupConfigs();
     }
     
@@ -26,16 +59,30 @@ public class PermissionManager {
      * 加载玩家组配置
      */
     private void loadGroupConfigs() {
-        ConfigurationSection groupsSection = plugin.getConfig().getConfigurationSection("permissions.groups");
-        if (groupsSection == null) return;
+        invalidateAll();
+        refreshIntervalMillis = plugin.getConfig().getLong("permissions.cache-refresh-seconds", 30L) * 1000L;
         
-        for (String groupName : groupsSection.getKeys(false)) {
-            ConfigurationSection groupSection = groupsSection.getConfigurationSection(groupName);
-            if (groupSection != null) {
-                GroupEffectConfig config = new GroupEffectConfig(groupSection);
-                groupConfigs.put(groupName, config);
+        ConfigurationSection groupsSection = plugin.getConfig().getConfigurationSection("permissions.groups");
+        if (groupsSection != null) {
+            for (String groupName : groupsSection.getKeys(false)) {
+                ConfigurationSection groupSection = groupsSection.getConfigurationSection(groupName);
+                if (groupSection != null) {
+                    GroupEffectConfig config = new GroupEffectConfig(groupSection);
+                    groupConfigs.put(groupName, config);
+                }
             }
         }
+        
+        // 权限节点在加载时拼接一次
+        groupNodes = new String[groupConfigs.size()];
+        groupEntries = new GroupEffectConfig[groupConfigs.size()];
+        int i = 0;
+        for (Map.Entry<String, GroupEffectConfig> entry : groupConfigs.entrySet()) {
+            groupNodes[i] = GROUP_PERMISSION_PREFIX + entry.getKey();
+            groupEntries[i] = entry.getValue();
+            i++;
+        }
+        defaultConfig = groupConfigs.getOrDefault("default", new GroupEffectConfig());
     }
     
     /**
@@ -46,7 +93,7 @@ public class PermissionManager {
      */
     public boolean isPlayerInGroup(Player player, String groupName) {
         // 检查权限节点
-        if (player.hasPermission("weatherevent.group." + groupName)) {
+        if (player.hasPermission(GROUP_PERMISSION_PREFIX + groupName)) {
             return true;
         }
         
@@ -72,14 +119,115 @@ public class PermissionManager {
      * @return 组配置，如果没有找到则返回默认配置
      */
     public GroupEffectConfig getPlayerGroupConfig(Player player) {
-        for (Map.Entry<String, GroupEffectConfig> entry : groupConfigs.entrySet()) {
-            if (isPlayerInGroup(player, entry.getKey())) {
-                return entry.getValue();
-            }
+        return getCachedPermissions(player).group;
+    }
+    
+    /**
+     * 检查玩家是否免疫灾害
+     * @param player 玩家
+     * @return 是否拥有灾害免疫权限
+     */
+    public boolean hasDisasterBypass(Player player) {
+        return getCachedPermissions(player).disasterBypass;
+    }
+    
+    /**
+     * 获取玩家的缓存权限，过期时重新解析
+     * @param player 玩家
+     * @return 缓存的权限
+     */
+    private CachedPermissions getCachedPermissions(Player player) {
+        long now = System.currentTimeMillis();
+        CachedPermissions cached = cache.get(player.getUniqueId());
+        if (cached != null && cached.version == version &&
+            (refreshIntervalMillis <= 0L || now - cached.resolvedAt < refreshIntervalMillis)) {
+            cacheHits++;
+            return cached;
         }
         
-        // 返回默认配置
-        return groupConfigs.getOrDefault("default", new GroupEffectConfig());
+        if (cached == null) {
+            cached = new CachedPermissions();
+            cache.put(player.getUniqueId(), cached);
+        }
+        resolve(player, cached);
+        cached.version = version;
+        cached.resolvedAt = now;
+        return cached;
+    }
+    
+    /**
+     * 解析玩家所属的组和免疫权限
+     */
+    private void resolve(Player player, CachedPermissions cached) {
+        resolutions++;
+        cached.group = defaultConfig;
+        for (int i = 0; i < groupNodes.length; i++) {
+            if (player.hasPermission(groupNodes[i])) {
+                cached.group = groupEntries[i];
+                break;
+            }
+        }
+        cached.disasterBypass = player.hasPermission(DISASTER_BYPASS_PERMISSION);
+    }
+    
+    /**
+     * 使玩家的权限缓存失效，下次查询时重新解析
+     * 权限插件修改玩家的组或权限后可以调用此方法
+     * @param player 玩家
+     */
+    public void invalidate(Player player) {
+        cache.remove(player.getUniqueId());
+    }
+    
+    /**
+     * 使所有玩家的权限缓存失效
+     */
+    public void invalidateAll() {
+        cache.clear();
+        version++;
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        invalidate(event.getPlayer());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        // 按世界授予的权限可能不同
+        invalidate(event.getPlayer());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        invalidate(event.getPlayer());
+    }
+    
+    public long getCacheHits() {
+        return cacheHits;
+    }
+    
+    public long getResolutions() {
+        return resolutions;
+    }
+    
+    public int getCachedPlayerCount() {
+        return cache.size();
+    }
+    
+    /**
+     * 检查是否有玩家组单独禁用了指定效果
+     * 没有任何组禁用时，除免疫所有效果外无需逐个检查
+     * @param effectName 效果名称
+     * @return 是否被某个组禁用
+     */
+    public boolean isEffectRestricted(String effectName) {
+        for (GroupEffectConfig config : groupConfigs.values()) {
+            if (!config.isEffectEnabled(effectName)) {
+                return true;
+            }
+        }
+        return false;
     }
     
     /**
@@ -90,6 +238,16 @@ public class PermissionManager {
         return groupConfigs.keySet();
     }
     
+    /**
+     * 玩家的缓存权限
+     */
+    private static class CachedPermissions {
+        private int version;
+        private long resolvedAt;
+        private GroupEffectConfig group;
+        private boolean disasterBypass;
+    }
+    
     /**
      * 玩家组效果配置类
      */
@@ -132,6 +290,15 @@ public class PermissionManager {
             return effectPermissions.containsKey(effectName) && !effectPermissions.get(effectName);
         }
         
+        /**
+         * 检查组是否启用了指定效果（不考虑免疫所有效果）
+         * @param effectName 效果名称
+         * @return 是否启用
+         */
+        public boolean isEffectEnabled(String effectName) {
+            return effectPermissions.getOrDefault(effectName, true);
+        }
+        
         /**
          * 获取效果强度乘数
          * @return 强度乘数
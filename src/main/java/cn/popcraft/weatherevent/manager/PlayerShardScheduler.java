@@ -0,0 +1,178 @@
+package cn.popcraft.weatherevent.manager;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * 玩家分片调度器
+ * 按UUID的稳定哈希把玩家分散到更新间隔内的各个tick，每个玩家每个间隔仍只处理一次；
+ * 每tick的处理时间受预算限制，未处理完的玩家顺延到下一tick
+ */
+public class PlayerShardScheduler {
+    private final Consumer<Player> processor;
+    private final int interval;
+    private final long tickBudgetNanos;
+    private final List<List<UUID>> shards;
+
+    // 等待处理的玩家（包括上一tick顺延下来的）
+    private final ArrayDeque<UUID> pending;
+    private final Set<UUID> pendingSet;
+
+    private long tickCounter;
+    private long overrunTicks;      // 预算耗尽仍有剩余工作的tick数
+    private long carriedOverPlayers; // 累计顺延到下一tick的玩家数
+    private long laggingPlayers;    // 轮到分片时上一轮仍未处理的玩家数
+    private long lastTickNanos;
+    private long maxTickNanos;
+
+    /**
+     * 创建分片调度器
+     * @param processor 处理单个玩家的回调
+     * @param interval 更新间隔（tick），同时也是分片数量
+     * @param tickBudgetNanos 每tick的处理时间预算（纳秒）
+     */
+    public PlayerShardScheduler(Consumer<Player> processor, int interval, long tickBudgetNanos) {
+        this.processor = processor;
+        this.interval = Math.max(1, interval);
+        this.tickBudgetNanos = Math.max(0, tickBudgetNanos);
+        this.shards = new ArrayList<>(this.interval);
+        for (int i = 0; i < this.interval; i++) {
+            shards.add(new ArrayList<>());
+        }
+        this.pending = new ArrayDeque<>();
+        this.pendingSet = new HashSet<>();
+    }
+
+    /**
+     * 计算玩家所属分片
+     * 只依赖UUID，保证玩家在整个会话中始终落在同一分片
+     * @param playerId 玩家UUID
+     * @return 分片索引
+     */
+    public int shardOf(UUID playerId) {
+        long bits = playerId.getMostSignificantBits() ^ playerId.getLeastSignificantBits();
+        int hash = (int) (bits ^ (bits >>> 32));
+        hash ^= (hash >>> 16);
+        return Math.floorMod(hash, interval);
+    }
+
+    /**
+     * 添加玩家到对应分片
+     * @param player 玩家
+     */
+    public void addPlayer(Player player) {
+        UUID playerId = player.getUniqueId();
+        List<UUID> shard = shards.get(shardOf(playerId));
+        if (!shard.contains(playerId)) {
+            shard.add(playerId);
+        }
+    }
+
+    /**
+     * 从分片中移除玩家
+     * @param player 玩家
+     */
+    public void removePlayer(Player player) {
+        UUID playerId = player.getUniqueId();
+        shards.get(shardOf(playerId)).remove(playerId);
+        if (pendingSet.remove(playerId)) {
+            pending.remove(playerId);
+        }
+    }
+
+    /**
+     * 执行一个tick的工作
+     * 将当前分片的玩家加入待处理队列，并在预算内尽量处理队列中的玩家
+     */
+    public void tick() {
+        int shard = (int) (tickCounter++ % interval);
+        for (UUID playerId : shards.get(shard)) {
+            if (pendingSet.add(playerId)) {
+                pending.addLast(playerId);
+            } else {
+                laggingPlayers++;
+            }
+        }
+
+        if (pending.isEmpty()) {
+            lastTickNanos = 0;
+            return;
+        }
+
+        long start = System.nanoTime();
+        long elapsed;
+        // 每tick至少处理一个玩家，保证在预算极小时也能推进
+        do {
+            UUID playerId = pending.pollFirst();
+            pendingSet.remove(playerId);
+
+            Player player = Bukkit.getPlayer(playerId);
+            if (player != null && player.isOnline()) {
+                processor.accept(player);
+            }
+            elapsed = System.nanoTime() - start;
+        } while (!pending.isEmpty() && elapsed < tickBudgetNanos);
+
+        lastTickNanos = elapsed;
+        if (elapsed > maxTickNanos) {
+            maxTickNanos = elapsed;
+        }
+
+        if (!pending.isEmpty()) {
+            overrunTicks++;
+            carriedOverPlayers += pending.size();
+        }
+    }
+
+    /**
+     * 获取各分片的玩家数量
+     * @return 分片大小数组
+     */
+    public int[] getShardSizes() {
+        int[] sizes = new int[interval];
+        for (int i = 0; i < interval; i++) {
+            sizes[i] = shards.get(i).size();
+        }
+        return sizes;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    public long getTickBudgetNanos() {
+        return tickBudgetNanos;
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public long getOverrunTicks() {
+        return overrunTicks;
+    }
+
+    public long getCarriedOverPlayers() {
+        return carriedOverPlayers;
+    }
+
+    public long getLaggingPlayers() {
+        return laggingPlayers;
+    }
+
+    public long getLastTickNanos() {
+        return lastTickNanos;
+    }
+
+    public long getMaxTickNanos() {
+        return maxTickNanos;
+    }
+}
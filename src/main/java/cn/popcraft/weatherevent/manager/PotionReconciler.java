@@ -0,0 +1,202 @@
+package cn.popcraft.weatherevent.manager;
+
+import org.bukkit.entity.Player;
+import org.bukkit.potion.PotionEffect;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 药水效果协调器
+ * 对比期望的药水效果和玩家当前的效果，只有在效果缺失、等级不同或剩余时间低于刷新阈值时才重新发送，
+ * 避免每次更新都向客户端发送相同的药水效果数据包
+ */
+public class PotionReconciler {
+    private boolean enabled;
+    private int refreshThresholdTicks;
+
+    // 每个玩家的发送/跳过统计
+    private final Map<UUID, PlayerPotionStatistics> playerStatistics;
+    private long totalSent;
+    private long totalSkipped;
+
+    public PotionReconciler() {
+        this.enabled = true;
+        this.refreshThresholdTicks = 40;
+        this.playerStatistics = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * 设置协调参数
+     * @param enabled 是否启用比较，关闭时总是发送
+     * @param refreshThresholdTicks 剩余时间低于此值（tick）时刷新效果
+     */
+    public void configure(boolean enabled, int refreshThresholdTicks) {
+        this.enabled = enabled;
+        this.refreshThresholdTicks = Math.max(0, refreshThresholdTicks);
+    }
+
+    /**
+     * 按需为玩家应用药水效果
+     * @param player 玩家
+     * @param effect 期望的药水效果
+     * @return 是否实际发送了效果
+     */
+    public boolean apply(Player player, PotionEffect effect) {
+        return apply(player, effect, false);
+    }
+
+    /**
+     * 按需为玩家应用药水效果
+     * @param player 玩家
+     * @param effect 期望的药水效果
+     * @param force 是否强制覆盖现有效果
+     * @return 是否实际发送了效果
+     */
+    public boolean apply(Player player, PotionEffect effect, boolean force) {
+        return apply(player, effect, force, refreshThresholdTicks);
+    }
+
+    @SuppressWarnings("deprecation") // addPotionEffect(effect, force) 在新版本中已弃用
+    private boolean apply(Player player, PotionEffect effect, boolean force, int thresholdTicks) {
+        PlayerPotionStatistics stats = playerStatistics.computeIfAbsent(
+            player.getUniqueId(),
+            id -> new PlayerPotionStatistics(id, player.getName())
+        );
+
+        if (enabled && isUpToDate(player.getPotionEffect(effect.getType()), effect, thresholdTicks)) {
+            stats.skipped++;
+            totalSkipped++;
+            return false;
+        }
+
+        if (force) {
+            player.addPotionEffect(effect, true);
+        } else {
+            player.addPotionEffect(effect);
+        }
+        stats.sent++;
+        totalSent++;
+        return true;
+    }
+
+    /**
+     * 按需为玩家应用一组药水效果
+     * @param player 玩家
+     * @param effects 期望的药水效果
+     */
+    public void applyAll(Player player, Collection<PotionEffect> effects) {
+        for (PotionEffect effect : effects) {
+            apply(player, effect, false);
+        }
+    }
+
+    /**
+     * 按需为玩家应用一组按固定间隔重新应用的药水效果
+     * 剩余时间不足一个间隔时也会刷新，保证下一次应用之前效果不会中断
+     * @param player 玩家
+     * @param effects 期望的药水效果
+     * @param intervalTicks 重新应用的间隔（tick）
+     */
+    public void applyAll(Player player, Collection<PotionEffect> effects, int intervalTicks) {
+        int thresholdTicks = Math.max(refreshThresholdTicks, intervalTicks + 1);
+        for (PotionEffect effect : effects) {
+            apply(player, effect, false, thresholdTicks);
+        }
+    }
+
+    /**
+     * 检查玩家当前的效果是否已满足期望
+     * @param active 玩家当前的同类型效果
+     * @param desired 期望的效果
+     * @param thresholdTicks 刷新阈值（tick）
+     * @return 是否无需重新发送
+     */
+    private boolean isUpToDate(PotionEffect active, PotionEffect desired, int thresholdTicks) {
+        if (active == null || active.getAmplifier() != desired.getAmplifier()) {
+            return false;
+        }
+        // 负数持续时间表示无限时长
+        return active.getDuration() < 0 || active.getDuration() >= thresholdTicks;
+    }
+
+    /**
+     * 清除玩家的统计
+     * @param player 玩家
+     */
+    public void clearPlayer(Player player) {
+        playerStatistics.remove(player.getUniqueId());
+    }
+
+    /**
+     * 获取节省数据包最多的玩家
+     * @param limit 最大数量
+     * @return 按跳过次数降序排列的玩家统计
+     */
+    public List<PlayerPotionStatistics> getTopSavings(int limit) {
+        List<PlayerPotionStatistics> result = new ArrayList<>(playerStatistics.values());
+        result.sort(Comparator.comparingLong(PlayerPotionStatistics::getSkipped).reversed());
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    public PlayerPotionStatistics getPlayerStatistics(UUID playerId) {
+        return playerStatistics.get(playerId);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getRefreshThresholdTicks() {
+        return refreshThresholdTicks;
+    }
+
+    public long getTotalSent() {
+        return totalSent;
+    }
+
+    public long getTotalSkipped() {
+        return totalSkipped;
+    }
+
+    /**
+     * 玩家药水效果发送统计
+     */
+    public static class PlayerPotionStatistics {
+        private final UUID playerId;
+        private final String playerName;
+        private long sent;    // 实际发送次数
+        private long skipped; // 因效果仍然有效而跳过的次数
+
+        public PlayerPotionStatistics(UUID playerId, String playerName) {
+            this.playerId = playerId;
+            this.playerName = playerName;
+        }
+
+        public UUID getPlayerId() {
+            return playerId;
+        }
+
+        public String getPlayerName() {
+            return playerName;
+        }
+
+        public long getSent() {
+            return sent;
+        }
+
+        public long getSkipped() {
+            return skipped;
+        }
+
+        public double getSavingRate() {
+            long total = sent + skipped;
+            return total == 0 ? 0.0 : (double) skipped / total;
+        }
+    }
+}
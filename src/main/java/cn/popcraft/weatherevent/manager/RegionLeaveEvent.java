@@ -0,0 +1,64 @@
+package cn.popcraft.weatherevent.manager;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+
+/**
+ * 区域离开事件
+ * 当玩家离开配置的区域时触发；区域重叠时每个被离开的区域各触发一次
+ */
+public class RegionLeaveEvent extends Event {
+    
+    private static final HandlerList handlers = new HandlerList();
+    
+    private final Player player;
+    private final RegionManager.RegionConfig region;
+    private final Location location;
+    
+    /**
+     * 创建区域离开事件
+     * @param player 玩家
+     * @param region 区域
+     * @param location 玩家离开区域时的位置
+     */
+    public RegionLeaveEvent(Player player, RegionManager.RegionConfig region, Location location) {
+        this.player = player;
+        this.region = region;
+        this.location = location;
+    }
+    
+    /**
+     * 获取玩家
+     * @return 玩家
+     */
+    public Player getPlayer() {
+        return player;
+    }
+    
+    /**
+     * 获取区域
+     * @return 区域
+     */
+    public RegionManager.RegionConfig getRegion() {
+        return region;
+    }
+    
+    /**
+     * 获取玩家离开区域时的位置，传送时为目标位置
+     * @return 位置
+     */
+    public Location getLocation() {
+        return location;
+    }
+    
+    @Override
+    public HandlerList getHandlers() {
+        return handlers;
+    }
+    
+    public static HandlerList getHandlerList() {
+        return handlers;
+    }
+}
@@ -6,29 +6,89 @@ import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
 
 import java.util.*;
 
 /**
  * 区域管理器
- * 用于管理基于世界或区域的效果配置
+ * 用于管理基于世界或区域的效果配置。
+ * 区域按世界建立以区块为单位的网格索引，重叠时优先级高者生效，优先级相同时范围小者生效。
+ * 玩家所在的区域集合随移动、传送事件增量更新，跨越方块边界时才重新查找，
+ * 集合变化时触发 {@link RegionEnterEvent} 和 {@link RegionLeaveEvent}。只能在主线程使用
  */
-public class RegionManager {
+public class RegionManager implements Listener {
+    private static final RegionConfig[] NO_REGIONS = new RegionConfig[0];
+    
+    // 覆盖超过此数量区块的区域不放入网格，每次查询单独检查
+    private static final int MAX_INDEXED_CHUNKS = 4096;
+    
+    // 重叠区域的优先顺序：优先级高者在前，优先级相同时体积小者在前
+    private static final Comparator<RegionConfig> PRIORITY_ORDER =
+        Comparator.comparingInt(RegionConfig::getPriority).reversed()
+            .thenComparingLong(RegionConfig::getVolume);
+    
     private final WeatherEvent plugin;
     private final Map<String, WorldConfig> worldConfigs;
     private final Map<String, RegionConfig> regionConfigs;
     
+    // 每个世界的区域索引，第一次查询该世界时建立
+    private final Map<String, RegionIndex> worldIndexes;
+    
+    // 玩家所在区域缓存
+    private final Map<UUID, Membership> memberships;
+    private final Location scratchLocation = new Location(null, 0, 0, 0);
+    private int version; // 配置重新加载时递增，使所有缓存失效
+    
+    private long membershipHits;      // 直接使用已跟踪区域的次数
+    private long membershipRecomputes; // 重新查找玩家所在区域的次数
+    private long enterEvents;         // 触发的区域进入事件数
+    private long leaveEvents;         // 触发的区域离开事件数
+    
     public RegionManager(WeatherEvent plugin) {
         this.plugin = plugin;
         this.worldConfigs = new HashMap<>();
-        this.regionConfigs = new HashMap<>();
+        this.regionConfigs = new LinkedHashMap<>();
+        this.worldIndexes = new HashMap<>();
+        this.memberships = new HashMap<>();
         loadConfigs();
     }
     
+    /**
+     * 重新加载世界和区域配置
+     * 保留玩家原来所在的区域，重新查找后只对实际进入或离开的区域触发事件
+     */
+    public void reload() {
+        worldConfigs.clear();
+        regionConfigs.clear();
+        loadConfigs();
+        
+        // 立即刷新已跟踪的玩家，区域被删除或全部移除时也能触发离开事件
+        for (UUID playerId : new ArrayList<>(memberships.keySet())) {
+            Player player = Bukkit.getPlayer(playerId);
+            if (player == null) {
+                memberships.remove(playerId);
+            } else {
+                updatePlayer(player, player.getLocation(scratchLocation));
+            }
+        }
+    }
+    
     /**
      * 加载世界和区域配置
      */
     private void loadConfigs() {
+        worldIndexes.clear();
+        // 只使缓存失效，保留玩家原来所在的区域用于比较
+        version++;
+        
         // 加载世界配置
         ConfigurationSection worldsSection = plugin.getConfig().getConfigurationSection("worlds");
         if (worldsSection != null) {
@@ -87,20 +147,232 @@ public class RegionManager {
     
     /**
      * 获取玩家所在区域的配置
+     * 返回移动事件跟踪的结果，玩家尚未被跟踪或配置重新加载后才查找一次
      * @param player 玩家
      * @return 区域配置，如果没有找到则返回null
      */
     public RegionConfig getPlayerRegionConfig(Player player) {
-        Location location = player.getLocation();
+        if (regionConfigs.isEmpty()) {
+            return null;
+        }
         
-        // 检查所有区域配置
+        Membership membership = memberships.get(player.getUniqueId());
+        if (membership != null && membership.version == version) {
+            membershipHits++;
+            return membership.region;
+        }
+        return updatePlayer(player, player.getLocation(scratchLocation)).region;
+    }
+    
+    /**
+     * 获取玩家当前所在的所有区域，按优先顺序排列
+     * @param player 玩家
+     * @return 区域列表
+     */
+    public List<RegionConfig> getPlayerRegions(Player player) {
+        if (regionConfigs.isEmpty()) {
+            return Collections.emptyList();
+        }
+        
+        Membership membership = memberships.get(player.getUniqueId());
+        if (membership == null || membership.version != version) {
+            membership = updatePlayer(player, player.getLocation(scratchLocation));
+        }
+        return Collections.unmodifiableList(Arrays.asList(membership.regions));
+    }
+    
+    /**
+     * 按玩家的新位置更新其所在区域，区域集合变化时触发离开和进入事件
+     * @param player 玩家
+     * @param location 新位置
+     * @return 玩家的区域状态
+     */
+    private Membership updatePlayer(Player player, Location location) {
+        Membership membership = memberships.get(player.getUniqueId());
+        if (membership == null) {
+            membership = new Membership();
+            memberships.put(player.getUniqueId(), membership);
+        }
+        
+        World world = location.getWorld();
+        int x = location.getBlockX();
+        int y = location.getBlockY();
+        int z = location.getBlockZ();
+        if (membership.version == version && membership.world == world &&
+            membership.x == x && membership.y == y && membership.z == z) {
+            return membership;
+        }
+        
+        membershipRecomputes++;
+        RegionConfig[] previous = membership.regions;
+        RegionConfig[] current = regionConfigs.isEmpty() ? NO_REGIONS : getIndex(world).findAll(x, y, z);
+        membership.version = version;
+        membership.world = world;
+        membership.x = x;
+        membership.y = y;
+        membership.z = z;
+        membership.regions = current;
+        membership.region = current.length > 0 ? current[0] : null;
+        
+        // 先更新状态再触发事件，监听器中查询到的已是新区域
+        if (previous.length > 0 || current.length > 0) {
+            for (RegionConfig region : previous) {
+                if (!containsRegion(current, region)) {
+                    leaveEvents++;
+                    Bukkit.getPluginManager().callEvent(new RegionLeaveEvent(player, region, location.clone()));
+                }
+            }
+            for (RegionConfig region : current) {
+                if (!containsRegion(previous, region)) {
+                    enterEvents++;
+                    Bukkit.getPluginManager().callEvent(new RegionEnterEvent(player, region, location.clone()));
+                }
+            }
+        }
+        return membership;
+    }
+    
+    /**
+     * 检查区域数组中是否有同名区域
+     * 配置重新加载后区域对象会被替换，而玩家原来的区域集合仍是旧对象，因此按名称比较
+     */
+    private static boolean containsRegion(RegionConfig[] regions, RegionConfig region) {
+        for (RegionConfig candidate : regions) {
+            if (candidate.getName().equals(region.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 玩家移动时更新所在区域，没有跨越方块边界时直接返回
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerMove(PlayerMoveEvent event) {
+        Location to = event.getTo();
+        if (to == null || regionConfigs.isEmpty()) {
+            return;
+        }
+        Location from = event.getFrom();
+        if (from.getBlockX() == to.getBlockX() && from.getBlockY() == to.getBlockY() &&
+            from.getBlockZ() == to.getBlockZ() && from.getWorld() == to.getWorld()) {
+            return;
+        }
+        updatePlayer(event.getPlayer(), to);
+    }
+    
+    /**
+     * 玩家传送时更新所在区域
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(PlayerTeleportEvent event) {
+        if (event.getTo() != null && !regionConfigs.isEmpty()) {
+            updatePlayer(event.getPlayer(), event.getTo());
+        }
+    }
+    
+    /**
+     * 玩家重生时更新所在区域
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerRespawn(PlayerRespawnEvent event) {
+        if (!regionConfigs.isEmpty()) {
+            updatePlayer(event.getPlayer(), event.getRespawnLocation());
+        }
+    }
+    
+    /**
+     * 玩家加入时确定所在区域
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        if (!regionConfigs.isEmpty()) {
+            updatePlayer(event.getPlayer(), event.getPlayer().getLocation());
+        }
+    }
+    
+    /**
+     * 玩家退出时清除其区域状态
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        clearPlayer(event.getPlayer());
+    }
+    
+    /**
+     * 获取方块坐标处生效的区域
+     * @param world 世界
+     * @param x 方块X坐标
+     * @param y 方块Y坐标
+     * @param z 方块Z坐标
+     * @return 区域配置，如果没有找到则返回null
+     */
+    public RegionConfig getRegionAt(World world, int x, int y, int z) {
+        if (regionConfigs.isEmpty()) {
+            return null;
+        }
+        return getIndex(world).find(x, y, z);
+    }
+    
+    private RegionIndex getIndex(World world) {
+        RegionIndex index = worldIndexes.get(world.getName());
+        if (index == null) {
+            index = buildIndex(world.getName());
+            worldIndexes.put(world.getName(), index);
+        }
+        return index;
+    }
+    
+    /**
+     * 为世界建立区域索引
+     * @param worldName 世界名称
+     * @return 区域索引
+     */
+    private RegionIndex buildIndex(String worldName) {
+        List<RegionConfig> regions = new ArrayList<>();
         for (RegionConfig config : regionConfigs.values()) {
-            if (config.isInRegion(location)) {
-                return config;
+            if (config.getWorldName().isEmpty() || config.getWorldName().equals(worldName)) {
+                regions.add(config);
             }
         }
+        // 排序稳定，完全相同的区域按配置顺序
+        regions.sort(PRIORITY_ORDER);
         
-        return null;
+        RegionIndex index = new RegionIndex();
+        Map<Long, List<RegionConfig>> buckets = new HashMap<>();
+        List<RegionConfig> large = new ArrayList<>();
+        for (RegionConfig config : regions) {
+            int minChunkX = config.minX >> 4;
+            int maxChunkX = config.maxX >> 4;
+            int minChunkZ = config.minZ >> 4;
+            int maxChunkZ = config.maxZ >> 4;
+            long chunkCount = (long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1);
+            if (chunkCount > MAX_INDEXED_CHUNKS) {
+                large.add(config);
+                continue;
+            }
+            for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                    buckets.computeIfAbsent(LongObjectMap.pack(chunkX, chunkZ), k -> new ArrayList<>()).add(config);
+                }
+            }
+        }
+        
+        index.buckets = new LongObjectMap<>(buckets.size());
+        for (Map.Entry<Long, List<RegionConfig>> entry : buckets.entrySet()) {
+            index.buckets.put(entry.getKey(), entry.getValue().toArray(new RegionConfig[0]));
+        }
+        index.large = large.toArray(new RegionConfig[0]);
+        return index;
+    }
+    
+    /**
+     * 清除玩家的区域缓存
+     * @param player 玩家
+     */
+    public void clearPlayer(Player player) {
+        memberships.remove(player.getUniqueId());
     }
     
     /**
@@ -114,6 +386,21 @@ public class RegionManager {
         return config == null || config.isEffectEnabled(effectName);
     }
     
+    /**
+     * 检查是否有区域单独禁用了指定效果
+     * 没有任何区域禁用时无需查找玩家所在区域
+     * @param effectName 效果名称
+     * @return 是否被某个区域禁用
+     */
+    public boolean isEffectRestrictedInRegions(String effectName) {
+        for (RegionConfig config : regionConfigs.values()) {
+            if (!config.isEffectEnabled(effectName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
     /**
      * 获取区域的效果乘数
      * @param player 玩家
@@ -124,6 +411,108 @@ public class RegionManager {
         return config != null ? config.getEffectMultiplier() : 1.0;
     }
     
+    public int getRegionCount() {
+        return regionConfigs.size();
+    }
+    
+    public int getIndexedWorldCount() {
+        return worldIndexes.size();
+    }
+    
+    public long getMembershipHits() {
+        return membershipHits;
+    }
+    
+    public long getMembershipRecomputes() {
+        return membershipRecomputes;
+    }
+    
+    public long getEnterEvents() {
+        return enterEvents;
+    }
+    
+    public long getLeaveEvents() {
+        return leaveEvents;
+    }
+    
+    /**
+     * 单个世界的区域索引
+     * 每个区块桶中的区域已按优先顺序排列，第一个包含该坐标的区域即为结果
+     */
+    private static class RegionIndex {
+        private LongObjectMap<RegionConfig[]> buckets;
+        private RegionConfig[] large; // 范围过大、不放入网格的区域
+        
+        RegionConfig find(int x, int y, int z) {
+            RegionConfig best = null;
+            RegionConfig[] bucket = buckets.get(LongObjectMap.pack(x >> 4, z >> 4));
+            if (bucket != null) {
+                for (RegionConfig config : bucket) {
+                    if (config.contains(x, y, z)) {
+                        best = config;
+                        break;
+                    }
+                }
+            }
+            for (RegionConfig config : large) {
+                if (best != null && PRIORITY_ORDER.compare(config, best) >= 0) {
+                    break;
+                }
+                if (config.contains(x, y, z)) {
+                    best = config;
+                    break;
+                }
+            }
+            return best;
+        }
+        
+        /**
+         * 查找包含坐标的所有区域
+         * @return 按优先顺序排列的区域，没有时返回空数组
+         */
+        RegionConfig[] findAll(int x, int y, int z) {
+            List<RegionConfig> result = null;
+            RegionConfig[] bucket = buckets.get(LongObjectMap.pack(x >> 4, z >> 4));
+            if (bucket != null) {
+                for (RegionConfig config : bucket) {
+                    if (config.contains(x, y, z)) {
+                        if (result == null) result = new ArrayList<>(2);
+                        result.add(config);
+                    }
+                }
+            }
+            boolean merged = false;
+            for (RegionConfig config : large) {
+                if (config.contains(x, y, z)) {
+                    if (result == null) {
+                        result = new ArrayList<>(2);
+                    } else {
+                        merged = true;
+                    }
+                    result.add(config);
+                }
+            }
+            if (result == null) {
+                return NO_REGIONS;
+            }
+            if (merged) {
+                result.sort(PRIORITY_ORDER);
+            }
+            return result.toArray(NO_REGIONS);
+        }
+    }
+    
+    /**
+     * 玩家所在的方块和区域
+     */
+    private static class Membership {
+        private int version;
+        private World world;
+        private int x, y, z;
+        private RegionConfig[] regions = NO_REGIONS; // 包含玩家的所有区域，按优先顺序
+        private RegionConfig region; // 生效的区域
+    }
+    
     /**
      * 世界配置类
      */
@@ -168,13 +557,17 @@ public class RegionManager {
      * 区域配置类
      */
     public static class RegionConfig {
+        private String name;
         private String worldName;
+        private int priority;
         private int minX, minY, minZ;
         private int maxX, maxY, maxZ;
         private double effectMultiplier;
         private Map<String, Boolean> effectPermissions;
+        private Set<String> disabledEffects = Collections.emptySet();
         
         public RegionConfig() {
+            this.name = "";
             this.worldName = "";
             this.minX = this.minY = this.minZ = 0;
             this.maxX = this.maxY = this.maxZ = 0;
@@ -183,7 +576,9 @@ public class RegionManager {
         }
         
         public RegionConfig(ConfigurationSection config) {
+            this.name = config.getName();
             this.worldName = config.getString("world", "");
+            this.priority = config.getInt("priority", 0);
             this.effectMultiplier = config.getDouble("effect-multiplier", 1.0);
             
             // 加载区域坐标
@@ -223,6 +618,14 @@ public class RegionManager {
                     effectPermissions.put(effectName, effectsSection.getBoolean(effectName, true));
                 }
             }
+            
+            Set<String> disabled = new HashSet<>();
+            for (Map.Entry<String, Boolean> entry : effectPermissions.entrySet()) {
+                if (!entry.getValue()) {
+                    disabled.add(entry.getKey());
+                }
+            }
+            this.disabledEffects = Collections.unmodifiableSet(disabled);
         }
         
         /**
@@ -237,9 +640,40 @@ public class RegionManager {
             }
             
             // 检查坐标范围
-            return location.getBlockX() >= minX && location.getBlockX() <= maxX &&
-                   location.getBlockY() >= minY && location.getBlockY() <= maxY &&
-                   location.getBlockZ() >= minZ && location.getBlockZ() <= maxZ;
+            return contains(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+        }
+        
+        /**
+         * 检查方块坐标是否在区域范围内，不检查世界
+         * @param x 方块X坐标
+         * @param y 方块Y坐标
+         * @param z 方块Z坐标
+         * @return 是否在区域内
+         */
+        public boolean contains(int x, int y, int z) {
+            return x >= minX && x <= maxX &&
+                   y >= minY && y <= maxY &&
+                   z >= minZ && z <= maxZ;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public String getWorldName() {
+            return worldName;
+        }
+        
+        public int getPriority() {
+            return priority;
+        }
+        
+        /**
+         * 获取区域包含的方块数
+         * @return 体积
+         */
+        public long getVolume() {
+            return (long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
         }
         
         public double getEffectMultiplier() {
@@ -249,5 +683,13 @@ public class RegionManager {
         public boolean isEffectEnabled(String effectName) {
             return effectPermissions.getOrDefault(effectName, true);
         }
+        
+        /**
+         * 获取此区域禁用的效果
+         * @return 效果名称集合
+         */
+        public Set<String> getDisabledEffects() {
+            return disabledEffects;
+        }
     }
 }
\ No newline at end of file
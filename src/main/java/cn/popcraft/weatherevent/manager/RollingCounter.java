@@ -0,0 +1,217 @@
+package cn.popcraft.weatherevent.manager;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 滑动时间窗口计数器
+ * 每个窗口是固定 60 格的环形缓冲区，按秒计算所在的格，过期的格在下一次写入时清零。
+ * 记录为 O(1) 且不分配对象，读取时汇总窗口内的格
+ */
+public class RollingCounter {
+    private static final int BUCKETS = 60;
+
+    /**
+     * 统计窗口
+     */
+    public enum Window {
+        MINUTE("1分钟", 1),
+        QUARTER_HOUR("15分钟", 15),
+        HOUR("1小时", 60);
+
+        private final String displayName;
+        private final int bucketSeconds;
+
+        Window(String displayName, int bucketSeconds) {
+            this.displayName = displayName;
+            this.bucketSeconds = bucketSeconds;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        public int getSeconds() {
+            return bucketSeconds * BUCKETS;
+        }
+    }
+
+    private final Ring[] rings;
+    // 时间基准，秒数从创建时开始计算，避免 nanoTime 为负数
+    private final long baseNanos;
+    // 开始统计的时间（相对基准的纳秒），重置时更新，用于计算尚未填满的窗口的实际长度
+    private volatile long startNanos;
+
+    public RollingCounter() {
+        this.baseNanos = System.nanoTime();
+        this.startNanos = 0;
+        Window[] windows = Window.values();
+        this.rings = new Ring[windows.length];
+        for (int i = 0; i < windows.length; i++) {
+            rings[i] = new Ring(windows[i].bucketSeconds);
+        }
+    }
+
+    /**
+     * 相对创建时的纳秒数，使用单调时钟，不受系统时间调整影响
+     */
+    private long elapsedNanos() {
+        return System.nanoTime() - baseNanos;
+    }
+
+    /**
+     * 相对创建时的秒数
+     */
+    private long currentSecond() {
+        return Math.floorDiv(elapsedNanos(), 1_000_000_000L);
+    }
+
+    /**
+     * 记录一次触发
+     */
+    public void recordTrigger() {
+        long second = currentSecond();
+        for (Ring ring : rings) {
+            ring.increment(second, 0);
+        }
+    }
+
+    /**
+     * 记录一次成功应用
+     */
+    public void recordSuccess() {
+        long second = currentSecond();
+        for (Ring ring : rings) {
+            ring.increment(second, 1);
+        }
+    }
+
+    /**
+     * 获取窗口内的计数
+     * @param window 窗口
+     * @return 窗口统计快照
+     */
+    public WindowStatistics snapshot(Window window) {
+        long now = elapsedNanos();
+        // 创建或重置后不满一个窗口时，按实际经过的时间计算频率
+        double seconds = Math.min(window.getSeconds(), Math.max(1.0, (now - startNanos) / 1_000_000_000.0));
+        return rings[window.ordinal()].snapshot(Math.floorDiv(now, 1_000_000_000L), window, seconds);
+    }
+
+    /**
+     * 清空所有窗口
+     */
+    public void reset() {
+        for (Ring ring : rings) {
+            ring.reset();
+        }
+        startNanos = elapsedNanos();
+    }
+
+    /**
+     * 一个窗口的环形缓冲区
+     */
+    private static class Ring {
+        private final int bucketSeconds;
+        // 每格保存的时间段序号 + 1，0 表示从未使用
+        private final AtomicLongArray epochs = new AtomicLongArray(BUCKETS);
+        // 每格依次保存 [触发次数, 成功次数]
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS * 2);
+
+        Ring(int bucketSeconds) {
+            this.bucketSeconds = bucketSeconds;
+        }
+
+        void increment(long second, int offset) {
+            long epoch = Math.floorDiv(second, bucketSeconds);
+            int index = (int) Math.floorMod(epoch, BUCKETS);
+            if (epochs.get(index) != epoch + 1) {
+                rotate(index, epoch);
+            }
+            counts.incrementAndGet((index << 1) | offset);
+        }
+
+        /**
+         * 格进入新的时间段时清零，每格每个时间段只发生一次
+         */
+        private synchronized void rotate(int index, long epoch) {
+            if (epochs.get(index) != epoch + 1) {
+                counts.set(index << 1, 0);
+                counts.set((index << 1) | 1, 0);
+                // 先清零再发布新的时间段，看到新时间段的线程不会把计数写到清零之前
+                epochs.set(index, epoch + 1);
+            }
+        }
+
+        synchronized void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                epochs.set(i, 0);
+            }
+        }
+
+        WindowStatistics snapshot(long second, Window window, double seconds) {
+            long current = Math.floorDiv(second, bucketSeconds);
+            long triggers = 0;
+            long successes = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                long epoch = epochs.get(i) - 1;
+                if (epoch >= 0 && epoch > current - BUCKETS && epoch <= current) {
+                    successes += counts.get((i << 1) | 1);
+                    triggers += counts.get(i << 1);
+                }
+            }
+            return new WindowStatistics(window, seconds, Math.max(triggers, successes), successes);
+        }
+    }
+
+    /**
+     * 窗口统计信息（快照）
+     */
+    public static class WindowStatistics {
+        private final Window window;
+        private final double seconds;     // 窗口实际覆盖的秒数，不超过窗口长度
+        private final long triggerCount;
+        private final long successCount;
+
+        public WindowStatistics(Window window, double seconds, long triggerCount, long successCount) {
+            this.window = window;
+            this.seconds = seconds;
+            this.triggerCount = triggerCount;
+            this.successCount = successCount;
+        }
+
+        public Window getWindow() {
+            return window;
+        }
+
+        public long getTriggerCount() {
+            return triggerCount;
+        }
+
+        public long getSuccessCount() {
+            return successCount;
+        }
+
+        /**
+         * 获取窗口实际覆盖的秒数
+         * @return 秒数，创建或重置后不满一个窗口时小于窗口长度
+         */
+        public double getSeconds() {
+            return seconds;
+        }
+
+        /**
+         * 获取每分钟平均触发次数
+         * @return 触发频率
+         */
+        public double getTriggersPerMinute() {
+            return triggerCount * 60.0 / seconds;
+        }
+
+        public double getSuccessRate() {
+            if (triggerCount == 0) {
+                return 0.0;
+            }
+            return (double) successCount / triggerCount;
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package cn.popcraft.weatherevent.manager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * 统计数据的持久化文件
+ * 由一个快照文件和一个只追加的增量日志组成，都是带 CRC 校验的二进制格式：
+ * <ul>
+ *     <li>快照 snapshot.dat：完整的计数及其包含的最后一个日志序号，先写临时文件再原子替换</li>
+ *     <li>日志 journal.dat：每批增量一条记录，写入后立即刷到磁盘</li>
+ * </ul>
+ * 恢复时读取快照，再按顺序重放序号大于快照序号的日志记录，遇到不完整或校验失败的记录即停止并截断。
+ * 不是线程安全的，只能在统计 I/O 线程中使用
+ */
+public class StatisticsJournal {
+    private static final int SNAPSHOT_MAGIC = 0x57455353; // "WESS"
+    private static final int JOURNAL_MAGIC = 0x5745534A;  // "WESJ"
+    private static final int VERSION = 1;
+    private static final int JOURNAL_HEADER_SIZE = 8;
+    private static final int RECORD_OVERHEAD = 4 + 8 + 8; // 长度 + 序号 + CRC
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+
+    private final Logger logger;
+    private final Path snapshotFile;
+    private final Path snapshotTempFile;
+    private final Path journalFile;
+
+    private FileChannel journal;
+    private long sequence; // 最后写入的日志序号
+
+    public StatisticsJournal(File directory, Logger logger) {
+        this.logger = logger;
+        Path dir = directory.toPath();
+        this.snapshotFile = dir.resolve("snapshot.dat");
+        this.snapshotTempFile = dir.resolve("snapshot.dat.tmp");
+        this.journalFile = dir.resolve("journal.dat");
+    }
+
+    /**
+     * 恢复持久化的计数并打开日志
+     * @param into 恢复出的计数累加到这里
+     * @throws IOException 无法读取或打开文件
+     */
+    public void recover(Counts into) throws IOException {
+        Files.createDirectories(snapshotFile.getParent());
+        Files.deleteIfExists(snapshotTempFile);
+
+        long snapshotSequence = 0;
+        if (Files.exists(snapshotFile)) {
+            snapshotSequence = readSnapshot(into);
+        }
+        sequence = snapshotSequence;
+
+        journal = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (journal.size() < JOURNAL_HEADER_SIZE) {
+            resetJournal();
+            return;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(JOURNAL_HEADER_SIZE);
+        readFully(header, 0);
+        header.flip();
+        if (header.getInt() != JOURNAL_MAGIC || header.getInt() != VERSION) {
+            logger.warning("统计日志格式无法识别，已忽略: " + journalFile);
+            resetJournal();
+            return;
+        }
+
+        long position = JOURNAL_HEADER_SIZE;
+        long size = journal.size();
+        int replayed = 0;
+        ByteBuffer prefix = ByteBuffer.allocate(12);
+        while (size - position >= RECORD_OVERHEAD) {
+            prefix.clear();
+            readFully(prefix, position);
+            prefix.flip();
+            int length = prefix.getInt();
+            long recordSequence = prefix.getLong();
+            if (length < 0 || length > MAX_RECORD_SIZE || size - position < RECORD_OVERHEAD + (long) length) {
+                break;
+            }
+
+            ByteBuffer body = ByteBuffer.allocate(length + 8);
+            readFully(body, position + 12);
+            body.flip();
+            byte[] payload = new byte[length];
+            body.get(payload);
+            if (body.getLong() != checksum(recordSequence, payload)) {
+                break;
+            }
+
+            // 序号不大于快照序号的记录已经包含在快照中（压缩后、截断日志前崩溃）
+            if (recordSequence > snapshotSequence) {
+                decode(payload, into);
+                replayed++;
+            }
+            sequence = Math.max(sequence, recordSequence);
+            position += RECORD_OVERHEAD + length;
+        }
+
+        if (position < size) {
+            // 最后一条记录没有写完整，截断后继续追加
+            logger.warning("统计日志末尾有 " + (size - position) + " 字节不完整的数据，已截断");
+            journal.truncate(position);
+            journal.force(true);
+        }
+        if (replayed > 0) {
+            logger.info("已从统计日志恢复 " + replayed + " 批增量");
+        }
+    }
+
+    /**
+     * 读取快照
+     * @return 快照包含的最后一个日志序号，快照损坏时返回 0
+     */
+    private long readSnapshot(Counts into) throws IOException {
+        byte[] data = Files.readAllBytes(snapshotFile);
+        if (data.length >= 24) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            int magic = buffer.getInt();
+            int version = buffer.getInt();
+            long snapshotSequence = buffer.getLong();
+            byte[] payload = new byte[data.length - 24];
+            buffer.get(payload);
+            if (magic == SNAPSHOT_MAGIC && version == VERSION && buffer.getLong() == checksum(snapshotSequence, payload)) {
+                decode(payload, into);
+                return snapshotSequence;
+            }
+        }
+
+        // 快照是原子替换的，正常情况下不会损坏；保留原文件以便排查
+        Path corrupt = snapshotFile.resolveSibling("snapshot.dat.corrupt");
+        Files.move(snapshotFile, corrupt, StandardCopyOption.REPLACE_EXISTING);
+        logger.warning("统计快照校验失败，已移动到 " + corrupt + "，仅从日志恢复");
+        return 0;
+    }
+
+    /**
+     * 追加一批增量并刷到磁盘
+     * @param delta 增量
+     * @throws IOException 写入失败
+     */
+    public void append(Counts delta) throws IOException {
+        long recordSequence = sequence + 1;
+        byte[] payload = encode(delta);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + payload.length);
+        record.putInt(payload.length);
+        record.putLong(recordSequence);
+        record.put(payload);
+        record.putLong(checksum(recordSequence, payload));
+        record.flip();
+
+        long position = journal.size();
+        try {
+            while (record.hasRemaining()) {
+                position += journal.write(record, position);
+            }
+            journal.force(false);
+        } catch (IOException e) {
+            // 去掉写了一半的记录，避免后续记录接在损坏的数据后面
+            journal.truncate(position - record.position());
+            throw e;
+        }
+        sequence = recordSequence;
+    }
+
+    /**
+     * 把完整计数写成快照并清空日志
+     * @param totals 完整计数，必须包含已写入日志的所有增量
+     * @throws IOException 写入失败，原有的快照和日志保持不变
+     */
+    public void compact(Counts totals) throws IOException {
+        byte[] payload = encode(totals);
+        ByteBuffer buffer = ByteBuffer.allocate(24 + payload.length);
+        buffer.putInt(SNAPSHOT_MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(sequence);
+        buffer.put(payload);
+        buffer.putLong(checksum(sequence, payload));
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(snapshotTempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(snapshotTempFile, snapshotFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(snapshotTempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        // 快照已包含当前序号之前的所有记录，此后崩溃也不会重复计数
+        resetJournal();
+    }
+
+    /**
+     * 获取日志文件大小
+     * @return 字节数
+     */
+    public long getJournalSize() {
+        try {
+            return journal == null ? 0 : journal.size();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    public boolean isOpen() {
+        return journal != null && journal.isOpen();
+    }
+
+    /**
+     * 关闭日志文件
+     */
+    public void close() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                logger.warning("无法关闭统计日志: " + e.getMessage());
+            }
+        }
+    }
+
+    private void resetJournal() throws IOException {
+        journal.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(JOURNAL_HEADER_SIZE);
+        header.putInt(JOURNAL_MAGIC);
+        header.putInt(VERSION);
+        header.flip();
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += journal.write(header, position);
+        }
+        journal.force(true);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = journal.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("统计日志意外结束");
+            }
+            position += read;
+        }
+    }
+
+    private static long checksum(long recordSequence, byte[] payload) {
+        CRC32 crc = new CRC32();
+        ByteBuffer prefix = ByteBuffer.allocate(8);
+        prefix.putLong(recordSequence);
+        crc.update(prefix.array());
+        crc.update(payload);
+        return crc.getValue();
+    }
+
+    private static byte[] encode(Counts counts) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(counts.effects.size());
+        for (Map.Entry<String, long[]> entry : counts.effects.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getValue()[0]);
+            out.writeLong(entry.getValue()[1]);
+        }
+        out.writeInt(counts.players.size());
+        for (Map.Entry<UUID, PlayerCounts> entry : counts.players.entrySet()) {
+            PlayerCounts player = entry.getValue();
+            out.writeLong(entry.getKey().getMostSignificantBits());
+            out.writeLong(entry.getKey().getLeastSignificantBits());
+            out.writeUTF(player.name == null ? "" : player.name);
+            out.writeInt(player.effects.size());
+            for (Map.Entry<String, long[]> effect : player.effects.entrySet()) {
+                out.writeUTF(effect.getKey());
+                out.writeLong(effect.getValue()[0]);
+                out.writeLong(effect.getValue()[1]);
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void decode(byte[] payload, Counts into) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        int effectCount = in.readInt();
+        for (int i = 0; i < effectCount; i++) {
+            into.addEffect(in.readUTF(), in.readLong(), in.readLong());
+        }
+        int playerCount = in.readInt();
+        for (int i = 0; i < playerCount; i++) {
+            UUID playerId = new UUID(in.readLong(), in.readLong());
+            String name = in.readUTF();
+            int count = in.readInt();
+            for (int j = 0; j < count; j++) {
+                into.addPlayer(playerId, name, in.readUTF(), in.readLong(), in.readLong());
+            }
+        }
+    }
+
+    /**
+     * 一组计数，既用于完整快照，也用于两次写入之间的增量（增量可以为负，例如重置之后）
+     */
+    public static class Counts {
+        // 效果ID -> [触发次数, 成功次数]
+        final Map<String, long[]> effects = new LinkedHashMap<>();
+        final Map<UUID, PlayerCounts> players = new LinkedHashMap<>();
+
+        void addEffect(String effectId, long triggers, long successes) {
+            long[] counts = effects.computeIfAbsent(effectId, id -> new long[2]);
+            counts[0] += triggers;
+            counts[1] += successes;
+        }
+
+        void addPlayer(UUID playerId, String name, String effectId, long triggers, long successes) {
+            PlayerCounts player = players.computeIfAbsent(playerId, id -> new PlayerCounts(name));
+            player.name = name;
+            long[] counts = player.effects.computeIfAbsent(effectId, id -> new long[2]);
+            counts[0] += triggers;
+            counts[1] += successes;
+        }
+
+        /**
+         * 计算相对于上一次写入的增量
+         * @param previous 上一次写入时的完整计数
+         * @return 增量，只包含发生变化的条目
+         */
+        Counts subtract(Counts previous) {
+            Counts delta = new Counts();
+            subtractInto(effects, previous.effects, delta.effects);
+            for (Map.Entry<UUID, PlayerCounts> entry : players.entrySet()) {
+                PlayerCounts old = previous.players.get(entry.getKey());
+                PlayerCounts player = new PlayerCounts(entry.getValue().name);
+                subtractInto(entry.getValue().effects, old == null ? null : old.effects, player.effects);
+                if (!player.effects.isEmpty()) {
+                    delta.players.put(entry.getKey(), player);
+                }
+            }
+            for (Map.Entry<UUID, PlayerCounts> entry : previous.players.entrySet()) {
+                if (!players.containsKey(entry.getKey())) {
+                    PlayerCounts player = new PlayerCounts(entry.getValue().name);
+                    subtractInto(null, entry.getValue().effects, player.effects);
+                    if (!player.effects.isEmpty()) {
+                        delta.players.put(entry.getKey(), player);
+                    }
+                }
+            }
+            return delta;
+        }
+
+        private static void subtractInto(Map<String, long[]> current, Map<String, long[]> previous, Map<String, long[]> delta) {
+            if (current != null) {
+                for (Map.Entry<String, long[]> entry : current.entrySet()) {
+                    long[] old = previous == null ? null : previous.get(entry.getKey());
+                    long triggers = entry.getValue()[0] - (old == null ? 0 : old[0]);
+                    long successes = entry.getValue()[1] - (old == null ? 0 : old[1]);
+                    if (triggers != 0 || successes != 0) {
+                        delta.put(entry.getKey(), new long[] {triggers, successes});
+                    }
+                }
+            }
+            if (previous != null) {
+                for (Map.Entry<String, long[]> entry : previous.entrySet()) {
+                    if (current == null || !current.containsKey(entry.getKey())) {
+                        long[] old = entry.getValue();
+                        if (old[0] != 0 || old[1] != 0) {
+                            delta.put(entry.getKey(), new long[] {-old[0], -old[1]});
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * 去掉计数为零的条目（重放包含重置的增量之后）
+         */
+        void removeEmpty() {
+            effects.values().removeIf(counts -> counts[0] == 0 && counts[1] == 0);
+            Iterator<PlayerCounts> iterator = players.values().iterator();
+            while (iterator.hasNext()) {
+                PlayerCounts player = iterator.next();
+                player.effects.values().removeIf(counts -> counts[0] == 0 && counts[1] == 0);
+                if (player.effects.isEmpty()) {
+                    iterator.remove();
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return effects.isEmpty() && players.isEmpty();
+        }
+    }
+
+    /**
+     * 单个玩家的计数
+     */
+    static class PlayerCounts {
+        String name;
+        // 效果ID -> [触发次数, 成功次数]
+        final Map<String, long[]> effects = new LinkedHashMap<>();
+
+        PlayerCounts(String name) {
+            this.name = name;
+        }
+    }
+}
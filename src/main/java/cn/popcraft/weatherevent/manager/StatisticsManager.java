@@ -1,88 +1,228 @@
 package cn.popcraft.weatherevent.manager;
 
 import cn.popcraft.weatherevent.WeatherEvent;
-import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Logger;
 
 /**
  * 统计管理器
- * 用于记录效果触发统计和玩家受到效果的频率统计
+ * 用于记录效果触发统计和玩家受到效果的频率统计。
+ * 效果ID映射为整数序号，全局计数使用 LongAdder，玩家计数使用按序号索引的 AtomicLongArray，
+ * 每个效果和世界另有 1 分钟、15 分钟和 1 小时的滑动窗口，用于观察当前的触发频率。
+ * 记录时不分配对象，可以在异步评估线程中调用；读取时生成不可变的快照。
+ * 计数由单独的 I/O 线程定期把增量追加到日志，日志过大时压缩为快照，主线程不做任何文件操作
  */
 public class StatisticsManager {
-    private final WeatherEvent plugin;
     private final Logger logger;
-    private final File statisticsFile;
-    private YamlConfiguration statisticsConfig;
     
-    // 效果触发统计
-    private final Map<String, EffectStatistics> effectStatistics;
+    // 效果ID与序号的映射，序号只增不减
+    private final Map<String, Integer> effectOrdinals;
+    private volatile String[] effectIds;
+    
+    // 效果触发统计，按序号索引
+    private volatile EffectCounters[] effectCounters;
     
     // 玩家效果统计
-    private final Map<UUID, PlayerStatistics> playerStatistics;
+    private final Map<UUID, PlayerCounters> playerCounters;
+    
+    // 按世界统计的最近触发，键为世界名称
+    private final Map<String, RollingCounter> worldCounters;
+    
+    // 持久化，所有文件操作都在 I/O 线程中执行
+    private final StatisticsJournal journal;
+    private final ScheduledExecutorService ioExecutor;
+    private final long compactBytes;
+    private StatisticsJournal.Counts persisted; // 已写入磁盘的完整计数，只在 I/O 线程访问
+    
+    private volatile long journalBatches;   // 写入日志的批次数
+    private volatile long compactions;      // 压缩为快照的次数
+    private volatile long lastFlushNanos;   // 上次写入耗时
     
     public StatisticsManager(WeatherEvent plugin) {
-        this.plugin = plugin;
         this.logger = plugin.getLogger();
-        this.statisticsFile = new File(plugin.getDataFolder(), "statistics.yml");
-        this.effectStatistics = new ConcurrentHashMap<>();
-        this.playerStatistics = new ConcurrentHashMap<>();
-        loadStatistics();
+        this.effectOrdinals = new ConcurrentHashMap<>();
+        this.effectIds = new String[0];
+        this.effectCounters = new EffectCounters[0];
+        this.playerCounters = new ConcurrentHashMap<>();
+        this.worldCounters = new ConcurrentHashMap<>();
+        this.persisted = new StatisticsJournal.Counts();
+        
+        boolean persistenceEnabled = plugin.getConfig().getBoolean("performance.statistics-persistence.enabled", true);
+        long flushSeconds = Math.max(1, plugin.getConfig().getLong("performance.statistics-persistence.flush-seconds", 30));
+        this.compactBytes = Math.max(4096, plugin.getConfig().getLong("performance.statistics-persistence.compact-bytes", 1048576));
+        
+        if (persistenceEnabled) {
+            this.journal = new StatisticsJournal(new File(plugin.getDataFolder(), "statistics"), logger);
+            this.ioExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "WeatherEvent-Statistics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // 单线程执行器保证恢复先于任何写入
+            ioExecutor.execute(this::loadStatistics);
+            ioExecutor.scheduleWithFixedDelay(() -> flush(false), flushSeconds, flushSeconds, TimeUnit.SECONDS);
+        } else {
+            this.journal = null;
+            this.ioExecutor = null;
+        }
     }
     
     /**
-     * 加载统计信息
+     * 加载统计信息（I/O 线程）
+     * 读取快照并重放日志，恢复出的计数累加到内存中的计数器上，期间记录的计数不会丢失
      */
     private void loadStatistics() {
-        if (!statisticsFile.exists()) {
-            try {
-                plugin.getDataFolder().mkdirs();
-                statisticsFile.createNewFile();
-            } catch (IOException e) {
-                logger.warning("无法创建统计文件: " + e.getMessage());
-            }
+        StatisticsJournal.Counts recovered = new StatisticsJournal.Counts();
+        try {
+            journal.recover(recovered);
+        } catch (IOException e) {
+            logger.warning("无法加载统计信息，本次运行的统计不会保存: " + e.getMessage());
+            journal.close();
+            return;
         }
+        recovered.removeEmpty();
         
-        statisticsConfig = YamlConfiguration.loadConfiguration(statisticsFile);
-        
-        // 加载效果统计
-        loadEffectStatistics();
-        
-        // 加载玩家统计
-        loadPlayerStatistics();
+        for (Map.Entry<String, long[]> entry : recovered.effects.entrySet()) {
+            EffectCounters counters = effectCounters[internEffect(entry.getKey())];
+            counters.triggers.add(entry.getValue()[0]);
+            counters.successes.add(entry.getValue()[1]);
+        }
+        for (Map.Entry<UUID, StatisticsJournal.PlayerCounts> entry : recovered.players.entrySet()) {
+            String name = entry.getValue().name;
+            PlayerCounters counters = playerCounters.computeIfAbsent(entry.getKey(), id -> new PlayerCounters(id, name));
+            for (Map.Entry<String, long[]> effect : entry.getValue().effects.entrySet()) {
+                int ordinal = internEffect(effect.getKey());
+                counters.add(ordinal, effect.getValue()[0], false);
+                counters.add(ordinal, effect.getValue()[1], true);
+            }
+        }
+        persisted = recovered;
     }
     
     /**
-     * 加载效果统计
+     * 把上次写入之后的变化写入磁盘（I/O 线程）
+     * @param compact 是否强制压缩为快照
      */
-    private void loadEffectStatistics() {
-        // 从配置文件加载效果统计信息
-        // 这里简化处理，实际应用中可以根据需要扩展
+    private void flush(boolean compact) {
+        if (!journal.isOpen()) {
+            return;
+        }
+        long start = System.nanoTime();
+        StatisticsJournal.Counts current = capture();
+        try {
+            if (compact || journal.getJournalSize() >= compactBytes) {
+                journal.compact(current);
+                compactions++;
+            } else {
+                StatisticsJournal.Counts delta = current.subtract(persisted);
+                if (delta.isEmpty()) {
+                    return;
+                }
+                journal.append(delta);
+                journalBatches++;
+            }
+            persisted = current;
+        } catch (IOException e) {
+            logger.warning("无法保存统计信息: " + e.getMessage());
+        } finally {
+            lastFlushNanos = System.nanoTime() - start;
+        }
     }
     
     /**
-     * 加载玩家统计
+     * 读取所有计数器的当前值
      */
-    private void loadPlayerStatistics() {
-        // 从配置文件加载玩家统计信息
-        // 这里简化处理，实际应用中可以根据需要扩展
+    private StatisticsJournal.Counts capture() {
+        String[] ids = effectIds;
+        EffectCounters[] counters = effectCounters;
+        StatisticsJournal.Counts counts = new StatisticsJournal.Counts();
+        for (int i = 0; i < ids.length; i++) {
+            long successCount = counters[i].successes.sum();
+            long triggerCount = counters[i].triggers.sum();
+            if (triggerCount != 0 || successCount != 0) {
+                counts.addEffect(ids[i], triggerCount, successCount);
+            }
+        }
+        for (PlayerCounters player : playerCounters.values()) {
+            player.capture(ids, counts);
+        }
+        return counts;
     }
     
     /**
      * 保存统计信息
+     * 只提交到 I/O 线程，不阻塞调用线程
      */
     public void saveStatistics() {
+        if (ioExecutor != null && !ioExecutor.isShutdown()) {
+            ioExecutor.execute(() -> flush(false));
+        }
+    }
+    
+    /**
+     * 写入剩余的统计并关闭 I/O 线程（插件禁用时调用）
+     */
+    public void shutdown() {
+        if (ioExecutor == null || ioExecutor.isShutdown()) {
+            return;
+        }
+        ioExecutor.execute(() -> {
+            flush(false);
+            journal.close();
+        });
+        ioExecutor.shutdown();
         try {
-            statisticsConfig.save(statisticsFile);
-        } catch (IOException e) {
-            logger.warning("无法保存统计信息: " + e.getMessage());
+            if (!ioExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warning("保存统计信息超时，未写入的部分将在下次启动时丢失");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * 获取效果ID对应的序号，不存在时分配新的序号
+     * @param effectId 效果ID
+     * @return 序号
+     */
+    public int internEffect(String effectId) {
+        Integer ordinal = effectOrdinals.get(effectId);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        synchronized (effectOrdinals) {
+            ordinal = effectOrdinals.get(effectId);
+            if (ordinal != null) {
+                return ordinal;
+            }
+            int newOrdinal = effectIds.length;
+            String[] ids = Arrays.copyOf(effectIds, newOrdinal + 1);
+            ids[newOrdinal] = effectId;
+            EffectCounters[] counters = Arrays.copyOf(effectCounters, newOrdinal + 1);
+            counters[newOrdinal] = new EffectCounters();
+            // 先发布数组再发布序号，拿到序号的线程一定能看到对应的计数器
+            effectCounters = counters;
+            effectIds = ids;
+            effectOrdinals.put(effectId, newOrdinal);
+            return newOrdinal;
         }
     }
     
@@ -92,21 +232,21 @@ public class StatisticsManager {
      * @param player 玩家（可选）
      */
     public void recordEffectTrigger(String effectId, Player player) {
-        // 更新效果统计
-        EffectStatistics effectStats = effectStatistics.computeIfAbsent(
-            effectId, 
-            id -> new EffectStatistics(id)
-        );
-        effectStats.incrementTriggerCount();
-        
-        // 更新玩家统计
+        recordEffectTrigger(internEffect(effectId), player);
+    }
+    
+    /**
+     * 按序号记录效果触发
+     * @param ordinal {@link #internEffect(String)} 返回的序号
+     * @param player 玩家（可选）
+     */
+    public void recordEffectTrigger(int ordinal, Player player) {
+        EffectCounters counters = effectCounters[ordinal];
+        counters.triggers.increment();
+        counters.recent.recordTrigger();
         if (player != null) {
-            UUID playerId = player.getUniqueId();
-            PlayerStatistics playerStats = playerStatistics.computeIfAbsent(
-                playerId, 
-                id -> new PlayerStatistics(playerId, player.getName())
-            );
-            playerStats.incrementEffectCount(effectId);
+            getPlayerCounters(player).increment(ordinal, false);
+            getWorldCounter(player).recordTrigger();
         }
     }
     
@@ -116,84 +256,263 @@ public class StatisticsManager {
      * @param player 玩家（可选）
      */
     public void recordEffectSuccess(String effectId, Player player) {
-        // 更新效果统计
-        EffectStatistics effectStats = effectStatistics.get(effectId);
-        if (effectStats != null) {
-            effectStats.incrementSuccessCount();
-        }
-        
-        // 更新玩家统计
+        recordEffectSuccess(internEffect(effectId), player);
+    }
+    
+    /**
+     * 按序号记录效果成功应用
+     * @param ordinal {@link #internEffect(String)} 返回的序号
+     * @param player 玩家（可选）
+     */
+    public void recordEffectSuccess(int ordinal, Player player) {
+        EffectCounters counters = effectCounters[ordinal];
+        counters.successes.increment();
+        counters.recent.recordSuccess();
         if (player != null) {
-            UUID playerId = player.getUniqueId();
-            PlayerStatistics playerStats = playerStatistics.get(playerId);
-            if (playerStats != null) {
-                playerStats.incrementEffectSuccess(effectId);
-            }
+            getPlayerCounters(player).increment(ordinal, true);
+            getWorldCounter(player).recordSuccess();
         }
     }
     
+    private RollingCounter getWorldCounter(Player player) {
+        String worldName = player.getWorld().getName();
+        RollingCounter counter = worldCounters.get(worldName);
+        if (counter == null) {
+            counter = worldCounters.computeIfAbsent(worldName, name -> new RollingCounter());
+        }
+        return counter;
+    }
+    
+    private PlayerCounters getPlayerCounters(Player player) {
+        UUID playerId = player.getUniqueId();
+        PlayerCounters counters = playerCounters.get(playerId);
+        if (counters == null) {
+            counters = playerCounters.computeIfAbsent(playerId, id -> new PlayerCounters(id, player.getName()));
+        }
+        return counters;
+    }
+    
     /**
      * 获取效果统计信息
      * @param effectId 效果ID
-     * @return 效果统计信息
+     * @return 效果统计快照，没有记录时返回null
      */
     public EffectStatistics getEffectStatistics(String effectId) {
-        return effectStatistics.get(effectId);
+        Integer ordinal = effectOrdinals.get(effectId);
+        return ordinal == null ? null : effectCounters[ordinal].snapshot(effectId);
     }
     
     /**
      * 获取玩家统计信息
      * @param playerId 玩家ID
-     * @return 玩家统计信息
+     * @return 玩家统计快照，没有记录时返回null
      */
     public PlayerStatistics getPlayerStatistics(UUID playerId) {
-        return playerStatistics.get(playerId);
+        PlayerCounters counters = playerCounters.get(playerId);
+        return counters == null ? null : counters.snapshot(effectIds);
+    }
+    
+    /**
+     * 获取效果在最近一段时间内的统计
+     * @param effectId 效果ID
+     * @param window 统计窗口
+     * @return 窗口统计快照，没有记录时返回null
+     */
+    public RollingCounter.WindowStatistics getEffectWindow(String effectId, RollingCounter.Window window) {
+        Integer ordinal = effectOrdinals.get(effectId);
+        return ordinal == null ? null : effectCounters[ordinal].recent.snapshot(window);
+    }
+    
+    /**
+     * 获取世界在最近一段时间内所有效果的统计
+     * @param worldName 世界名称
+     * @param window 统计窗口
+     * @return 窗口统计快照，没有记录时返回null
+     */
+    public RollingCounter.WindowStatistics getWorldWindow(String worldName, RollingCounter.Window window) {
+        RollingCounter counter = worldCounters.get(worldName);
+        return counter == null ? null : counter.snapshot(window);
+    }
+    
+    /**
+     * 获取有触发记录的世界
+     * @return 世界名称
+     */
+    public Set<String> getTrackedWorlds() {
+        return new TreeSet<>(worldCounters.keySet());
     }
     
     /**
      * 获取所有效果统计信息
-     * @return 效果统计映射
+     * @return 效果统计快照，按效果首次记录的顺序排列
      */
     public Map<String, EffectStatistics> getAllEffectStatistics() {
-        return new HashMap<>(effectStatistics);
+        String[] ids = effectIds;
+        EffectCounters[] counters = effectCounters;
+        Map<String, EffectStatistics> result = new LinkedHashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            result.put(ids[i], counters[i].snapshot(ids[i]));
+        }
+        return result;
     }
     
     /**
      * 获取所有玩家统计信息
-     * @return 玩家统计映射
+     * @return 玩家统计快照
      */
     public Map<UUID, PlayerStatistics> getAllPlayerStatistics() {
-        return new HashMap<>(playerStatistics);
+        String[] ids = effectIds;
+        Map<UUID, PlayerStatistics> result = new HashMap<>();
+        for (PlayerCounters counters : playerCounters.values()) {
+            result.put(counters.playerId, counters.snapshot(ids));
+        }
+        return result;
     }
     
     /**
      * 重置统计信息
      */
     public void resetStatistics() {
-        effectStatistics.clear();
-        playerStatistics.clear();
+        for (EffectCounters counters : effectCounters) {
+            counters.triggers.reset();
+            counters.successes.reset();
+            counters.recent.reset();
+        }
+        playerCounters.clear();
+        worldCounters.clear();
+        // 重置后直接写快照，不在日志中保留重置前的增量
+        if (ioExecutor != null && !ioExecutor.isShutdown()) {
+            ioExecutor.execute(() -> flush(true));
+        }
+    }
+    
+    public boolean isPersistenceEnabled() {
+        return journal != null;
+    }
+    
+    public long getJournalBatches() {
+        return journalBatches;
+    }
+    
+    public long getCompactions() {
+        return compactions;
+    }
+    
+    public long getLastFlushNanos() {
+        return lastFlushNanos;
     }
     
     /**
-     * 效果统计信息类
+     * 单个效果的全局计数器
      */
-    public static class EffectStatistics {
-        private final String effectId;
-        private long triggerCount;  // 触发次数
-        private long successCount;  // 成功应用次数
+    private static class EffectCounters {
+        private final LongAdder triggers = new LongAdder();
+        private final LongAdder successes = new LongAdder();
+        private final RollingCounter recent = new RollingCounter();
         
-        public EffectStatistics(String effectId) {
-            this.effectId = effectId;
-            this.triggerCount = 0;
-            this.successCount = 0;
+        EffectStatistics snapshot(String effectId) {
+            // 先读成功次数再读触发次数，保证快照中成功次数不超过触发次数
+            long successCount = successes.sum();
+            long triggerCount = triggers.sum();
+            return new EffectStatistics(effectId, Math.max(triggerCount, successCount), successCount);
         }
+    }
+    
+    /**
+     * 单个玩家的计数器，按效果序号索引
+     * 计数按每 64 个效果一段分配，段只在第一次用到时创建且不会被复制，并发自增不会丢失
+     */
+    private static class PlayerCounters {
+        private static final int SEGMENT_BITS = 6;
+        private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+        private static final int MAX_SEGMENTS = 64; // 最多 4096 个效果
         
-        public void incrementTriggerCount() {
-            triggerCount++;
+        private final UUID playerId;
+        private final String playerName;
+        // 每段依次保存 [触发次数, 成功次数] × 64
+        private final AtomicReferenceArray<AtomicLongArray> segments = new AtomicReferenceArray<>(MAX_SEGMENTS);
+        
+        PlayerCounters(UUID playerId, String playerName) {
+            this.playerId = playerId;
+            this.playerName = playerName;
+        }
+        
+        void increment(int ordinal, boolean success) {
+            int segmentIndex = ordinal >>> SEGMENT_BITS;
+            if (segmentIndex >= MAX_SEGMENTS) {
+                return;
+            }
+            AtomicLongArray segment = segments.get(segmentIndex);
+            if (segment == null) {
+                segments.compareAndSet(segmentIndex, null, new AtomicLongArray(SEGMENT_SIZE * 2));
+                segment = segments.get(segmentIndex);
+            }
+            segment.incrementAndGet(((ordinal & (SEGMENT_SIZE - 1)) << 1) | (success ? 1 : 0));
+        }
+        
+        void add(int ordinal, long delta, boolean success) {
+            int segmentIndex = ordinal >>> SEGMENT_BITS;
+            if (segmentIndex >= MAX_SEGMENTS || delta == 0) {
+                return;
+            }
+            AtomicLongArray segment = segments.get(segmentIndex);
+            if (segment == null) {
+                segments.compareAndSet(segmentIndex, null, new AtomicLongArray(SEGMENT_SIZE * 2));
+                segment = segments.get(segmentIndex);
+            }
+            segment.addAndGet(((ordinal & (SEGMENT_SIZE - 1)) << 1) | (success ? 1 : 0), delta);
+        }
+        
+        void capture(String[] effectIds, StatisticsJournal.Counts into) {
+            for (int i = 0; i < effectIds.length && (i >>> SEGMENT_BITS) < MAX_SEGMENTS; i++) {
+                AtomicLongArray segment = segments.get(i >>> SEGMENT_BITS);
+                if (segment == null) {
+                    continue;
+                }
+                int slot = (i & (SEGMENT_SIZE - 1)) << 1;
+                long success = segment.get(slot | 1);
+                long trigger = segment.get(slot);
+                if (trigger != 0 || success != 0) {
+                    into.addPlayer(playerId, playerName, effectIds[i], trigger, success);
+                }
+            }
         }
         
-        public void incrementSuccessCount() {
-            successCount++;
+        PlayerStatistics snapshot(String[] effectIds) {
+            Map<String, Long> counts = new HashMap<>();
+            Map<String, Long> successMap = new HashMap<>();
+            for (int i = 0; i < effectIds.length && (i >>> SEGMENT_BITS) < MAX_SEGMENTS; i++) {
+                AtomicLongArray segment = segments.get(i >>> SEGMENT_BITS);
+                if (segment == null) {
+                    continue;
+                }
+                int slot = (i & (SEGMENT_SIZE - 1)) << 1;
+                // 先读成功次数再读触发次数
+                long success = segment.get(slot | 1);
+                long trigger = segment.get(slot);
+                if (trigger > 0 || success > 0) {
+                    counts.put(effectIds[i], Math.max(trigger, success));
+                }
+                if (success > 0) {
+                    successMap.put(effectIds[i], success);
+                }
+            }
+            return new PlayerStatistics(playerId, playerName, counts, successMap);
+        }
+    }
+    
+    /**
+     * 效果统计信息类（快照）
+     */
+    public static class EffectStatistics {
+        private final String effectId;
+        private final long triggerCount;  // 触发次数
+        private final long successCount;  // 成功应用次数
+        
+        public EffectStatistics(String effectId, long triggerCount, long successCount) {
+            this.effectId = effectId;
+            this.triggerCount = triggerCount;
+            this.successCount = successCount;
         }
         
         public String getEffectId() {
@@ -217,7 +536,7 @@ public class StatisticsManager {
     }
     
     /**
-     * 玩家统计信息类
+     * 玩家统计信息类（快照）
      */
     public static class PlayerStatistics {
         private final UUID playerId;
@@ -225,19 +544,11 @@ public class StatisticsManager {
         private final Map<String, Long> effectCounts;      // 每种效果的触发次数
         private final Map<String, Long> effectSuccesses;   // 每种效果的成功次数
         
-        public PlayerStatistics(UUID playerId, String playerName) {
+        public PlayerStatistics(UUID playerId, String playerName, Map<String, Long> effectCounts, Map<String, Long> effectSuccesses) {
             this.playerId = playerId;
             this.playerName = playerName;
-            this.effectCounts = new HashMap<>();
-            this.effectSuccesses = new HashMap<>();
-        }
-        
-        public void incrementEffectCount(String effectId) {
-            effectCounts.put(effectId, effectCounts.getOrDefault(effectId, 0L) + 1);
-        }
-        
-        public void incrementEffectSuccess(String effectId) {
-            effectSuccesses.put(effectId, effectSuccesses.getOrDefault(effectId, 0L) + 1);
+            this.effectCounts = Collections.unmodifiableMap(effectCounts);
+            this.effectSuccesses = Collections.unmodifiableMap(effectSuccesses);
         }
         
         public UUID getPlayerId() {
@@ -249,11 +560,11 @@ public class StatisticsManager {
         }
         
         public Map<String, Long> getEffectCounts() {
-            return new HashMap<>(effectCounts);
+            return effectCounts;
         }
         
         public Map<String, Long> getEffectSuccesses() {
-            return new HashMap<>(effectSuccesses);
+            return effectSuccesses;
         }
         
         public long getTotalEffectCount() {
@@ -264,4 +575,4 @@ public class StatisticsManager {
             return effectSuccesses.values().stream().mapToLong(Long::longValue).sum();
         }
     }
-}
\ No newline at end of file
+}
@@ -1,7 +1,9 @@
 package cn.popcraft.weatherevent.message;
 
+import cn.popcraft.weatherevent.WeatherEvent;
 import org.bukkit.Sound;
 import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
 
 import java.util.Map;
 
@@ -28,8 +30,9 @@ public class MessageHandler {
         int fadeOut = ((Number) titleConfig.getOrDefault("fade-out", 20)).intValue();
         
         // 替换占位符
-        title = replacePlaceholders(title, player);
-        subtitle = replacePlaceholders(subtitle, player);
+        PlaceholderContext context = new PlaceholderContext(player);
+        title = replacePlaceholders(title, context);
+        subtitle = replacePlaceholders(subtitle, context);
         
         player.sendTitle(title, subtitle, fadeIn, stay, fadeOut);
     }
@@ -47,7 +50,7 @@ public class MessageHandler {
         String message = (String) actionBarConfig.getOrDefault("message", "");
         
         // 替换占位符
-        message = replacePlaceholders(message, player);
+        message = replacePlaceholders(message, new PlaceholderContext(player));
         
         // 使用Spigot API发送动作栏消息
         player.spigot().sendMessage(net.md_5.bungee.api.ChatMessageType.ACTION_BAR, 
@@ -90,7 +93,7 @@ public class MessageHandler {
         String message = (String) messageConfig.getOrDefault("text", "");
         
         // 替换占位符
-        message = replacePlaceholders(message, player);
+        message = replacePlaceholders(message, new PlaceholderContext(player));
         
         player.sendMessage(message);
     }
@@ -98,21 +101,14 @@ public class MessageHandler {
     /**
      * 替换消息中的占位符
      * @param message 原始消息
-     * @param player 玩家
+     * @param context 占位符上下文
      * @return 替换后的消息
      */
-    private static String replacePlaceholders(String message, Player player) {
+    private static String replacePlaceholders(String message, PlaceholderContext context) {
         if (message == null) {
             return "";
         }
         
-        return message.replace("%player%", player.getName())
-                .replace("%player_name%", player.getName())
-                .replace("%player_x%", String.valueOf(player.getLocation().getX()))
-                .replace("%player_y%", String.valueOf(player.getLocation().getY()))
-                .replace("%player_z%", String.valueOf(player.getLocation().getZ()))
-                .replace("%player_health%", String.valueOf(player.getHealth()))
-                .replace("%player_food%", String.valueOf(player.getFoodLevel()))
-                .replace("%player_world%", player.getWorld().getName());
+        return JavaPlugin.getPlugin(WeatherEvent.class).getPlaceholderRegistry().render(message, context);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,115 @@
+package cn.popcraft.weatherevent.message;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.util.Arrays;
+
+/**
+ * 占位符上下文
+ * 保存渲染模板所需的玩家、世界和局部变量。玩家位置只在第一次用到时读取，
+ * 同一上下文渲染多个模板时共用一个 StringBuilder；只能在创建它的线程使用
+ */
+public final class PlaceholderContext {
+    private final Player player;
+    private final World world;
+    private Location location;
+
+    // 局部变量，例如灾害坐标、季节ID，数量很少因此用数组顺序查找；用到时才分配
+    private String[] names;
+    private Object[] values;
+    private int size;
+
+    private StringBuilder builder;
+
+    /**
+     * 创建玩家上下文，世界为玩家所在世界
+     * @param player 玩家
+     */
+    public PlaceholderContext(Player player) {
+        this(player, player.getWorld());
+    }
+
+    /**
+     * 创建上下文
+     * @param player 玩家，可以为 null
+     * @param world 世界，为 null 时使用玩家所在世界
+     */
+    public PlaceholderContext(Player player, World world) {
+        this.player = player;
+        this.world = world != null ? world : (player != null ? player.getWorld() : null);
+    }
+
+    /**
+     * 设置局部变量，优先于注册的占位符
+     * @param name 占位符名称（不含%）
+     * @param value 值，渲染时转为字符串
+     * @return 当前上下文
+     */
+    public PlaceholderContext set(String name, Object value) {
+        for (int i = 0; i < size; i++) {
+            if (names[i].equals(name)) {
+                values[i] = value;
+                return this;
+            }
+        }
+        if (names == null) {
+            names = new String[4];
+            values = new Object[4];
+        } else if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        names[size] = name;
+        values[size] = value;
+        size++;
+        return this;
+    }
+
+    /**
+     * 获取局部变量
+     * @param name 占位符名称
+     * @return 值，未设置时返回 null
+     */
+    public Object get(String name) {
+        for (int i = 0; i < size; i++) {
+            if (names[i].equals(name)) {
+                return values[i];
+            }
+        }
+        return null;
+    }
+
+    public Player getPlayer() {
+        return player;
+    }
+
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * 获取玩家位置，只读取一次
+     * @return 玩家位置，没有玩家时返回 null
+     */
+    public Location getLocation() {
+        if (location == null && player != null) {
+            location = player.getLocation();
+        }
+        return location;
+    }
+
+    /**
+     * 获取清空后的渲染缓冲区
+     * @return 缓冲区
+     */
+    StringBuilder builder() {
+        if (builder == null) {
+            builder = new StringBuilder(64);
+        } else {
+            builder.setLength(0);
+        }
+        return builder;
+    }
+}
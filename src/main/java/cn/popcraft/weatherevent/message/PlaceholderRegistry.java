@@ -0,0 +1,147 @@
+package cn.popcraft.weatherevent.message;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 占位符注册表
+ * 保存内置和其他插件注册的占位符，并缓存编译后的模板，供消息、命令、季节和灾害共用
+ */
+public class PlaceholderRegistry {
+    private static final int MAX_CACHED_TEMPLATES = 2048;
+
+    private final Map<String, Function<PlaceholderContext, String>> resolvers;
+    private final Map<String, PlaceholderTemplate> templates;
+
+    public PlaceholderRegistry() {
+        this.resolvers = new ConcurrentHashMap<>();
+        this.templates = new ConcurrentHashMap<>();
+        registerDefaults();
+    }
+
+    /**
+     * 注册内置占位符
+     */
+    private void registerDefaults() {
+        register("player", context -> playerName(context));
+        register("player_name", context -> playerName(context));
+        register("player_x", context -> {
+            Location location = context.getLocation();
+            return location == null ? null : String.valueOf(location.getX());
+        });
+        register("player_y", context -> {
+            Location location = context.getLocation();
+            return location == null ? null : String.valueOf(location.getY());
+        });
+        register("player_z", context -> {
+            Location location = context.getLocation();
+            return location == null ? null : String.valueOf(location.getZ());
+        });
+        register("player_health", context -> {
+            Player player = context.getPlayer();
+            return player == null ? null : String.valueOf(player.getHealth());
+        });
+        register("player_food", context -> {
+            Player player = context.getPlayer();
+            return player == null ? null : String.valueOf(player.getFoodLevel());
+        });
+        register("player_world", context -> {
+            Player player = context.getPlayer();
+            return player == null ? null : player.getWorld().getName();
+        });
+        register("world", context -> {
+            World world = context.getWorld();
+            return world == null ? null : world.getName();
+        });
+    }
+
+    private static String playerName(PlaceholderContext context) {
+        Player player = context.getPlayer();
+        return player == null ? null : player.getName();
+    }
+
+    /**
+     * 注册占位符，已存在时覆盖
+     * @param name 占位符名称（不含%）
+     * @param resolver 计算占位符的函数，返回 null 时保留占位符原文
+     */
+    public void register(String name, Function<PlaceholderContext, String> resolver) {
+        resolvers.put(name, resolver);
+    }
+
+    /**
+     * 取消注册占位符
+     * @param name 占位符名称
+     * @return 是否存在该占位符
+     */
+    public boolean unregister(String name) {
+        return resolvers.remove(name) != null;
+    }
+
+    /**
+     * 检查占位符是否已注册
+     * @param name 占位符名称
+     * @return 是否已注册
+     */
+    public boolean isRegistered(String name) {
+        return resolvers.containsKey(name);
+    }
+
+    /**
+     * 计算占位符的值
+     * 上下文中的局部变量优先于注册的占位符
+     * @param name 占位符名称
+     * @param context 上下文
+     * @return 占位符的值，无法计算时返回 null
+     */
+    public String resolve(String name, PlaceholderContext context) {
+        Object value = context.get(name);
+        if (value != null) return String.valueOf(value);
+
+        Function<PlaceholderContext, String> resolver = resolvers.get(name);
+        return resolver == null ? null : resolver.apply(context);
+    }
+
+    /**
+     * 获取编译后的模板，相同文本只编译一次
+     * @param text 文本
+     * @return 模板
+     */
+    public PlaceholderTemplate compile(String text) {
+        PlaceholderTemplate template = templates.get(text);
+        if (template != null) return template;
+
+        template = PlaceholderTemplate.parse(text, this);
+        // 动态拼接的文本不会重复出现，缓存满后不再缓存，避免无限增长
+        if (templates.size() < MAX_CACHED_TEMPLATES) {
+            templates.putIfAbsent(text, template);
+        }
+        return template;
+    }
+
+    /**
+     * 渲染文本
+     * @param text 文本
+     * @param context 上下文
+     * @return 渲染后的文本
+     */
+    public String render(String text, PlaceholderContext context) {
+        return compile(text).render(context);
+    }
+
+    /**
+     * 清空模板缓存，在配置重载时调用
+     */
+    public void clearTemplates() {
+        templates.clear();
+    }
+
+    public int getTemplateCount() {
+        return templates.size();
+    }
+}
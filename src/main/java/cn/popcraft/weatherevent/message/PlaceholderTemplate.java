@@ -0,0 +1,117 @@
+package cn.popcraft.weatherevent.message;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 占位符模板
+ * 加载时把文本拆分为字面量和占位符片段，渲染时只计算文本中实际出现的占位符；
+ * 无法解析的占位符保留原样
+ */
+public final class PlaceholderTemplate {
+    private final String source;
+    private final String[] literals;     // literals[i] 位于 placeholders[i] 之前，最后一段在所有占位符之后
+    private final String[] placeholders; // 占位符名称（不含%）
+    private final PlaceholderRegistry registry;
+
+    private PlaceholderTemplate(String source, String[] literals, String[] placeholders, PlaceholderRegistry registry) {
+        this.source = source;
+        this.literals = literals;
+        this.placeholders = placeholders;
+        this.registry = registry;
+    }
+
+    /**
+     * 解析模板
+     * 占位符形如 %name%，名称只能包含字母、数字、下划线、点和横线
+     * @param text 文本
+     * @param registry 占位符注册表
+     * @return 模板
+     */
+    static PlaceholderTemplate parse(String text, PlaceholderRegistry registry) {
+        List<String> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+
+        int literalStart = 0;
+        int index = text.indexOf('%');
+        while (index >= 0) {
+            int end = text.indexOf('%', index + 1);
+            if (end < 0) break;
+
+            String name = text.substring(index + 1, end);
+            if (isValidName(name)) {
+                literals.add(text.substring(literalStart, index));
+                placeholders.add(name);
+                literalStart = end + 1;
+                index = text.indexOf('%', literalStart);
+            } else {
+                // 不是占位符，从第二个%重新开始匹配
+                index = end;
+            }
+        }
+        literals.add(text.substring(literalStart));
+
+        return new PlaceholderTemplate(text, literals.toArray(new String[0]),
+                placeholders.toArray(new String[0]), registry);
+    }
+
+    private static boolean isValidName(String name) {
+        if (name.isEmpty()) return false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '.' && c != '-') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 渲染模板
+     * @param context 占位符上下文
+     * @return 渲染后的文本
+     */
+    public String render(PlaceholderContext context) {
+        if (placeholders.length == 0) return source;
+
+        StringBuilder builder = context.builder();
+        for (int i = 0; i < placeholders.length; i++) {
+            builder.append(literals[i]);
+            String value = registry.resolve(placeholders[i], context);
+            if (value != null) {
+                builder.append(value);
+            } else {
+                builder.append('%').append(placeholders[i]).append('%');
+            }
+        }
+        builder.append(literals[placeholders.length]);
+        return builder.toString();
+    }
+
+    /**
+     * 是否包含占位符
+     * @return 是否需要渲染
+     */
+    public boolean hasPlaceholders() {
+        return placeholders.length > 0;
+    }
+
+    /**
+     * 是否只包含一个占位符且没有其他文本
+     * @param name 占位符名称
+     * @return 是否完全等于 %name%
+     */
+    public boolean isOnly(String name) {
+        return placeholders.length == 1 && placeholders[0].equals(name)
+                && literals[0].isEmpty() && literals[1].isEmpty();
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
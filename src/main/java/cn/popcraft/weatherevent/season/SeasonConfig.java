@@ -1,6 +1,9 @@
 package cn.popcraft.weatherevent.season;
 
 import cn.popcraft.weatherevent.config.DynamicParameter;
+import cn.popcraft.weatherevent.manager.CommandCompiler;
+import cn.popcraft.weatherevent.manager.PotionReconciler;
+import cn.popcraft.weatherevent.message.PlaceholderContext;
 import org.bukkit.World;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
@@ -96,13 +99,16 @@ public class SeasonConfig {
      * 对玩家应用季节效果
      * @param player 玩家
      * @param world 世界
+     * @param potionReconciler 药水效果协调器
+     * @param commandCompiler 命令编译器
      */
-    public void applyEffects(Player player, World world) {
+    public void applyEffects(Player player, World world, PotionReconciler potionReconciler,
+                             CommandCompiler commandCompiler) {
         if (!enabled) return;
         
         // 应用药水效果
         for (PotionEffect effect : potionEffects) {
-            player.addPotionEffect(effect, true); // force=true覆盖现有效果
+            potionReconciler.apply(player, effect, true); // force=true覆盖现有效果
         }
         
         // 发送消息
@@ -112,14 +118,9 @@ public class SeasonConfig {
         
         // 执行命令
         if (!commands.isEmpty() && Math.random() < commandChance) {
+            PlaceholderContext context = new PlaceholderContext(player, world).set("season", season.getId());
             for (String command : commands) {
-                String processedCommand = command.replace("%player%", player.getName())
-                        .replace("%world%", world.getName())
-                        .replace("%season%", season.getId());
-                player.getServer().dispatchCommand(
-                    player.getServer().getConsoleSender(), 
-                    processedCommand
-                );
+                commandCompiler.compile(command).execute(context);
             }
         }
     }
@@ -1,6 +1,8 @@
 package cn.popcraft.weatherevent.season;
 
 import cn.popcraft.weatherevent.WeatherEvent;
+import cn.popcraft.weatherevent.manager.CommandCompiler;
+import cn.popcraft.weatherevent.manager.PotionReconciler;
 import org.bukkit.Bukkit;
 import org.bukkit.World;
 import org.bukkit.configuration.ConfigurationSection;
@@ -220,8 +222,10 @@ public class SeasonManager implements Listener {
         }
         
         // 对世界中的每个玩家应用效果
+        PotionReconciler potionReconciler = plugin.getEffectManager().getPotionReconciler();
+        CommandCompiler commandCompiler = plugin.getCommandCompiler();
         for (Player player : world.getPlayers()) {
-            config.applyEffects(player, world);
+            config.applyEffects(player, world, potionReconciler, commandCompiler);
         }
     }
     
@@ -286,7 +290,8 @@ public class SeasonManager implements Listener {
         // 应用当前季节的效果
         SeasonConfig config = seasonConfigs.get(season);
         if (config != null && config.isEnabled()) {
-            config.applyEffects(player, world);
+            config.applyEffects(player, world, plugin.getEffectManager().getPotionReconciler(),
+                plugin.getCommandCompiler());
         }
     }
     